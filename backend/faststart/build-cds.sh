@@ -0,0 +1,51 @@
+#!/usr/bin/env bash
+# Extracts the application jar into target/faststart and records a class data sharing (AppCDS)
+# archive from a training run: the application starts with the given profiles, serves a sign-up,
+# a sign-in and a listing, and is stopped, and the JVM writes every class it loaded to
+# target/faststart/app.jsa. Later starts map the archive instead of loading and verifying those
+# classes again. Rebuild the archive after every build of the jar, and run with the same JVM.
+#
+#   mvn package -DskipTests && PROFILES=h2,fast-start faststart/build-cds.sh
+#   java -XX:SharedArchiveFile=target/faststart/app.jsa -cp "$(cat target/faststart/classpath)" \
+#        com.cybersecurity.encryption.EncryptionBackendApplication --spring.profiles.active=h2,fast-start
+#
+# Environment: JAVA, JAR, PORT (8081), PROFILES (fast-start), SERVER_ARGS, JAVA_OPTS (train with
+# -Dspring.aot.enabled=true to archive the classes of an AOT-processed start).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAVA=${JAVA:-java}
+JAR=$(realpath "${JAR:-target/encryption-backend-0.0.1-SNAPSHOT.jar}")
+PORT=${PORT:-8081}
+PROFILES=${PROFILES:-fast-start}
+SERVER_ARGS=${SERVER_ARGS:-}
+JAVA_OPTS=${JAVA_OPTS:-}
+OUT=target/faststart
+BASE="http://localhost:$PORT"
+
+rm -rf "$OUT/app" "$OUT/app.jsa"
+mkdir -p "$OUT/app"
+(cd "$OUT/app" && jar xf "$JAR")
+# Classes are only archived from jars, not from directories, so the application gets a jar of its own
+jar cf "$OUT/app/application.jar" -C "$OUT/app/BOOT-INF/classes" .
+CLASSPATH_FILE="$OUT/classpath"
+{ echo -n "$OUT/app/application.jar"; for lib in "$OUT"/app/BOOT-INF/lib/*.jar; do echo -n ":$lib"; done; } \
+    > "$CLASSPATH_FILE"
+
+# shellcheck disable=SC2086
+"$JAVA" -XX:ArchiveClassesAtExit="$OUT/app.jsa" $JAVA_OPTS -cp "$(cat "$CLASSPATH_FILE")" \
+    com.cybersecurity.encryption.EncryptionBackendApplication --spring.profiles.active="$PROFILES" \
+    --server.port="$PORT" --app.rate-limit.enabled=false $SERVER_ARGS > "$OUT/training.log" 2>&1 &
+pid=$!
+trap 'kill $pid 2>/dev/null' EXIT
+until curl -sf "$BASE/readyz" > /dev/null; do sleep 0.5; done
+curl -s -o /dev/null -X POST "$BASE/api/auth/signup" -H 'Content-Type: application/json' \
+    -d '{"username":"training","email":"training@example.com","password":"Password123"}'
+token=$(curl -sf -X POST "$BASE/api/auth/signin" -H 'Content-Type: application/json' \
+    -d '{"username":"training","password":"Password123"}' | sed -E 's/.*"accessToken":"([^"]+)".*/\1/')
+curl -sf -o /dev/null "$BASE/api/messages" -H "Authorization: Bearer $token"
+# The archive is written when the JVM exits
+kill $pid
+wait $pid 2>/dev/null || true
+trap - EXIT
+ls -l "$OUT/app.jsa"
@@ -0,0 +1,84 @@
+#!/usr/bin/env bash
+# Starts the backend RUNS times and prints, for each start, the milliseconds from launch until
+# /readyz is UP (which includes the crypto self-test) and until a user has signed in and
+# listed their messages, followed by the medians. Every run uses the same H2 file database.
+#
+#   mvn package -DskipTests && faststart/measure.sh
+#   PROFILES=h2,fast-start faststart/measure.sh
+#   faststart/build-cds.sh && MODE=cds PROFILES=h2,fast-start faststart/measure.sh
+#
+# Environment: JAVA, JAR, MODE (jar, or cds to run the application extracted by build-cds.sh
+# with its archive), RUNS (5), PORT (8081), PROFILES (h2), DB (target/faststart/vault),
+# SERVER_ARGS, JAVA_OPTS.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAVA=${JAVA:-java}
+JAR=${JAR:-target/encryption-backend-0.0.1-SNAPSHOT.jar}
+MODE=${MODE:-jar}
+RUNS=${RUNS:-5}
+PORT=${PORT:-8081}
+PROFILES=${PROFILES:-h2}
+DB=${DB:-target/faststart/vault}
+SERVER_ARGS=${SERVER_ARGS:-}
+JAVA_OPTS=${JAVA_OPTS:-}
+BASE="http://localhost:$PORT"
+
+mkdir -p "$(dirname "$DB")"
+# A file database, so that profiles without schema creation find the tables of an earlier run
+DB_ARGS="--spring.datasource.url=jdbc:h2:file:$(realpath -m "$DB") --app.rate-limit.enabled=false --server.port=$PORT"
+
+# Always started in the background, where exec makes $! the JVM itself
+launch() {
+    if [ "$MODE" = cds ]; then
+        # shellcheck disable=SC2086
+        exec "$JAVA" -XX:SharedArchiveFile=target/faststart/app.jsa $JAVA_OPTS -cp "$(cat target/faststart/classpath)" \
+            com.cybersecurity.encryption.EncryptionBackendApplication "$@"
+    else
+        # shellcheck disable=SC2086
+        exec "$JAVA" $JAVA_OPTS -jar "$JAR" "$@"
+    fi
+}
+
+millis() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+first_requests() {
+    curl -s -o /dev/null -X POST "$BASE/api/auth/signup" -H 'Content-Type: application/json' \
+        -d '{"username":"faststart","email":"faststart@example.com","password":"Password123"}'
+    local token
+    token=$(curl -sf -X POST "$BASE/api/auth/signin" -H 'Content-Type: application/json' \
+        -d '{"username":"faststart","password":"Password123"}' | sed -E 's/.*"accessToken":"([^"]+)".*/\1/')
+    curl -sf -o /dev/null "$BASE/api/messages" -H "Authorization: Bearer $token"
+}
+
+# The database of the first start gets its schema whatever the profiles say
+# shellcheck disable=SC2086
+launch --spring.profiles.active="$PROFILES" $DB_ARGS --spring.jpa.hibernate.ddl-auto=update $SERVER_ARGS \
+    > target/faststart/measure-server.log 2>&1 &
+pid=$!
+trap 'kill $pid 2>/dev/null' EXIT
+until curl -sf "$BASE/readyz" > /dev/null; do sleep 0.5; done
+first_requests
+kill $pid && wait $pid 2>/dev/null || true
+
+ready=()
+served=()
+for run in $(seq 1 "$RUNS"); do
+    started=$(millis)
+    # shellcheck disable=SC2086
+    launch --spring.profiles.active="$PROFILES" $DB_ARGS $SERVER_ARGS > target/faststart/measure-server.log 2>&1 &
+    pid=$!
+    until curl -sf "$BASE/readyz" > /dev/null; do sleep 0.02; done
+    ready+=($(( $(millis) - started )))
+    first_requests
+    served+=($(( $(millis) - started )))
+    kill $pid && wait $pid 2>/dev/null || true
+    echo "run $run: ready after ${ready[-1]} ms, first listing served after ${served[-1]} ms"
+done
+
+median() {
+    printf '%s\n' "$@" | sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+echo "median: ready after $(median "${ready[@]}") ms, first listing served after $(median "${served[@]}") ms"
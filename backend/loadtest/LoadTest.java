@@ -0,0 +1,493 @@
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load generator for the Secure Vault backend. Each client sends a
+ * request, waits for the response and immediately sends the next one, so the number
+ * of clients is the number of requests in flight.
+ *
+ * <pre>
+ * java loadtest/LoadTest.java --clients 50 --duration 60 --label 1.4.0 --report target/loadtest-report.json
+ * </pre>
+ *
+ * Options: --base (http://localhost:8081), --clients (50), --duration seconds (30),
+ * --warmup seconds (5), --users (20), --seed-messages per user (20), --mix, --label,
+ * --report (JSON file, written when given).
+ * <p>
+ * The mix is a list of weights, e.g. {@code signin=2,encrypt=15,list=30,search=20,decrypt=25,delete=8},
+ * over the operations signin, encrypt, list, search, decrypt, delete and stats. Decrypt
+ * reads the seeded messages; delete removes messages the same client encrypted during
+ * the run, and encrypts instead while it has none. The server must run with rate
+ * limiting disabled, see run.sh and compare.sh.
+ */
+public class LoadTest {
+
+    private static final String PASSWORD = "Secret123";
+    private static final String AES_KEY = "MTIzNDU2Nzg5MDEyMzQ1Njc4OTAxMjM0NTY3ODkwMTI=";
+    private static final String DEFAULT_MIX = "signin=2,encrypt=15,list=30,search=20,decrypt=25,delete=8";
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern MESSAGE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.95, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p95", "p99", "p999"};
+
+    enum Operation {
+        SIGNIN, ENCRYPT, LIST, SEARCH, DECRYPT, DELETE, STATS;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String base = options.getOrDefault("base", "http://localhost:8081");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "50"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int userCount = Integer.parseInt(options.getOrDefault("users", "20"));
+        int seedMessages = Integer.parseInt(options.getOrDefault("seed-messages", "20"));
+        Mix mix = Mix.parse(options.getOrDefault("mix", DEFAULT_MIX));
+        String label = options.getOrDefault("label", "run");
+        String report = options.get("report");
+
+        ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(callbacks)
+                .build();
+
+        Instant startedAt = Instant.now();
+        List<VaultUser> users = createUsers(http, base, userCount, seedMessages);
+        System.out.printf("%s: %d users with %d messages each ready, starting %d clients (warmup %ds, measure %ds)%n",
+                label, users.size(), seedMessages, clients, warmupSeconds, durationSeconds);
+
+        long startNanos = System.nanoTime();
+        long measureFrom = startNanos + Duration.ofSeconds(warmupSeconds).toNanos();
+        long measureUntil = measureFrom + Duration.ofSeconds(durationSeconds).toNanos();
+
+        Stats stats = new Stats();
+        List<CompletableFuture<Void>> running = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(http, callbacks, base, users.get(i % users.size()), mix, seedMessages,
+                    measureFrom, measureUntil, stats);
+            running.add(client.run());
+        }
+        CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+
+        stats.print(label, mix, clients, durationSeconds);
+        if (report != null) {
+            String json = stats.toJson(label, startedAt, base, mix, clients, users.size(), seedMessages,
+                    warmupSeconds, durationSeconds);
+            Files.writeString(Path.of(report), json);
+            System.out.printf("%s: report written to %s%n", label, report);
+        }
+        callbacks.shutdownNow();
+    }
+
+    private static List<VaultUser> createUsers(HttpClient http, String base, int count, int seedMessages)
+            throws Exception {
+        String prefix = "load" + Long.toString(System.currentTimeMillis(), 36);
+        List<VaultUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String username = prefix + i;
+            post(http, base + "/api/auth/signup", null, "{\"username\":\"" + username + "\",\"email\":\"" + username
+                    + "@example.com\",\"password\":\"" + PASSWORD + "\"}");
+            HttpResponse<String> signin = post(http, base + "/api/auth/signin", null, signinJson(username));
+            Matcher matcher = ACCESS_TOKEN.matcher(signin.body());
+            if (signin.statusCode() != 200 || !matcher.find()) {
+                throw new IllegalStateException("Sign-in failed for " + username + ": HTTP " + signin.statusCode()
+                        + " " + signin.body());
+            }
+            String token = matcher.group(1);
+
+            List<Long> messageIds = new ArrayList<>(seedMessages);
+            for (int j = 0; j < seedMessages; j++) {
+                HttpResponse<String> encrypt = post(http, base + "/api/encrypt", token,
+                        encryptJson("note " + j, "seed " + i + "-" + j));
+                Long id = encrypt.statusCode() == 200 ? messageId(encrypt.body()) : null;
+                if (id == null) {
+                    throw new IllegalStateException("Seeding failed for " + username + ": HTTP "
+                            + encrypt.statusCode() + " " + encrypt.body());
+                }
+                messageIds.add(id);
+            }
+            users.add(new VaultUser(username, token, Collections.unmodifiableList(messageIds)));
+        }
+        return users;
+    }
+
+    private static HttpResponse<String> post(HttpClient http, String url, String token, String json)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String signinJson(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private static String encryptJson(String title, String message) {
+        return "{\"title\":\"" + title + "\",\"message\":\"" + message + "\",\"algorithm\":\"AES\",\"key\":\""
+                + AES_KEY + "\"}";
+    }
+
+    private static Long messageId(String body) {
+        Matcher matcher = MESSAGE_ID.matcher(body);
+        return matcher.find() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private record VaultUser(String username, String token, List<Long> seededMessageIds) {
+    }
+
+    /** Relative operation weights, e.g. "encrypt=10,list=45,stats=45". */
+    private static class Mix {
+
+        private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        private int total;
+
+        static Mix parse(String spec) {
+            Mix mix = new Mix();
+            for (String entry : spec.split(",")) {
+                String[] parts = entry.trim().split("=");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected operation=weight, got " + entry);
+                }
+                Operation operation = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+                int weight = Integer.parseInt(parts[1].trim());
+                if (weight > 0) {
+                    mix.weights.put(operation, weight);
+                    mix.total += weight;
+                }
+            }
+            if (mix.total == 0) {
+                throw new IllegalArgumentException("The mix has no operation with a positive weight: " + spec);
+            }
+            return mix;
+        }
+
+        Operation pick(ThreadLocalRandom random) {
+            int value = random.nextInt(total);
+            for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+                value -= entry.getValue();
+                if (value < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException("Unreachable");
+        }
+
+        Map<Operation, Integer> weights() {
+            return weights;
+        }
+    }
+
+    /** One simulated user session; its requests run strictly one after another. */
+    private static class Client {
+
+        private final HttpClient http;
+        private final Executor callbacks;
+        private final String base;
+        private final VaultUser user;
+        private final Mix mix;
+        private final int searchTerms;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final Stats stats;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+        // Messages this client encrypted during the run; only these are deleted
+        private final ArrayDeque<Long> ownMessages = new ArrayDeque<>();
+
+        Client(HttpClient http, Executor callbacks, String base, VaultUser user, Mix mix, int searchTerms,
+                long measureFrom, long measureUntil, Stats stats) {
+            this.http = http;
+            this.callbacks = callbacks;
+            this.base = base;
+            this.user = user;
+            this.mix = mix;
+            this.searchTerms = searchTerms;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.stats = stats;
+        }
+
+        CompletableFuture<Void> run() {
+            next();
+            return done;
+        }
+
+        private void next() {
+            long sent = System.nanoTime();
+            if (sent >= measureUntil) {
+                stats.add(samples);
+                done.complete(null);
+                return;
+            }
+            Operation operation = choose();
+            http.sendAsync(request(operation), HttpResponse.BodyHandlers.ofString())
+                    // Async so that a request failing immediately cannot recurse on this stack.
+                    .whenCompleteAsync((response, error) -> {
+                        long received = System.nanoTime();
+                        if (sent >= measureFrom && received <= measureUntil) {
+                            samples.computeIfAbsent(operation, o -> new Samples()).add(received - sent);
+                            stats.outcome(operation, error != null ? "error" : Integer.toString(response.statusCode()));
+                        }
+                        if (operation == Operation.ENCRYPT && error == null && response.statusCode() == 200) {
+                            Long id = messageId(response.body());
+                            if (id != null) {
+                                ownMessages.add(id);
+                            }
+                        }
+                        next();
+                    }, callbacks);
+        }
+
+        private Operation choose() {
+            Operation operation = mix.pick(ThreadLocalRandom.current());
+            if (operation == Operation.DELETE && ownMessages.isEmpty()) {
+                return Operation.ENCRYPT;
+            }
+            if (operation == Operation.DECRYPT && user.seededMessageIds().isEmpty()) {
+                return Operation.ENCRYPT;
+            }
+            return operation;
+        }
+
+        private HttpRequest request(Operation operation) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            HttpRequest.Builder request = switch (operation) {
+                case SIGNIN -> json(base + "/api/auth/signin", signinJson(user.username()));
+                case ENCRYPT -> json(base + "/api/encrypt", encryptJson("load", "payload " + random.nextLong()));
+                case LIST -> HttpRequest.newBuilder(URI.create(base + "/api/messages?page="
+                        + random.nextInt(2) + "&size=10")).GET();
+                case SEARCH -> HttpRequest.newBuilder(URI.create(base + "/api/messages?search="
+                        + URLEncoder.encode(searchTerm(random), StandardCharsets.UTF_8))).GET();
+                case DECRYPT -> {
+                    List<Long> ids = user.seededMessageIds();
+                    yield json(base + "/api/decrypt", "{\"messageId\":" + ids.get(random.nextInt(ids.size()))
+                            + ",\"key\":\"" + AES_KEY + "\"}");
+                }
+                case DELETE -> HttpRequest.newBuilder(URI.create(base + "/api/messages/" + ownMessages.poll()))
+                        .DELETE();
+                case STATS -> HttpRequest.newBuilder(URI.create(base + "/api/user/stats")).GET();
+            };
+            if (operation != Operation.SIGNIN) {
+                request.header("Authorization", "Bearer " + user.token());
+            }
+            return request.timeout(Duration.ofSeconds(60)).build();
+        }
+
+        private String searchTerm(ThreadLocalRandom random) {
+            return searchTerms > 0 ? "note " + random.nextInt(searchTerms) : "note";
+        }
+
+        private static HttpRequest.Builder json(String url, String body) {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+    }
+
+    /** Growable array of latencies in nanoseconds. */
+    private static class Samples {
+
+        private long[] values = new long[256];
+        private int count;
+
+        void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    private static class Stats {
+
+        private final Map<Operation, List<long[]>> samples = new EnumMap<>(Operation.class);
+        private final Map<Operation, Map<String, LongAdder>> outcomes = new EnumMap<>(Operation.class);
+
+        Stats() {
+            for (Operation operation : Operation.values()) {
+                samples.put(operation, new ArrayList<>());
+                outcomes.put(operation, new ConcurrentHashMap<>());
+            }
+        }
+
+        void outcome(Operation operation, String key) {
+            outcomes.get(operation).computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+
+        synchronized void add(Map<Operation, Samples> clientSamples) {
+            clientSamples.forEach((operation, values) -> samples.get(operation).add(values.toArray()));
+        }
+
+        synchronized void print(String label, Mix mix, int clients, int durationSeconds) {
+            System.out.printf("%s: clients=%d duration=%ds%n", label, clients, durationSeconds);
+            System.out.printf("%s: %-8s %8s %8s %10s %8s %8s %8s %8s %8s%n", label, "endpoint", "requests", "ok",
+                    "req/s", "p50", "p95", "p99", "p99.9", "max ms");
+            for (Operation operation : mix.weights().keySet()) {
+                printLine(label, operation.key(), summary(Collections.singleton(operation), durationSeconds));
+            }
+            printLine(label, "total", summary(mix.weights().keySet(), durationSeconds));
+            for (Operation operation : mix.weights().keySet()) {
+                System.out.printf("%s: %s outcomes %s%n", label, operation.key(), counts(operation));
+            }
+        }
+
+        private static void printLine(String label, String name, Summary summary) {
+            System.out.printf(Locale.ROOT, "%s: %-8s %8d %8d %10.1f %8.1f %8.1f %8.1f %8.1f %8.1f%n", label, name,
+                    summary.requests(), summary.ok(), summary.throughput(), summary.percentilesMs()[0],
+                    summary.percentilesMs()[2], summary.percentilesMs()[3], summary.percentilesMs()[4],
+                    summary.maxMs());
+        }
+
+        synchronized String toJson(String label, Instant startedAt, String base, Mix mix, int clients, int users,
+                int seedMessages, int warmupSeconds, int durationSeconds) {
+            StringBuilder json = new StringBuilder("{\n");
+            json.append("  \"label\": ").append(quote(label)).append(",\n");
+            json.append("  \"startedAt\": ").append(quote(startedAt.toString())).append(",\n");
+            json.append("  \"base\": ").append(quote(base)).append(",\n");
+            json.append("  \"clients\": ").append(clients).append(",\n");
+            json.append("  \"users\": ").append(users).append(",\n");
+            json.append("  \"seedMessages\": ").append(seedMessages).append(",\n");
+            json.append("  \"warmupSeconds\": ").append(warmupSeconds).append(",\n");
+            json.append("  \"durationSeconds\": ").append(durationSeconds).append(",\n");
+            json.append("  \"mix\": {");
+            String separator = "";
+            for (Map.Entry<Operation, Integer> entry : mix.weights().entrySet()) {
+                json.append(separator).append(quote(entry.getKey().key())).append(": ").append(entry.getValue());
+                separator = ", ";
+            }
+            json.append("},\n");
+            json.append("  \"total\": ");
+            appendSummary(json, summary(mix.weights().keySet(), durationSeconds), null, "  ");
+            json.append(",\n  \"endpoints\": {\n");
+            separator = "";
+            for (Operation operation : mix.weights().keySet()) {
+                json.append(separator).append("    ").append(quote(operation.key())).append(": ");
+                appendSummary(json, summary(Collections.singleton(operation), durationSeconds), counts(operation),
+                        "    ");
+                separator = ",\n";
+            }
+            return json.append("\n  }\n}\n").toString();
+        }
+
+        private static void appendSummary(StringBuilder json, Summary summary, Map<String, Long> outcomes,
+                String indent) {
+            json.append("{\n");
+            json.append(indent).append("  \"requests\": ").append(summary.requests()).append(",\n");
+            json.append(indent).append("  \"ok\": ").append(summary.ok()).append(",\n");
+            json.append(indent).append("  \"throughput\": ").append(number(summary.throughput())).append(",\n");
+            json.append(indent).append("  \"latencyMs\": {");
+            for (int i = 0; i < PERCENTILE_NAMES.length; i++) {
+                json.append(quote(PERCENTILE_NAMES[i])).append(": ").append(number(summary.percentilesMs()[i]))
+                        .append(", ");
+            }
+            json.append("\"max\": ").append(number(summary.maxMs())).append("}");
+            if (outcomes != null) {
+                json.append(",\n").append(indent).append("  \"outcomes\": {");
+                String separator = "";
+                for (Map.Entry<String, Long> entry : outcomes.entrySet()) {
+                    json.append(separator).append(quote(entry.getKey())).append(": ").append(entry.getValue());
+                    separator = ", ";
+                }
+                json.append("}");
+            }
+            json.append("\n").append(indent).append("}");
+        }
+
+        private Summary summary(Iterable<Operation> operations, int durationSeconds) {
+            List<long[]> selected = new ArrayList<>();
+            long ok = 0;
+            for (Operation operation : operations) {
+                selected.addAll(samples.get(operation));
+                for (Map.Entry<String, LongAdder> entry : outcomes.get(operation).entrySet()) {
+                    if (entry.getKey().startsWith("2")) {
+                        ok += entry.getValue().sum();
+                    }
+                }
+            }
+            long[] all = selected.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            double[] percentiles = new double[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentiles[i] = percentile(all, PERCENTILES[i]);
+            }
+            double max = all.length == 0 ? 0 : all[all.length - 1] / 1e6;
+            return new Summary(all.length, ok, (double) all.length / durationSeconds, percentiles, max);
+        }
+
+        private Map<String, Long> counts(Operation operation) {
+            Map<String, Long> counts = new TreeMap<>();
+            outcomes.get(operation).forEach((key, value) -> counts.put(key, value.sum()));
+            return counts;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+
+        private static String number(double value) {
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    private record Summary(long requests, long ok, double throughput, double[] percentilesMs, double maxMs) {
+    }
+}
@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+# Runs the same load against the platform-thread and the virtual-thread server mode
+# and prints throughput and latency percentiles for both.
+#
+#   mvn -Pjava21 package -DskipTests && JAVA=/path/to/jdk-21/bin/java loadtest/compare.sh
+#
+# Environment: JAVA, JAR, CLIENTS (1000), DURATION (30), WARMUP (10), PORT (8081),
+# DB_PROFILE (h2, the in-memory database).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAVA=${JAVA:-java}
+JAR=${JAR:-target/encryption-backend-0.0.1-SNAPSHOT.jar}
+CLIENTS=${CLIENTS:-1000}
+DURATION=${DURATION:-30}
+WARMUP=${WARMUP:-10}
+PORT=${PORT:-8081}
+DB_PROFILE=${DB_PROFILE:-h2}
+
+# Identical limits in both modes, so that threading is the only difference.
+COMMON_ARGS="--server.port=$PORT --app.rate-limit.enabled=false --app.tracing.sample-rate=0 \
+--app.bulkhead.read.queue-capacity=2000 --server.tomcat.max-connections=10000 --server.tomcat.accept-count=1000"
+
+run_mode() {
+    local label=$1
+    local profiles=$2
+    # shellcheck disable=SC2086
+    "$JAVA" -Djdk.tracePinnedThreads=short -jar "$JAR" --spring.profiles.active="$profiles" $COMMON_ARGS > "target/loadtest-$label.log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null' EXIT
+
+    for _ in $(seq 1 120); do
+        if curl -sf "http://localhost:$PORT/readyz" > /dev/null; then
+            break
+        fi
+        sleep 1
+    done
+
+    "$JAVA" loadtest/LoadTest.java --base "http://localhost:$PORT" --clients "$CLIENTS" \
+        --duration "$DURATION" --warmup "$WARMUP" --seed-messages 0 --mix encrypt=10,list=45,stats=45 \
+        --label "$label"
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    trap - EXIT
+    if grep -q "pinned" "target/loadtest-$label.log"; then
+        echo "$label: pinned virtual threads reported, see target/loadtest-$label.log"
+    fi
+}
+
+run_mode platform "$DB_PROFILE"
+run_mode virtual "$DB_PROFILE,virtual"
@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Boots the backend on the in-memory H2 profile, seeds users and messages, runs a mixed
+# workload against it and writes a JSON report with per-endpoint latency and throughput.
+#
+#   mvn package -DskipTests && loadtest/run.sh
+#   diff <(jq .endpoints old.json) <(jq .endpoints target/loadtest-report.json)
+#
+# Environment: JAVA, JAR, CLIENTS (50), DURATION (60), WARMUP (10), USERS (20),
+# SEED_MESSAGES (20), MIX (see LoadTest.java), PORT (8081), LABEL (git commit),
+# REPORT (target/loadtest-report.json), PROFILES (h2), SERVER_ARGS.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAVA=${JAVA:-java}
+JAR=${JAR:-target/encryption-backend-0.0.1-SNAPSHOT.jar}
+CLIENTS=${CLIENTS:-50}
+DURATION=${DURATION:-60}
+WARMUP=${WARMUP:-10}
+USERS=${USERS:-20}
+SEED_MESSAGES=${SEED_MESSAGES:-20}
+MIX=${MIX:-signin=2,encrypt=15,list=30,search=20,decrypt=25,delete=8}
+PORT=${PORT:-8081}
+LABEL=${LABEL:-$(git rev-parse --short HEAD 2>/dev/null || echo run)}
+REPORT=${REPORT:-target/loadtest-report.json}
+PROFILES=${PROFILES:-h2}
+SERVER_ARGS=${SERVER_ARGS:-}
+
+# Rate limits would turn most of the load into 429s, and sampled traces add log I/O
+# shellcheck disable=SC2086
+"$JAVA" -jar "$JAR" --spring.profiles.active="$PROFILES" --server.port="$PORT" \
+    --app.rate-limit.enabled=false --app.tracing.sample-rate=0 $SERVER_ARGS > target/loadtest-server.log 2>&1 &
+pid=$!
+trap 'kill $pid 2>/dev/null' EXIT
+
+for _ in $(seq 1 120); do
+    if curl -sf "http://localhost:$PORT/readyz" > /dev/null; then
+        break
+    fi
+    sleep 1
+done
+
+"$JAVA" loadtest/LoadTest.java --base "http://localhost:$PORT" --clients "$CLIENTS" --duration "$DURATION" \
+    --warmup "$WARMUP" --users "$USERS" --seed-messages "$SEED_MESSAGES" --mix "$MIX" --label "$LABEL" \
+    --report "$REPORT"
@@ -0,0 +1,198 @@
+package com.cybersecurity.encryption.benchmark;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fills {@code users} and {@code encrypted_messages} with synthetic rows for the repository
+ * benchmark. Message ownership follows a power law (a few users own most messages), content
+ * sizes are log-normal and all algorithms occur with their IV and key lengths. Rows are written
+ * with multi-row INSERT statements, which MySQL and H2 both load much faster than single rows.
+ */
+@Component
+@Profile({"benchmark", "tiering-benchmark"})
+public class MessageDataGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageDataGenerator.class);
+
+    static final String USER_PREFIX = "bench-user-";
+    static final String[] WORDS = {"report", "invoice", "meeting", "notes", "draft", "contract", "backup",
+            "password", "recovery", "travel", "budget", "plan", "review", "summary", "letter", "receipt", "project",
+            "secret", "personal", "archive", "tax", "medical", "family", "photos", "keys", "wallet", "quarterly",
+            "roadmap", "design", "minutes"};
+
+    private static final int ROWS_PER_STATEMENT = 1000;
+    private static final int PAYLOAD_POOL_BYTES = 48 * 1024;
+    private static final int MAX_CONTENT_BYTES = 16 * 1024;
+    private static final long CREATED_AT_SPREAD_SECONDS = 2L * 365 * 24 * 3600;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.benchmark.users:10000}")
+    private int userCount;
+
+    @Value("${app.benchmark.user-skew:3.0}")
+    private double userSkew;
+
+    @Value("${app.benchmark.median-content-bytes:300}")
+    private int medianContentBytes;
+
+    @Value("${app.benchmark.seed:42}")
+    private long seed;
+
+    private SplittableRandom random;
+    private String payloadPool;
+    private List<Long> userIds;
+
+    /**
+     * Creates the benchmark users that do not exist yet and returns all of their IDs, heaviest
+     * user first.
+     */
+    public List<Long> ensureUsers() {
+        random = new SplittableRandom(seed);
+        byte[] pool = new byte[PAYLOAD_POOL_BYTES];
+        random.nextBytes(pool);
+        payloadPool = Base64.getEncoder().encodeToString(pool);
+
+        List<Long> existing = loadUserIds();
+        if (existing.size() < userCount) {
+            String password = new BCryptPasswordEncoder().encode("Secret123");
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = existing.size(); i < userCount; i++) {
+                rows.add(new Object[] {USER_PREFIX + i, USER_PREFIX + i + "@example.com", password, now, now});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO users (username, email, password, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                    rows, ROWS_PER_STATEMENT, (ps, row) -> {
+                        for (int i = 0; i < row.length; i++) {
+                            ps.setObject(i + 1, row[i]);
+                        }
+                    });
+            logger.info("Created {} benchmark users", rows.size());
+            existing = loadUserIds();
+        }
+        userIds = existing.subList(0, userCount);
+        return userIds;
+    }
+
+    public long countMessages() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encrypted_messages", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /** Inserts messages until the table holds at least {@code targetRows}, and returns the row count. */
+    public long fillTo(long targetRows) {
+        long rows = countMessages();
+        long started = System.nanoTime();
+        long missing = targetRows - rows;
+        long nextProgress = 1_000_000;
+        for (long done = 0; done < missing; ) {
+            int batch = (int) Math.min(ROWS_PER_STATEMENT, missing - done);
+            insertMessages(batch);
+            done += batch;
+            if (done >= nextProgress) {
+                logger.info("Inserted {} of {} messages ({} rows/s)", done, missing,
+                        done * 1_000_000_000L / Math.max(1, System.nanoTime() - started));
+                nextProgress += 1_000_000;
+            }
+        }
+        if (missing > 0) {
+            logger.info("Inserted {} messages in {} s", missing, (System.nanoTime() - started) / 1_000_000_000L);
+        }
+        return countMessages();
+    }
+
+    private void insertMessages(int count) {
+        String sql = "INSERT INTO encrypted_messages (title, encrypted_content, algorithm, encrypted_key,"
+                + " initialization_vector, user_id, created_at) VALUES "
+                + String.join(", ", Collections.nCopies(count, "(?, ?, ?, ?, ?, ?, ?)"));
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(sql, ps -> {
+            int index = 1;
+            for (int i = 0; i < count; i++) {
+                index = bindMessage(ps, index, now);
+            }
+        });
+    }
+
+    private int bindMessage(PreparedStatement ps, int index, LocalDateTime now) throws SQLException {
+        EncryptionAlgorithm algorithm = algorithm();
+        ps.setString(index++, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                + random.nextInt(1000));
+        ps.setString(index++, base64(contentBytes()));
+        ps.setString(index++, algorithm.name());
+        ps.setString(index++, base64(algorithm == EncryptionAlgorithm.DES ? 8 : 32));
+        ps.setString(index++, base64(ivBytes(algorithm)));
+        ps.setLong(index++, userIds.get(user()));
+        ps.setTimestamp(index++, Timestamp.valueOf(now.minusSeconds(random.nextLong(CREATED_AT_SPREAD_SECONDS))));
+        return index;
+    }
+
+    private EncryptionAlgorithm algorithm() {
+        int value = random.nextInt(10);
+        return value < 6 ? EncryptionAlgorithm.AES : value < 9 ? EncryptionAlgorithm.CHACHA20 : EncryptionAlgorithm.DES;
+    }
+
+    private static int ivBytes(EncryptionAlgorithm algorithm) {
+        return switch (algorithm) {
+            case AES -> 16;
+            case CHACHA20 -> 12;
+            case DES -> 8;
+            case AES_GCM -> 12;
+        };
+    }
+
+    // Index 0 is the heaviest user; with skew 3 and 10,000 users it owns about 5% of all rows
+    private int user() {
+        return Math.min(userIds.size() - 1, (int) (userIds.size() * Math.pow(random.nextDouble(), userSkew)));
+    }
+
+    private int contentBytes() {
+        double size = medianContentBytes * Math.exp(gaussian());
+        return (int) Math.max(16, Math.min(MAX_CONTENT_BYTES, size));
+    }
+
+    private double gaussian() {
+        // Box-Muller; SplittableRandom has no nextGaussian on Java 17
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    // A slice of a pre-generated random Base64 string, so that ciphertext does not cost a cipher call
+    private String base64(int bytes) {
+        int length = 4 * ((bytes + 2) / 3);
+        int offset = random.nextInt(payloadPool.length() - length);
+        return payloadPool.substring(offset, offset + length);
+    }
+
+    private List<Long> loadUserIds() {
+        List<String[]> users = jdbcTemplate.query("SELECT id, username FROM users WHERE username LIKE ?",
+                (rs, rowNum) -> new String[] {rs.getString(1), rs.getString(2)}, USER_PREFIX + "%");
+        users.sort(Comparator.comparingInt(user -> Integer.parseInt(user[1].substring(USER_PREFIX.length()))));
+        List<Long> ids = new ArrayList<>(users.size());
+        for (String[] user : users) {
+            ids.add(Long.valueOf(user[0]));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+package com.cybersecurity.encryption.benchmark;
+
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.EncryptedMessageRepository;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures each {@link EncryptedMessageRepository} query as the message table grows through
+ * {@code app.benchmark.scales}, for a heavy, a medium and a light user. Run once with
+ * {@code --spring.profiles.active=benchmark} (MySQL) or {@code h2,benchmark}; the application
+ * exits when the report is written.
+ */
+@Component
+@Profile("benchmark")
+public class RepositoryBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryBenchmark.class);
+
+    @Autowired
+    private MessageDataGenerator generator;
+
+    @Autowired
+    private EncryptedMessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.benchmark.scales:10000,1000000,10000000}")
+    private long[] scales;
+
+    @Value("${app.benchmark.search-term:report}")
+    private String searchTerm;
+
+    @Value("${app.benchmark.warmup-iterations:30}")
+    private int warmupIterations;
+
+    @Value("${app.benchmark.iterations:50}")
+    private int iterations;
+
+    @Value("${app.benchmark.report:target/repository-benchmark.json}")
+    private String reportPath;
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<Long> userIds = generator.ensureUsers();
+        Map<String, Long> sampleUsers = new LinkedHashMap<>();
+        sampleUsers.put("heavy", userIds.get(0));
+        sampleUsers.put("medium", userIds.get(userIds.size() / 100));
+        sampleUsers.put("light", userIds.get(userIds.size() / 2));
+
+        List<Result> results = new ArrayList<>();
+        long[] sortedScales = scales.clone();
+        Arrays.sort(sortedScales);
+        for (long scale : sortedScales) {
+            long rows = generator.fillTo(scale);
+            if (rows > scale) {
+                logger.warn("encrypted_messages already holds {} rows; measuring scale {} at that size", rows, scale);
+            }
+            for (Map.Entry<String, Long> sample : sampleUsers.entrySet()) {
+                User user = userRepository.findById(sample.getValue())
+                        .orElseThrow(() -> new RuntimeException("Benchmark user not found"));
+                long userRows = messageRepository.countByUser(user);
+                measure(results, scale, rows, sample.getKey(), userRows, "findByUserOrderByCreatedAtDesc(page 0)",
+                        () -> messageRepository.findByUserOrderByCreatedAtDesc(user, PageRequest.of(0, 10)));
+                measure(results, scale, rows, sample.getKey(), userRows, "findByUserOrderByCreatedAtDesc(page 50)",
+                        () -> messageRepository.findByUserOrderByCreatedAtDesc(user, PageRequest.of(50, 10)));
+                measure(results, scale, rows, sample.getKey(), userRows,
+                        "findByUserAndTitleContainingIgnoreCaseOrderByCreatedAtDesc(page 0)",
+                        () -> messageRepository.findByUserAndTitleContainingIgnoreCaseOrderByCreatedAtDesc(user,
+                                searchTerm, PageRequest.of(0, 10)));
+                measure(results, scale, rows, sample.getKey(), userRows, "countByUser",
+                        () -> messageRepository.countByUser(user));
+            }
+        }
+
+        print(results, sortedScales[0]);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.now().toString());
+        report.put("warmupIterations", warmupIterations);
+        report.put("iterations", iterations);
+        report.put("results", results);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        logger.info("Repository benchmark report written to {}", file.getAbsolutePath());
+    }
+
+    private void measure(List<Result> results, long scale, long rows, String userClass, long userRows, String query,
+            Supplier<?> call) {
+        for (int i = 0; i < warmupIterations; i++) {
+            call.get();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            call.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1e6;
+        results.add(new Result(scale, rows, userClass, userRows, query, percentile(nanos, 0.50),
+                percentile(nanos, 0.95), nanos[nanos.length - 1] / 1e6, mean));
+    }
+
+    // The growth column compares each median with the same query and user at the smallest scale
+    private void print(List<Result> results, long baseScale) {
+        Map<String, Double> baseline = new LinkedHashMap<>();
+        StringBuilder table = new StringBuilder(String.format("%n%10s %-7s %9s %-68s %9s %9s %9s %7s%n", "rows",
+                "user", "userRows", "query", "p50 ms", "p95 ms", "max ms", "growth"));
+        for (Result result : results) {
+            String key = result.getUserClass() + " " + result.getQuery();
+            if (result.getScale() == baseScale) {
+                baseline.put(key, result.getP50Ms());
+            }
+            double base = baseline.getOrDefault(key, result.getP50Ms());
+            table.append(String.format("%10d %-7s %9d %-68s %9.2f %9.2f %9.2f %6.1fx%n", result.getRows(),
+                    result.getUserClass(), result.getUserRows(), result.getQuery(), result.getP50Ms(),
+                    result.getP95Ms(), result.getMaxMs(), base > 0 ? result.getP50Ms() / base : 1.0));
+        }
+        logger.info("Repository benchmark results:{}", table);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final long scale;
+        private final long rows;
+        private final String userClass;
+        private final long userRows;
+        private final String query;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double maxMs;
+        private final double meanMs;
+    }
+}
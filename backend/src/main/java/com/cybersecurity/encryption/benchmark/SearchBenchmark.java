@@ -0,0 +1,241 @@
+package com.cybersecurity.encryption.benchmark;
+
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.BlindIndexService;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Compares content search through the blind index with the only alternative without one:
+ * loading every message of the user, decrypting it with its stored key and matching the words.
+ * Messages are created through {@link EncryptionService#createEncryptedMessage}, so they are
+ * indexed exactly as in production, with words drawn from a Zipf-distributed vocabulary. Run
+ * once with {@code --spring.profiles.active=h2,search-benchmark}; the application exits when
+ * the report is written.
+ */
+@Component
+@Profile("search-benchmark")
+public class SearchBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchBenchmark.class);
+
+    private static final String USERNAME = "search-bench-user";
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private BlindIndexService blindIndexService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.search-benchmark.scales:1000,10000}")
+    private long[] scales;
+
+    @Value("${app.search-benchmark.vocabulary:5000}")
+    private int vocabulary;
+
+    @Value("${app.search-benchmark.zipf-exponent:1.1}")
+    private double zipfExponent;
+
+    @Value("${app.search-benchmark.words-per-message:40}")
+    private int wordsPerMessage;
+
+    @Value("${app.search-benchmark.seed:42}")
+    private long seed;
+
+    @Value("${app.search-benchmark.iterations:50}")
+    private int iterations;
+
+    // Decrypting the whole vault is slow enough that a few runs give a stable median
+    @Value("${app.search-benchmark.scan-iterations:5}")
+    private int scanIterations;
+
+    @Value("${app.search-benchmark.report:target/search-benchmark.json}")
+    private String reportPath;
+
+    private double[] cumulative;
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!blindIndexService.isEnabled()) {
+            throw new IllegalStateException("The search benchmark needs app.blind-index.enabled=true");
+        }
+        User user = userRepository.findByUsername(USERNAME).orElseGet(() -> userRepository.save(
+                new User(null, USERNAME, USERNAME + "@example.com",
+                        new BCryptPasswordEncoder().encode("Secret123"), null, null)));
+        buildZipf();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("common", word(0));
+        queries.put("medium", word(50));
+        queries.put("rare", word(vocabulary - 1));
+        queries.put("common+medium", word(0) + " " + word(50));
+
+        List<Result> results = new ArrayList<>();
+        long[] sortedScales = scales.clone();
+        Arrays.sort(sortedScales);
+        for (long scale : sortedScales) {
+            long rows = fillTo(user, scale, random);
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                Page<EncryptedMessageResponse> indexed = blindIndexService.search(user.getId(), query.getValue(),
+                        PageRequest.of(0, 10));
+                long scanned = scan(user.getId(), query.getValue());
+                if (indexed.getTotalElements() != scanned) {
+                    throw new IllegalStateException("Index found " + indexed.getTotalElements() + " messages for \""
+                            + query.getValue() + "\", decrypting found " + scanned);
+                }
+                results.add(measure(rows, query.getKey(), scanned, "blind index", iterations,
+                        () -> blindIndexService.search(user.getId(), query.getValue(), PageRequest.of(0, 10))));
+                results.add(measure(rows, query.getKey(), scanned, "decrypt all", scanIterations,
+                        () -> scan(user.getId(), query.getValue())));
+            }
+        }
+
+        print(results);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.now().toString());
+        report.put("vocabulary", vocabulary);
+        report.put("zipfExponent", zipfExponent);
+        report.put("wordsPerMessage", wordsPerMessage);
+        report.put("results", results);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        logger.info("Search benchmark report written to {}", file.getAbsolutePath());
+    }
+
+    private long fillTo(User user, long scale, SplittableRandom random) {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encrypted_messages WHERE user_id = ?",
+                Long.class, user.getId());
+        long rows = existing == null ? 0 : existing;
+        if (rows < scale) {
+            logger.info("Creating {} indexed messages", scale - rows);
+        }
+        for (; rows < scale; rows++) {
+            StringBuilder message = new StringBuilder();
+            for (int i = 0; i < wordsPerMessage; i++) {
+                message.append(i == 0 ? "" : " ").append(word(nextRank(random)));
+            }
+            // An empty key makes the service generate one and store it with the message
+            encryptionService.createEncryptedMessage(new EncryptionRequest("note " + rows, message.toString(),
+                    EncryptionAlgorithm.AES_GCM, "", false), user);
+        }
+        return rows;
+    }
+
+    // What content search costs without the index
+    private long scan(Long userId, String query) {
+        List<String> terms = blindIndexService.terms(query);
+        return jdbcTemplate.query("SELECT encrypted_content, encrypted_key, initialization_vector, algorithm"
+                        + " FROM encrypted_messages WHERE user_id = ? ORDER BY created_at DESC, id DESC",
+                (rs, rowNum) -> encryptionService.decrypt(rs.getString("encrypted_content"),
+                        rs.getString("encrypted_key"), rs.getString("initialization_vector"),
+                        EncryptionAlgorithm.valueOf(rs.getString("algorithm"))),
+                userId).stream()
+                .filter(plaintext -> new HashSet<>(blindIndexService.terms(plaintext)).containsAll(terms))
+                .count();
+    }
+
+    private Result measure(long rows, String query, long matches, String method, int runs, Supplier<?> call) {
+        for (int i = 0; i < Math.max(1, runs / 5); i++) {
+            call.get();
+        }
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            call.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Result(rows, query, matches, method, percentile(nanos, 0.50), percentile(nanos, 0.95),
+                nanos[nanos.length - 1] / 1e6);
+    }
+
+    private void print(List<Result> results) {
+        StringBuilder table = new StringBuilder(String.format("%n%8s %-14s %8s %-12s %10s %10s %10s%n", "rows",
+                "query", "matches", "method", "p50 ms", "p95 ms", "max ms"));
+        for (Result result : results) {
+            table.append(String.format("%8d %-14s %8d %-12s %10.2f %10.2f %10.2f%n", result.getRows(),
+                    result.getQuery(), result.getMatches(), result.getMethod(), result.getP50Ms(),
+                    result.getP95Ms(), result.getMaxMs()));
+        }
+        logger.info("Search benchmark results:{}", table);
+    }
+
+    private void buildZipf() {
+        cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    private int nextRank(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, vocabulary - 1);
+    }
+
+    private static String word(int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final long rows;
+        private final String query;
+        private final long matches;
+        private final String method;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double maxMs;
+    }
+}
@@ -0,0 +1,204 @@
+package com.cybersecurity.encryption.benchmark;
+
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.tiering.MessageTieringJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the message table and the listing of the heaviest user before and after the
+ * {@link MessageTieringJob} moves messages older than {@code app.tiering.max-age-days} to the
+ * cold tier. Data comes from {@link MessageDataGenerator}, with creation times spread over two
+ * years. Run once with {@code --spring.profiles.active=tiering-benchmark} (MySQL) or
+ * {@code h2,tiering-benchmark}; the application exits when the report is written.
+ */
+@Component
+@Profile("tiering-benchmark")
+public class TieringBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieringBenchmark.class);
+    private static final int PAGE_SIZE = 10;
+
+    @Autowired
+    private MessageDataGenerator generator;
+
+    @Autowired
+    private MessageTieringJob tieringJob;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.tiering-benchmark.rows:200000}")
+    private long rows;
+
+    @Value("${app.tiering-benchmark.warmup-iterations:30}")
+    private int warmupIterations;
+
+    @Value("${app.tiering-benchmark.iterations:200}")
+    private int iterations;
+
+    // InnoDB keeps freed pages in the tablespace; rebuilding shows what the table needs now
+    @Value("${app.tiering-benchmark.optimize:true}")
+    private boolean optimize;
+
+    @Value("${app.tiering-benchmark.report:target/tiering-benchmark.json}")
+    private String reportPath;
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<Long> userIds = generator.ensureUsers();
+        long total = generator.fillTo(rows);
+        User user = userRepository.findById(userIds.get(0)).orElseThrow();
+        Long owned = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encrypted_messages WHERE user_id = ?",
+                Long.class, user.getId());
+        int lastPage = (int) Math.max(1, (owned - 1) / PAGE_SIZE);
+        logger.info("Heaviest user owns {} of {} messages", owned, total);
+
+        Map<String, Object> before = measure(user, lastPage);
+        long started = System.nanoTime();
+        long archived = tieringJob.run();
+        double tieringSeconds = (System.nanoTime() - started) / 1e9;
+        Map<String, Object> after = measure(user, lastPage);
+
+        print(before, after, archived, tieringSeconds);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.now().toString());
+        report.put("rows", total);
+        report.put("heaviestUserMessages", owned);
+        report.put("archived", archived);
+        report.put("tieringSeconds", tieringSeconds);
+        report.put("before", before);
+        report.put("after", after);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        logger.info("Tiering benchmark report written to {}", file.getAbsolutePath());
+    }
+
+    private Map<String, Object> measure(User user, int lastPage) {
+        Map<String, Object> result = new LinkedHashMap<>(sizes());
+        // Page 0 is served by the message cache, so the newest uncached page stands for recent reads
+        result.put("recentPage", latency(user, 1));
+        result.put("oldestPage", latency(user, lastPage));
+        return result;
+    }
+
+    private Map<String, Object> sizes() {
+        Map<String, Object> sizes = new LinkedHashMap<>();
+        sizes.put("hotRows", count("SELECT COUNT(*) FROM encrypted_messages WHERE archived_at IS NULL"));
+        sizes.put("coldRows", count("SELECT COUNT(*) FROM encrypted_messages_archive"));
+        sizes.put("hotContentBytes", count("SELECT COALESCE(SUM(LENGTH(encrypted_content)), 0)"
+                + " FROM encrypted_messages"));
+        sizes.put("coldContentBytes", count("SELECT COALESCE(SUM(LENGTH(content)), 0)"
+                + " FROM encrypted_messages_archive"));
+        // Only MySQL reports table and index sizes; H2 keeps TEXT columns out of its page counts and
+        // reports no size for secondary indexes
+        if (isMySql()) {
+            if (optimize) {
+                jdbcTemplate.queryForList("OPTIMIZE TABLE encrypted_messages");
+            }
+            jdbcTemplate.queryForList("ANALYZE TABLE encrypted_messages");
+            Map<String, Object> table = jdbcTemplate.queryForMap("SELECT data_length, index_length"
+                    + " FROM information_schema.TABLES WHERE table_schema = DATABASE()"
+                    + " AND table_name = 'encrypted_messages'");
+            sizes.put("dataBytes", table.get("data_length"));
+            sizes.put("indexBytes", table.get("index_length"));
+            // Each index on its own, from the persistent statistics ANALYZE TABLE refreshed; PRIMARY
+            // is the clustered index, so it holds the rows
+            jdbcTemplate.query("SELECT index_name, stat_value * @@innodb_page_size AS bytes"
+                    + " FROM mysql.innodb_index_stats WHERE database_name = DATABASE()"
+                    + " AND table_name = 'encrypted_messages' AND stat_name = 'size' ORDER BY index_name",
+                    rs -> {
+                        sizes.put("index " + rs.getString("index_name"), rs.getLong("bytes"));
+                    });
+        }
+        return sizes;
+    }
+
+    private Latency latency(User user, int page) {
+        for (int i = 0; i < warmupIterations; i++) {
+            encryptionService.getUserMessages(user, PageRequest.of(page, PAGE_SIZE), null);
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            encryptionService.getUserMessages(user, PageRequest.of(page, PAGE_SIZE), null);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Latency(page, percentile(nanos, 0.50), percentile(nanos, 0.95), nanos[nanos.length - 1] / 1e6);
+    }
+
+    private void print(Map<String, Object> before, Map<String, Object> after, long archived, double seconds) {
+        StringBuilder table = new StringBuilder(String.format("%n%-40s %16s %16s%n", "metric", "before", "after"));
+        List<String> keys = new ArrayList<>(before.keySet());
+        for (String key : keys) {
+            Object a = before.get(key);
+            Object b = after.get(key);
+            if (a instanceof Latency hot && b instanceof Latency cold) {
+                table.append(String.format("%-40s %16.3f %16.3f%n", key + " p50 ms", hot.getP50Ms(), cold.getP50Ms()));
+                table.append(String.format("%-40s %16.3f %16.3f%n", key + " p95 ms", hot.getP95Ms(), cold.getP95Ms()));
+            } else {
+                table.append(String.format("%-40s %16s %16s%n", key, a, b));
+            }
+        }
+        table.append(String.format("Archived %d messages in %.1f s%n", archived, seconds));
+        logger.info("Tiering benchmark results:{}", table);
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value == null ? 0 : value;
+    }
+
+    private boolean isMySql() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((Connection connection) ->
+                connection.getMetaData().getDatabaseProductName().contains("MySQL")));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Latency {
+        private final int page;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double maxMs;
+    }
+}
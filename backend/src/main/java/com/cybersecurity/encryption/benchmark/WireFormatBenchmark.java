@@ -0,0 +1,228 @@
+package com.cybersecurity.encryption.benchmark;
+
+import com.cybersecurity.encryption.dto.BinaryDecryptionRequest;
+import com.cybersecurity.encryption.dto.BinaryEncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.BinaryEncryptionRequest;
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.service.EncryptionService.EncryptionResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+/**
+ * Compares JSON with CBOR for {@code /api/encrypt} and {@code /api/decrypt}: bytes on the wire
+ * and the CPU time one request costs the server, from reading the body to writing the response,
+ * through the same mappers the HTTP converters use. The database is left out, so the numbers
+ * are the part that depends on the format, set against the encryption itself. Run once with
+ * {@code --spring.profiles.active=h2,wire-benchmark}; the application exits when the report is written.
+ */
+@Component
+@Profile("wire-benchmark")
+public class WireFormatBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireFormatBenchmark.class);
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Value("${app.wire-benchmark.message-sizes:64,1024,16384}")
+    private int[] messageSizes;
+
+    @Value("${app.wire-benchmark.algorithm:AES_GCM}")
+    private EncryptionAlgorithm algorithm;
+
+    @Value("${app.wire-benchmark.warmup-iterations:20000}")
+    private int warmupIterations;
+
+    @Value("${app.wire-benchmark.iterations:20000}")
+    private int iterations;
+
+    @Value("${app.wire-benchmark.report:target/wire-benchmark.json}")
+    private String reportPath;
+
+    @Override
+    public void run(String... args) throws Exception {
+        ObjectMapper cborMapper = cborConverter.getObjectMapper();
+        byte[] key = new byte[32];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) random.nextInt(256);
+        }
+        String base64Key = Base64.getEncoder().encodeToString(key);
+
+        List<Case> cases = new ArrayList<>();
+        for (int size : messageSizes) {
+            String message = text(size, random);
+            EncryptionResult stored = encryptionService.encrypt(message, base64Key, algorithm);
+
+            byte[] jsonEncrypt = objectMapper.writeValueAsBytes(
+                    new EncryptionRequest("Benchmark", message, algorithm, base64Key, false));
+            byte[] cborEncrypt = cborMapper.writeValueAsBytes(
+                    new BinaryEncryptionRequest("Benchmark", message, algorithm, key));
+            byte[] jsonDecrypt = objectMapper.writeValueAsBytes(new DecryptionRequest(1L, base64Key));
+            byte[] cborDecrypt = cborMapper.writeValueAsBytes(new BinaryDecryptionRequest(1L, key));
+
+            // Encryption alone, the cost the wire format is compared with
+            cases.add(new Case(size, "encrypt", "crypto only", 0, 0,
+                    () -> encryptionService.encrypt(message, base64Key, algorithm)));
+            cases.add(new Case(size, "encrypt", "json", jsonEncrypt.length,
+                    objectMapper.writeValueAsBytes(jsonEncryptResponse(stored)).length, () -> {
+                        EncryptionRequest request = objectMapper.readValue(jsonEncrypt, EncryptionRequest.class);
+                        EncryptionResult result = encryptionService.encrypt(request.getMessage(), request.getKey(),
+                                request.getAlgorithm());
+                        return objectMapper.writeValueAsBytes(jsonEncryptResponse(result));
+                    }));
+            cases.add(new Case(size, "encrypt", "cbor", cborEncrypt.length,
+                    cborMapper.writeValueAsBytes(BinaryEncryptedMessageResponse.from(jsonEncryptResponse(stored)))
+                            .length, () -> {
+                        BinaryEncryptionRequest request = cborMapper.readValue(cborEncrypt,
+                                BinaryEncryptionRequest.class);
+                        EncryptionResult result = encryptionService.encrypt(request.getMessage(),
+                                Base64.getEncoder().encodeToString(request.getKey()), request.getAlgorithm());
+                        return cborMapper.writeValueAsBytes(
+                                BinaryEncryptedMessageResponse.from(jsonEncryptResponse(result)));
+                    }));
+
+            cases.add(new Case(size, "decrypt", "crypto only", 0, 0,
+                    () -> encryptionService.decrypt(stored.getEncryptedContent(), base64Key,
+                            stored.getInitializationVector(), algorithm)));
+            cases.add(new Case(size, "decrypt", "json", jsonDecrypt.length,
+                    objectMapper.writeValueAsBytes(Map.of("decryptedMessage", message)).length, () -> {
+                        DecryptionRequest request = objectMapper.readValue(jsonDecrypt, DecryptionRequest.class);
+                        String plaintext = encryptionService.decrypt(stored.getEncryptedContent(), request.getKey(),
+                                stored.getInitializationVector(), algorithm);
+                        return objectMapper.writeValueAsBytes(Map.of("decryptedMessage", plaintext));
+                    }));
+            cases.add(new Case(size, "decrypt", "cbor", cborDecrypt.length,
+                    cborMapper.writeValueAsBytes(Map.of("decryptedMessage", message)).length, () -> {
+                        BinaryDecryptionRequest request = cborMapper.readValue(cborDecrypt,
+                                BinaryDecryptionRequest.class);
+                        String plaintext = encryptionService.decrypt(stored.getEncryptedContent(),
+                                Base64.getEncoder().encodeToString(request.getKey()),
+                                stored.getInitializationVector(), algorithm);
+                        return cborMapper.writeValueAsBytes(Map.of("decryptedMessage", plaintext));
+                    }));
+        }
+
+        // Warm every case up before measuring any, so that later cases do not inherit a better-compiled codec
+        for (Case c : cases) {
+            for (int i = 0; i < warmupIterations; i++) {
+                c.getCall().call();
+            }
+        }
+        List<Result> results = new ArrayList<>();
+        for (Case c : cases) {
+            results.add(measure(c));
+        }
+
+        print(results);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.now().toString());
+        report.put("algorithm", algorithm);
+        report.put("iterations", iterations);
+        report.put("results", results);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        logger.info("Wire format benchmark report written to {}", file.getAbsolutePath());
+    }
+
+    private EncryptedMessageResponse jsonEncryptResponse(EncryptionResult result) {
+        return new EncryptedMessageResponse(1L, "Benchmark", result.getEncryptedContent(), algorithm,
+                LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+
+    // Thread CPU time over the whole run, so that GC and JIT threads are not counted. The heap
+    // bytes allocated per request are what the young generation has to collect.
+    private Result measure(Case c) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long allocatedStart = threads.getCurrentThreadAllocatedBytes();
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            c.getCall().call();
+        }
+        double cpuMicros = (threads.getCurrentThreadCpuTime() - cpuStart) / 1e3 / iterations;
+        double wallMicros = (System.nanoTime() - wallStart) / 1e3 / iterations;
+        long allocatedBytes = (threads.getCurrentThreadAllocatedBytes() - allocatedStart) / iterations;
+        return new Result(c.getMessageBytes(), c.getEndpoint(), c.getFormat(), c.getRequestBytes(),
+                c.getResponseBytes(), cpuMicros, wallMicros, allocatedBytes);
+    }
+
+    private void print(List<Result> results) {
+        StringBuilder table = new StringBuilder(String.format("%n%8s %-8s %-12s %10s %10s %12s %12s %12s%n",
+                "message", "endpoint", "format", "req bytes", "resp bytes", "cpu us/req", "wall us/req",
+                "alloc B/req"));
+        for (Result result : results) {
+            table.append(String.format("%8d %-8s %-12s %10d %10d %12.1f %12.1f %12d%n", result.getMessageBytes(),
+                    result.getEndpoint(), result.getFormat(), result.getRequestBytes(), result.getResponseBytes(),
+                    result.getCpuMicros(), result.getWallMicros(), result.getAllocatedBytes()));
+        }
+        logger.info("Wire format benchmark results:{}", table);
+    }
+
+    private static String text(int size, SplittableRandom random) {
+        StringBuilder text = new StringBuilder(size);
+        while (text.length() < size) {
+            text.append(MessageDataGenerator.WORDS[random.nextInt(MessageDataGenerator.WORDS.length)]).append(' ');
+        }
+        return text.substring(0, size);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Case {
+        private final int messageBytes;
+        private final String endpoint;
+        private final String format;
+        private final int requestBytes;
+        private final int responseBytes;
+        private final Callable<?> call;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final int messageBytes;
+        private final String endpoint;
+        private final String format;
+        private final int requestBytes;
+        private final int responseBytes;
+        private final double cpuMicros;
+        private final double wallMicros;
+        private final long allocatedBytes;
+    }
+}
@@ -0,0 +1,84 @@
+package com.cybersecurity.encryption.buffer;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A pooled array from {@link SecureBufferPool} for key material, plaintext or ciphertext; its
+ * contents are the first {@link #length()} bytes. Closing it zeroes the array and returns it to
+ * the pool, so the array must not be used afterwards. A buffer that is garbage collected without
+ * being closed is zeroed too and reported as a leak.
+ */
+public final class SecureBuffer implements AutoCloseable {
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final byte[] array;
+    private int length;
+    private final Release release;
+    private final Cleaner.Cleanable cleanable;
+
+    SecureBuffer(SecureBufferPool pool, byte[] array, int length, Throwable acquiredAt) {
+        this.array = array;
+        this.length = length;
+        this.release = new Release(pool, array, acquiredAt);
+        this.cleanable = cleaner.register(this, release);
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        if (length < 0 || length > array.length) {
+            throw new IndexOutOfBoundsException("Length " + length + " outside a buffer of " + array.length + " bytes");
+        }
+        this.length = length;
+    }
+
+    /** Same as {@code new String(bytes, charset)} over the contents. */
+    public String decode(Charset charset) {
+        return new String(array, 0, length, charset);
+    }
+
+    public String toBase64() {
+        return new String(Base64.getEncoder().encode(ByteBuffer.wrap(array, 0, length)).array(),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() {
+        release.closed = true;
+        cleanable.clean();
+    }
+
+    // Holds no reference to the SecureBuffer, so that the cleaner can run it once the buffer is unreachable
+    private static class Release implements Runnable {
+
+        private final SecureBufferPool pool;
+        private final byte[] array;
+        private final Throwable acquiredAt;
+        private volatile boolean closed;
+
+        Release(SecureBufferPool pool, byte[] array, Throwable acquiredAt) {
+            this.pool = pool;
+            this.array = array;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                pool.leaked(acquiredAt);
+            }
+            pool.release(array);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.cybersecurity.encryption.buffer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable arrays for the key material, plaintext and ciphertext of one crypto operation. They
+ * are allocated once and then recycled, so a request no longer leaves its plaintext behind in
+ * the young generation, and every array is zeroed when it is released. Sizes are rounded up to a
+ * power of two from {@value #MIN_POOLED_BYTES} bytes up to {@code app.secure-buffers.max-pooled-bytes},
+ * and up to {@code max-pooled-per-size} free arrays of each size are kept. Larger arrays are
+ * allocated for one use.
+ * <p>
+ * The arrays are on the heap: the JDK's ciphers only run their fast paths on arrays, and on
+ * direct buffers they copy the data through temporary arrays, which neither saves allocation nor
+ * zeroes the copies.
+ */
+@Component
+public class SecureBufferPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecureBufferPool.class);
+
+    private static final int MIN_POOLED_BYTES = 256;
+
+    private static final int ENCODE_CHUNK_CHARS = 1024;
+
+    @Value("${app.secure-buffers.max-pooled-bytes:262144}")
+    private int maxPooledBytes;
+
+    @Value("${app.secure-buffers.max-pooled-per-size:16}")
+    private int maxPooledPerSize;
+
+    // Records where each buffer was acquired, for the leak report; costs a stack trace per buffer
+    @Value("${app.secure-buffers.leak-detection:false}")
+    private boolean leakDetection;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Indexed by size class: MIN_POOLED_BYTES << index
+    private final List<ConcurrentLinkedDeque<byte[]>> free = new ArrayList<>();
+    private AtomicInteger[] freeCounts;
+
+    private final AtomicLong outstanding = new AtomicLong();
+    private Counter leaks;
+
+    // Zeroed after every use
+    private final ThreadLocal<char[]> encodeChunks = ThreadLocal.withInitial(() -> new char[ENCODE_CHUNK_CHARS]);
+
+    @PostConstruct
+    void init() {
+        if (Integer.bitCount(maxPooledBytes) != 1 || maxPooledBytes < MIN_POOLED_BYTES) {
+            throw new IllegalStateException("app.secure-buffers.max-pooled-bytes must be a power of two of at least "
+                    + MIN_POOLED_BYTES);
+        }
+        int sizeClasses = Integer.numberOfTrailingZeros(maxPooledBytes / MIN_POOLED_BYTES) + 1;
+        freeCounts = new AtomicInteger[sizeClasses];
+        for (int i = 0; i < sizeClasses; i++) {
+            free.add(new ConcurrentLinkedDeque<>());
+            freeCounts[i] = new AtomicInteger();
+        }
+        Gauge.builder("secure.buffers.outstanding", outstanding, AtomicLong::get)
+                .description("Secure buffers acquired and not yet released").register(meterRegistry);
+        Gauge.builder("secure.buffers.pooled", this, SecureBufferPool::pooledBytes).baseUnit("bytes")
+                .description("Memory held by free secure buffers").register(meterRegistry);
+        leaks = Counter.builder("secure.buffers.leaks")
+                .description("Secure buffers garbage collected without being released").register(meterRegistry);
+    }
+
+    /** A zeroed buffer of {@code size} bytes; the array may be longer. */
+    public SecureBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        byte[] array = sizeClass < 0 ? null : free.get(sizeClass).pollFirst();
+        if (array != null) {
+            freeCounts[sizeClass].decrementAndGet();
+        } else {
+            array = new byte[sizeClass < 0 ? size : MIN_POOLED_BYTES << sizeClass];
+        }
+        outstanding.incrementAndGet();
+        return new SecureBuffer(this, array, size,
+                leakDetection ? new Throwable("Secure buffer acquired here") : null);
+    }
+
+    /** Same bytes as {@code text.getBytes(charset)}. */
+    public SecureBuffer encode(String text, Charset charset) {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        SecureBuffer encoded = acquire((int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar()));
+        ByteBuffer out = ByteBuffer.wrap(encoded.array(), 0, encoded.length());
+        // Encoders only take their fast path on arrays, and read a String one char at a time
+        char[] chunk = encodeChunks.get();
+        try {
+            CoderResult result;
+            int start = 0;
+            do {
+                int end = Math.min(text.length(), start + chunk.length);
+                text.getChars(start, end, chunk, 0);
+                CharBuffer in = CharBuffer.wrap(chunk, 0, end - start);
+                result = encoder.encode(in, out, end == text.length());
+                // A high surrogate at the end of a chunk is left for the next one
+                start = end - in.remaining();
+            } while (start < text.length() && result.isUnderflow());
+            if (result.isUnderflow()) {
+                result = encoder.flush(out);
+            }
+            if (!result.isUnderflow()) {
+                encoded.close();
+                throw new IllegalStateException("Encoding with " + charset + " did not fit the buffer: " + result);
+            }
+        } finally {
+            Arrays.fill(chunk, '\0');
+        }
+        encoded.setLength(out.position());
+        return encoded;
+    }
+
+    /** Decodes Base64 like {@link Base64.Decoder#decode(String)}, with its exceptions. */
+    public SecureBuffer decodeBase64(String encoded) {
+        byte[] source = encoded.getBytes(StandardCharsets.ISO_8859_1);
+        SecureBuffer decoded = acquire((source.length + 3) / 4 * 3);
+        try {
+            decoded.setLength(Base64.getDecoder().decode(source, decoded.array()));
+        } catch (RuntimeException e) {
+            decoded.close();
+            throw e;
+        }
+        return decoded;
+    }
+
+    void release(byte[] array) {
+        Arrays.fill(array, (byte) 0);
+        outstanding.decrementAndGet();
+        // Arrays above the largest size were allocated for one use and are left to the garbage collector
+        int sizeClass = sizeClass(array.length);
+        if (sizeClass < 0) {
+            return;
+        }
+        if (freeCounts[sizeClass].incrementAndGet() <= maxPooledPerSize) {
+            free.get(sizeClass).offerFirst(array);
+        } else {
+            freeCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    void leaked(Throwable acquiredAt) {
+        leaks.increment();
+        if (acquiredAt != null) {
+            logger.warn("A secure buffer was garbage collected without being released; zeroed it", acquiredAt);
+        } else {
+            logger.warn("A secure buffer was garbage collected without being released; zeroed it."
+                    + " Set app.secure-buffers.leak-detection=true to see where it was acquired");
+        }
+    }
+
+    private int sizeClass(int size) {
+        if (size > maxPooledBytes) {
+            return -1;
+        }
+        int rounded = Math.max(MIN_POOLED_BYTES, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        return Integer.numberOfTrailingZeros(rounded / MIN_POOLED_BYTES);
+    }
+
+    private double pooledBytes() {
+        double bytes = 0;
+        for (int i = 0; i < freeCounts.length; i++) {
+            bytes += (double) Math.max(0, freeCounts[i].get()) * (MIN_POOLED_BYTES << i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,174 @@
+package com.cybersecurity.encryption.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * A bounded executor that keeps one class of work from starving another. When both
+ * the threads and the queue are full, the rejection policy decides whether the task
+ * fails with {@link BulkheadFullException} ("abort") or runs on the calling thread
+ * ("caller-runs").
+ * <p>
+ * With virtual threads (Java 21+) every task gets its own virtual thread instead of a
+ * pooled worker. The limits stay the same: at most {@code threads} tasks run at once
+ * and at most {@code queueCapacity} more wait for a slot, parked rather than queued.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int capacity;
+    private final Counter rejections;
+    private final boolean callerRuns;
+
+    // Platform mode
+    private ThreadPoolTaskExecutor executor;
+
+    // Virtual mode
+    private VirtualThreadTaskExecutor virtualExecutor;
+    private Semaphore admitted;
+    private Semaphore running;
+
+    public Bulkhead(String name, int threads, int queueCapacity, String rejectionPolicy, MeterRegistry registry) {
+        this(name, threads, queueCapacity, rejectionPolicy, false, registry);
+    }
+
+    public Bulkhead(String name, int threads, int queueCapacity, String rejectionPolicy, boolean virtualThreads,
+            MeterRegistry registry) {
+        this.name = name;
+        this.capacity = threads + queueCapacity;
+        this.rejections = Counter.builder("bulkhead.rejections")
+                .tag("bulkhead", name)
+                .register(registry);
+
+        RejectedExecutionHandler policy = switch (rejectionPolicy) {
+            case "abort" -> new ThreadPoolExecutor.AbortPolicy();
+            case "caller-runs" -> new ThreadPoolExecutor.CallerRunsPolicy();
+            default -> throw new IllegalArgumentException(
+                    "Unknown rejection policy '" + rejectionPolicy + "' for bulkhead " + name);
+        };
+        this.callerRuns = policy instanceof ThreadPoolExecutor.CallerRunsPolicy;
+
+        if (virtualThreads) {
+            virtualExecutor = new VirtualThreadTaskExecutor(name + "-");
+            admitted = new Semaphore(capacity);
+            running = new Semaphore(threads);
+            Gauge.builder("bulkhead.saturation", admitted, a -> (double) (capacity - a.availablePermits()) / capacity)
+                    .tag("bulkhead", name)
+                    .description("Busy threads plus queued tasks as a fraction of the bulkhead capacity")
+                    .register(registry);
+            return;
+        }
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(Bulkhead::propagateContext);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejections.increment();
+            policy.rejectedExecution(task, pool);
+        });
+        executor.initialize();
+
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        new ExecutorServiceMetrics(pool, name, "bulkhead", List.of()).bindTo(registry);
+        Gauge.builder("bulkhead.saturation", pool, p -> (double) (p.getActiveCount() + p.getQueue().size()) / capacity)
+                .tag("bulkhead", name)
+                .description("Busy threads plus queued tasks as a fraction of the bulkhead capacity")
+                .register(registry);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (virtualExecutor != null) {
+            return submitVirtual(task);
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.failedFuture(new BulkheadFullException(name));
+        }
+    }
+
+    private <T> CompletableFuture<T> submitVirtual(Supplier<T> task) {
+        if (!admitted.tryAcquire()) {
+            rejections.increment();
+            if (!callerRuns) {
+                return CompletableFuture.failedFuture(new BulkheadFullException(name));
+            }
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                // Parks the virtual thread, not a carrier: Semaphore is built on j.u.c locks.
+                running.acquireUninterruptibly();
+                try {
+                    return task.get();
+                } finally {
+                    running.release();
+                    admitted.release();
+                }
+            }, command -> virtualExecutor.execute(propagateContext(command)));
+        } catch (RuntimeException e) {
+            admitted.release();
+            return CompletableFuture.failedFuture(new BulkheadFullException(name));
+        }
+    }
+
+    // Carries the request ID and other MDC entries over to the worker thread, and the
+    // caller's security context, which decides whether a read may go to the replica.
+    private static Runnable propagateContext(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+            if (context != null) {
+                MDC.setContextMap(context);
+            } else {
+                MDC.clear();
+            }
+            SecurityContextHolder.setContext(securityContext);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    MDC.setContextMap(previous);
+                } else {
+                    MDC.clear();
+                }
+                SecurityContextHolder.setContext(previousSecurityContext);
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
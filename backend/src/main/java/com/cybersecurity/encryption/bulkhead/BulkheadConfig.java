@@ -0,0 +1,53 @@
+package com.cybersecurity.encryption.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BulkheadConfig {
+
+    // CPU-bound: encrypt and decrypt. Sized to the cores by default.
+    @Value("${app.bulkhead.crypto.threads:0}")
+    private int cryptoThreads;
+
+    @Value("${app.bulkhead.crypto.queue-capacity:100}")
+    private int cryptoQueueCapacity;
+
+    @Value("${app.bulkhead.crypto.rejection-policy:abort}")
+    private String cryptoRejectionPolicy;
+
+    // I/O-bound: listings and stats. Sized to the connection pool by default.
+    @Value("${app.bulkhead.read.threads:10}")
+    private int readThreads;
+
+    @Value("${app.bulkhead.read.queue-capacity:200}")
+    private int readQueueCapacity;
+
+    @Value("${app.bulkhead.read.rejection-policy:abort}")
+    private String readRejectionPolicy;
+
+    @Autowired
+    private Environment environment;
+
+    @Bean
+    public Bulkhead cryptoBulkhead(MeterRegistry meterRegistry) {
+        int threads = cryptoThreads > 0 ? cryptoThreads : Runtime.getRuntime().availableProcessors();
+        return new Bulkhead("crypto", threads, cryptoQueueCapacity, cryptoRejectionPolicy, meterRegistry);
+    }
+
+    @Bean
+    public Bulkhead readBulkhead(MeterRegistry meterRegistry) {
+        // Follows spring.threads.virtual.enabled, which only takes effect on Java 21+. Crypto
+        // stays on platform threads: it is CPU-bound and gains nothing from virtual threads.
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        return new Bulkhead("read", readThreads, readQueueCapacity, readRejectionPolicy, virtualThreads,
+                meterRegistry);
+    }
+}
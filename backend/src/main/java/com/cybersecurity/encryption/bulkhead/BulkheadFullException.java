@@ -0,0 +1,8 @@
+package com.cybersecurity.encryption.bulkhead;
+
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String bulkhead) {
+        super("The " + bulkhead + " bulkhead is saturated, try again later");
+    }
+}
@@ -0,0 +1,15 @@
+package com.cybersecurity.encryption.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries per-user cache invalidations between nodes. The default implementation
+ * only delivers within the current JVM; a multi-node deployment plugs in a
+ * broker-backed implementation and selects it with {@code app.cache.invalidation-bus}.
+ */
+public interface CacheInvalidationBus {
+
+    void publish(Long userId);
+
+    void subscribe(Consumer<Long> listener);
+}
@@ -0,0 +1,37 @@
+package com.cybersecurity.encryption.cache;
+
+import com.github.benmanes.caffeine.jcache.CacheManagerImpl;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.Properties;
+
+/**
+ * Hands Hibernate a ready-made Caffeine JCache manager for the second-level cache.
+ * Passing the config location as hibernate.javax.cache.uri instead only works where
+ * something registers a "classpath:" URL handler, as embedded Tomcat does and Netty
+ * does not; Caffeine resolves that URI itself.
+ * <p>
+ * The manager is created directly rather than through the provider, which hands out one
+ * manager per URI and class loader: two application contexts in one JVM, as in the tests,
+ * would otherwise share cached entities across their databases.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        return new CacheManagerImpl(Caching.getCachingProvider(CaffeineCachingProvider.class.getName()), false,
+                URI.create("classpath:hibernate-jcache.conf"), getClass().getClassLoader(), new Properties());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+    }
+}
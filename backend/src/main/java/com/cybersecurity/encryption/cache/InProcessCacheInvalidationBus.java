@@ -0,0 +1,27 @@
+package com.cybersecurity.encryption.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation-bus", havingValue = "in-process", matchIfMissing = true)
+public class InProcessCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final List<Consumer<Long>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Long userId) {
+        for (Consumer<Long> listener : listeners) {
+            listener.accept(userId);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Long> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,115 @@
+package com.cybersecurity.encryption.cache;
+
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.event.MessageCreatedEvent;
+import com.cybersecurity.encryption.event.MessageDeletedEvent;
+import com.cybersecurity.encryption.event.MessagesImportedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-user cache for the first page of the message listing and the message count
+ * shown on the dashboard. Entries are dropped whenever messages are created, imported
+ * or deleted for the user, on this node and - through {@link CacheInvalidationBus} -
+ * on every other node.
+ */
+@Component
+public class UserMessageCache {
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cache.messages.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${app.cache.messages.ttl-ms:60000}")
+    private long ttlMs;
+
+    private Cache<Long, Page<EncryptedMessageResponse>> firstPages;
+
+    private Cache<Long, Long> messageCounts;
+
+    // Bumped on every invalidation so that a load which raced with a write is not cached.
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        firstPages = newCache();
+        messageCounts = newCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, firstPages, "messages.first-page");
+        CaffeineCacheMetrics.monitor(meterRegistry, messageCounts, "messages.count");
+        invalidationBus.subscribe(this::evict);
+    }
+
+    private <V> Cache<Long, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    public Page<EncryptedMessageResponse> getFirstPage(Long userId, int pageSize,
+            Supplier<Page<EncryptedMessageResponse>> loader) {
+        Page<EncryptedMessageResponse> cached = firstPages.getIfPresent(userId);
+        if (cached != null && cached.getSize() == pageSize) {
+            return cached;
+        }
+        long before = generation.get();
+        Page<EncryptedMessageResponse> loaded = loader.get();
+        if (generation.get() == before) {
+            firstPages.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    public Long getMessageCount(Long userId, Supplier<Long> loader) {
+        Long cached = messageCounts.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long before = generation.get();
+        Long loaded = loader.get();
+        if (generation.get() == before) {
+            messageCounts.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        invalidationBus.publish(event.getUserId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        invalidationBus.publish(event.getUserId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessagesImported(MessagesImportedEvent event) {
+        invalidationBus.publish(event.getUserId());
+    }
+
+    public void evict(Long userId) {
+        generation.incrementAndGet();
+        firstPages.invalidate(userId);
+        messageCounts.invalidate(userId);
+    }
+}
@@ -1,67 +1,220 @@
 package com.cybersecurity.encryption.controller;
 
+import com.cybersecurity.encryption.bulkhead.Bulkhead;
+import com.cybersecurity.encryption.bulkhead.BulkheadFullException;
 import com.cybersecurity.encryption.dto.*;
 import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.idempotency.IdempotencyService;
+import com.cybersecurity.encryption.service.BlindIndexService;
 import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.service.MessageExportService;
+import com.cybersecurity.encryption.service.MessageImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api")
 public class EncryptionController {
 
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private BlindIndexService blindIndexService;
+
+    @Autowired
+    private MessageExportService messageExportService;
+
+    @Autowired
+    private MessageImportService messageImportService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("cryptoBulkhead")
+    private Bulkhead cryptoBulkhead;
+
+    @Autowired
+    @Qualifier("readBulkhead")
+    private Bulkhead readBulkhead;
+
     @PostMapping("/encrypt")
-    public ResponseEntity<?> encryptMessage(@Valid @RequestBody EncryptionRequest request,
+    public CompletableFuture<ResponseEntity<?>> encryptMessage(@Valid @RequestBody EncryptionRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
-        try {
-            User user = (User) authentication.getPrincipal();
-            EncryptedMessageResponse response = encryptionService.createEncryptedMessage(request, user);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Encryption failed: " + e.getMessage()));
-        }
+        User user = (User) authentication.getPrincipal();
+        return idempotencyService.execute(user.getId(), idempotencyKey, request,
+                () -> cryptoBulkhead.submit(() -> encryptionService.createEncryptedMessage(request, user))
+                        .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                        .exceptionally(e -> failure(e, "Encryption failed: ")));
+    }
+
+    @PostMapping(value = "/encrypt", consumes = MediaType.APPLICATION_CBOR_VALUE,
+            produces = MediaType.APPLICATION_CBOR_VALUE)
+    public CompletableFuture<ResponseEntity<?>> encryptMessageBinary(@Valid @RequestBody BinaryEncryptionRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        EncryptionRequest encryptionRequest = new EncryptionRequest(request.getTitle(), request.getMessage(),
+                request.getAlgorithm(), Base64.getEncoder().encodeToString(request.getKey()), false);
+        return idempotencyService.execute(user.getId(), idempotencyKey, request, MediaType.APPLICATION_CBOR,
+                () -> cryptoBulkhead.submit(() -> BinaryEncryptedMessageResponse.from(
+                                encryptionService.createEncryptedMessage(encryptionRequest, user)))
+                        .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                        .exceptionally(e -> failure(e, "Encryption failed: ")));
     }
 
     @PostMapping("/decrypt")
-    public ResponseEntity<?> decryptMessage(@Valid @RequestBody DecryptionRequest request,
+    public CompletableFuture<ResponseEntity<?>> decryptMessage(@Valid @RequestBody DecryptionRequest request,
             Authentication authentication) {
-        try {
+        return cryptoBulkhead.submit(() -> {
             User user = (User) authentication.getPrincipal();
-            String decryptedContent = encryptionService.decryptUserMessage(request, user);
-            return ResponseEntity.ok(Map.of("decryptedMessage", decryptedContent));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Decryption failed: " + e.getMessage()));
-        }
+            return encryptionService.decryptUserMessage(request, user);
+        }).<ResponseEntity<?>>thenApply(decryptedContent -> ResponseEntity.ok(Map.of("decryptedMessage", decryptedContent)))
+                .exceptionally(e -> failure(e, "Decryption failed: "));
+    }
+
+    @PostMapping(value = "/decrypt", consumes = MediaType.APPLICATION_CBOR_VALUE,
+            produces = MediaType.APPLICATION_CBOR_VALUE)
+    public CompletableFuture<ResponseEntity<?>> decryptMessageBinary(@Valid @RequestBody BinaryDecryptionRequest request,
+            Authentication authentication) {
+        DecryptionRequest decryptionRequest = new DecryptionRequest(request.getMessageId(),
+                Base64.getEncoder().encodeToString(request.getKey()));
+        return cryptoBulkhead.submit(() -> {
+            User user = (User) authentication.getPrincipal();
+            return encryptionService.decryptUserMessage(decryptionRequest, user);
+        }).<ResponseEntity<?>>thenApply(decryptedContent -> ResponseEntity.ok(Map.of("decryptedMessage", decryptedContent)))
+                .exceptionally(e -> failure(e, "Decryption failed: "));
     }
 
     @GetMapping("/messages")
-    public ResponseEntity<?> getMessages(@RequestParam(defaultValue = "0") int page,
+    public CompletableFuture<ResponseEntity<?>> getMessages(@RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String search,
             Authentication authentication) {
-        try {
+        return readBulkhead.submit(() -> {
             User user = (User) authentication.getPrincipal();
             Pageable pageable = PageRequest.of(page, size);
-            var response = encryptionService.getUserMessages(user, pageable, search);
-            return ResponseEntity.ok(response);
+            return encryptionService.getUserMessages(user, pageable, search);
+        }).<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> failure(e, "Failed to fetch messages: "));
+    }
+
+    @GetMapping("/messages/search")
+    public CompletableFuture<ResponseEntity<?>> searchMessages(@RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            Authentication authentication) {
+        return readBulkhead.submit(() -> {
+            User user = (User) authentication.getPrincipal();
+            return blindIndexService.search(user.getId(), q, PageRequest.of(page, size));
+        }).<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> failure(e, "Search failed: "));
+    }
+
+    @GetMapping("/messages/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(Authentication authentication,
+            HttpServletRequest request) {
+        if (!messageExportService.tryAcquire()) {
+            Map<String, String> error = Map.of("error", new BulkheadFullException("export").getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, error));
+        }
+        User user = (User) authentication.getPrincipal();
+        // The stream outlives the default async timeout, and the slot is freed however it ends
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(MessageExportService.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        ((AsyncWebRequest) webRequest).setTimeout(messageExportService.getTimeoutMs());
+                    }
+
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        messageExportService.release();
+                    }
+                });
+        StreamingResponseBody body = out -> messageExportService.exportUserMessages(user.getId(), out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"vault-" + user.getUsername() + "-" + LocalDate.now() + ".ndjson\"")
+                .body(body);
+    }
+
+    @PostMapping(value = "/messages/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importMessages(@RequestParam(required = false) String importId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication, HttpServletRequest request) {
+        if (!messageImportService.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", new BulkheadFullException("import").getMessage()));
+        }
+        // An import is resumable by its ID, so the idempotency key serves as one
+        String id = importId != null ? importId : idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        try {
+            User user = (User) authentication.getPrincipal();
+            return ResponseEntity.ok(messageImportService.importMessages(user.getId(), id, request.getInputStream()));
         } catch (Exception e) {
+            // The import ID lets the client resume from the last checkpoint
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Failed to fetch messages: " + e.getMessage()));
+                    .body(Map.of("error", "Import failed: " + e.getMessage(), "importId", id));
+        } finally {
+            messageImportService.release();
         }
     }
 
+    @GetMapping("/messages/import/{importId}")
+    public ResponseEntity<?> getImportStatus(@PathVariable String importId, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        return messageImportService.getCheckpoint(user.getId(), importId)
+                .<ResponseEntity<?>>map(checkpoint -> {
+                    Map<String, Object> status = new LinkedHashMap<>();
+                    status.put("importId", importId);
+                    status.put("lastLine", checkpoint.getLastPosition());
+                    status.put("imported", checkpoint.getProcessed());
+                    status.put("rejected", checkpoint.getRejected());
+                    status.put("completed", checkpoint.isCompleted());
+                    status.put("updatedAt", checkpoint.getUpdatedAt());
+                    return ResponseEntity.ok(status);
+                })
+                .orElseGet(() -> ResponseEntity.badRequest().body(Map.of("error", "Import not found")));
+    }
+
     @DeleteMapping("/messages/{id}")
     public ResponseEntity<?> deleteMessage(@PathVariable Long id, Authentication authentication) {
         try {
@@ -75,14 +228,22 @@ public class EncryptionController {
     }
 
     @GetMapping("/user/stats")
-    public ResponseEntity<?> getUserStats(Authentication authentication) {
-        try {
+    public CompletableFuture<ResponseEntity<?>> getUserStats(Authentication authentication) {
+        return readBulkhead.submit(() -> {
             User user = (User) authentication.getPrincipal();
-            var stats = encryptionService.getUserStats(user);
-            return ResponseEntity.ok(stats);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Failed to fetch user stats: " + e.getMessage()));
+            return encryptionService.getUserStats(user);
+        }).<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> failure(e, "Failed to fetch user stats: "));
+    }
+
+    private ResponseEntity<?> failure(Throwable e, String prefix) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof BulkheadFullException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", cause.getMessage()));
         }
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", prefix + cause.getMessage()));
     }
 }
@@ -0,0 +1,149 @@
+package com.cybersecurity.encryption.controller;
+
+import com.cybersecurity.encryption.bulkhead.BulkheadFullException;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.files.FileEncryptionService;
+import com.cybersecurity.encryption.files.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encrypted files: {@code POST /api/files} encrypts a multipart upload as it streams in, and
+ * {@code GET /api/files/{id}} returns the stored ciphertext, with Range support, without copying
+ * it through the heap.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/files")
+public class FileController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FileEncryptionService fileEncryptionService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadFile(Authentication authentication, HttpServletRequest request) {
+        if (!fileEncryptionService.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", new BulkheadFullException("upload").getMessage()));
+        }
+        try {
+            User user = (User) authentication.getPrincipal();
+            return ResponseEntity.ok(fileEncryptionService.upload(request, user));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Upload failed: " + e.getMessage()));
+        } finally {
+            fileEncryptionService.release();
+        }
+    }
+
+    /**
+     * Writes the ciphertext itself, so it returns a body only for errors. A single byte range is
+     * honoured; a request for several ranges gets the whole file.
+     */
+    @RequestMapping(value = "/{id}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public ResponseEntity<?> downloadFile(@PathVariable Long id, Authentication authentication,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StoredFile file;
+        try {
+            file = fileEncryptionService.findFile(id, (User) authentication.getPrincipal());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Download failed: " + e.getMessage()));
+        }
+        long length = file.getLength();
+        String etag = "\"" + id + "-" + length + "\"";
+        long start = 0;
+        long end = length;
+        boolean partial = false;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                HttpRange requested = ranges.get(0);
+                if (length == 0 || requested.getRangeStart(length) >= length) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                start = requested.getRangeStart(length);
+                end = requested.getRangeEnd(length) + 1;
+                partial = true;
+            }
+        }
+
+        response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(end - start);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        String filename = file.getTitle() + ".enc";
+        ContentDisposition.Builder disposition = ContentDisposition.attachment();
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(filename)) {
+            disposition.filename(filename);
+        } else {
+            disposition.filename(filename, StandardCharsets.UTF_8);
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.build().toString());
+        response.setHeader("X-Encryption-Algorithm", file.getAlgorithm().name());
+        response.setHeader("X-Initialization-Vector", file.getInitializationVector());
+        if (file.getContentType() != null) {
+            response.setHeader("X-Original-Content-Type", file.getContentType());
+        }
+        if (HttpMethod.HEAD.matches(request.getMethod()) || start == end) {
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file with sendfile(2) once this handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+        return null;
+    }
+}
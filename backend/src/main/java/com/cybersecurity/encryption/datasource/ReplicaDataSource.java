@@ -0,0 +1,220 @@
+package com.cybersecurity.encryption.datasource;
+
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.event.MessageCreatedEvent;
+import com.cybersecurity.encryption.event.MessageDeletedEvent;
+import com.cybersecurity.encryption.event.MessagesImportedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Where read-only transactions get their connection. That is the replica unless it failed its
+ * last health check or the current user wrote within the read-your-writes window; then it is the
+ * primary, so users do not miss their own changes while the replica catches up.
+ */
+public class ReplicaDataSource extends AbstractDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    // Past this many recent writers the oldest are forgotten early and read from the replica
+    private static final int MAX_TRACKED_WRITERS = 100_000;
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final long healthCheckIntervalMs;
+    private final long maxLagSeconds;
+    private final Cache<Long, Boolean> recentWriters;
+
+    private final Counter replicaRoutes;
+    private final Counter unhealthyRoutes;
+    private final Counter recentWriteRoutes;
+    private final Counter failedRoutes;
+
+    private volatile boolean healthy = true;
+    private volatile boolean lagCheck = true;
+    private ThreadPoolTaskScheduler healthChecker;
+
+    public ReplicaDataSource(HikariDataSource primary, HikariDataSource replica, long healthCheckIntervalMs,
+            long maxLagSeconds, long readYourWritesMs, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+        this.maxLagSeconds = maxLagSeconds;
+        this.recentWriters = readYourWritesMs > 0
+                ? Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofMillis(readYourWritesMs))
+                        .maximumSize(MAX_TRACKED_WRITERS)
+                        .build()
+                : null;
+        this.replicaRoutes = route("replica", meterRegistry);
+        this.unhealthyRoutes = route("primary-unhealthy", meterRegistry);
+        this.recentWriteRoutes = route("primary-recent-write", meterRegistry);
+        this.failedRoutes = route("primary-connection-failed", meterRegistry);
+        Gauge.builder("datasource.replica.healthy", this, d -> d.healthy ? 1 : 0)
+                .description("Whether read-only transactions are sent to the replica").register(meterRegistry);
+    }
+
+    private static Counter route(String route, MeterRegistry meterRegistry) {
+        return Counter.builder("datasource.read.routes").tag("route", route)
+                .description("Connections handed to read-only transactions").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        healthChecker = new ThreadPoolTaskScheduler();
+        healthChecker.setThreadNamePrefix("replica-health-");
+        healthChecker.setDaemon(true);
+        healthChecker.initialize();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, Instant.now().plusMillis(healthCheckIntervalMs),
+                Duration.ofMillis(healthCheckIntervalMs));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdown();
+        }
+        replica.close();
+        primary.close();
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!healthy) {
+            unhealthyRoutes.increment();
+            return primary.getConnection();
+        }
+        Long userId = currentUserId();
+        if (recentWriters != null && userId != null && recentWriters.getIfPresent(userId) != null) {
+            recentWriteRoutes.increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.getConnection();
+            replicaRoutes.increment();
+            return connection;
+        } catch (SQLException e) {
+            // The next health check decides when the replica is used again
+            markDown(e.getMessage());
+            failedRoutes.increment();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections use the credentials of the configured pools");
+    }
+
+    // Before the caches are evicted, so a read that refills them already goes to the primary
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        recordWrite(event.getUserId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        recordWrite(event.getUserId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessagesImported(MessagesImportedEvent event) {
+        recordWrite(event.getUserId());
+    }
+
+    private void recordWrite(Long userId) {
+        if (recentWriters != null && userId != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    // Bulkhead workers carry the request's security context, so this is the caller's user
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof User user ? user.getId() : null;
+    }
+
+    void checkHealth() {
+        String problem;
+        try (Connection connection = replica.getConnection()) {
+            problem = lagProblem(connection);
+        } catch (SQLException e) {
+            problem = e.getMessage();
+        } catch (RuntimeException e) {
+            problem = e.toString();
+        }
+        if (problem != null) {
+            markDown(problem);
+        } else if (!healthy) {
+            healthy = true;
+            logger.info("Replica is available again; read-only transactions use it");
+        }
+    }
+
+    private void markDown(String problem) {
+        if (healthy) {
+            healthy = false;
+            logger.warn("Replica is unavailable, read-only transactions use the primary: {}", problem);
+        }
+    }
+
+    // MySQL 8.0.22+ only. A server that reports no replication status is taken as up to date,
+    // which is also what two standalone instances look like in a local setup.
+    private String lagProblem(Connection connection) throws SQLException {
+        if (maxLagSeconds <= 0 || !lagCheck) {
+            return null;
+        }
+        if (!connection.getMetaData().getDatabaseProductName().contains("MySQL")) {
+            lagCheck = false;
+            return null;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next()) {
+                return null;
+            }
+            long lag = rs.getLong("Seconds_Behind_Source");
+            if (rs.wasNull()) {
+                return "replication is not running";
+            }
+            return lag > maxLagSeconds ? "replica is " + lag + " s behind the primary" : null;
+        } catch (SQLSyntaxErrorException e) {
+            // Older server, or no REPLICATION CLIENT privilege
+            lagCheck = false;
+            logger.warn("Cannot read the replication lag, so only availability is checked: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cybersecurity.encryption.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary. The physical
+ * connection is only taken at the first statement, once the transaction has been marked
+ * read-only, so {@code @Transactional(readOnly = true)} is all a read path needs.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Value("${app.datasource.replica.url}")
+    private String url;
+
+    @Value("${app.datasource.replica.username:}")
+    private String username;
+
+    @Value("${app.datasource.replica.password:}")
+    private String password;
+
+    @Value("${app.datasource.replica.maximum-pool-size:10}")
+    private int maximumPoolSize;
+
+    // Kept short: a replica that does not answer should not hold up the fallback to the primary
+    @Value("${app.datasource.replica.connection-timeout-ms:1000}")
+    private long connectionTimeoutMs;
+
+    @Value("${app.datasource.replica.health-check-interval-ms:5000}")
+    private long healthCheckIntervalMs;
+
+    @Value("${app.datasource.replica.max-lag-seconds:30}")
+    private long maxLagSeconds;
+
+    @Value("${app.datasource.replica.read-your-writes-ms:5000}")
+    private long readYourWritesMs;
+
+    @Autowired
+    private Environment environment;
+
+    // Takes the place of Boot's pool, configured from the same spring.datasource.* properties
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaDataSource.getPrimary());
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setMetricRegistry(meterRegistry);
+
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username.isEmpty() ? properties.determineUsername() : username)
+                .password(username.isEmpty() ? properties.determinePassword() : password)
+                .build();
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        replica.setMaximumPoolSize(maximumPoolSize);
+        replica.setConnectionTimeout(connectionTimeoutMs);
+        // Start even when the replica is down; reads use the primary until it is back
+        replica.setInitializationFailTimeout(-1);
+        replica.setMetricRegistry(meterRegistry);
+        return new ReplicaDataSource(primary, replica, healthCheckIntervalMs, maxLagSeconds, readYourWritesMs,
+                meterRegistry);
+    }
+}
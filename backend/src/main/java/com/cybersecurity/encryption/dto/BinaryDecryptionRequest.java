@@ -0,0 +1,18 @@
+package com.cybersecurity.encryption.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** {@link DecryptionRequest} for {@code application/cbor}, with the key as raw bytes. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BinaryDecryptionRequest {
+    @NotNull(message = "Message ID is required")
+    private Long messageId;
+    @NotEmpty(message = "Key is required")
+    private byte[] key;
+}
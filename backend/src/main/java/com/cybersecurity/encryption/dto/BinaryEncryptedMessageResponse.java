@@ -0,0 +1,30 @@
+package com.cybersecurity.encryption.dto;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/** {@link EncryptedMessageResponse} for {@code application/cbor}, with the ciphertext as raw bytes. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BinaryEncryptedMessageResponse {
+    private Long id;
+    private String title;
+    private byte[] encryptedContent;
+    private EncryptionAlgorithm algorithm;
+    private LocalDateTime createdAt;
+
+    public static BinaryEncryptedMessageResponse from(EncryptedMessageResponse response) {
+        return new BinaryEncryptedMessageResponse(
+                response.getId(),
+                response.getTitle(),
+                Base64.getDecoder().decode(response.getEncryptedContent()),
+                response.getAlgorithm(),
+                response.getCreatedAt());
+    }
+}
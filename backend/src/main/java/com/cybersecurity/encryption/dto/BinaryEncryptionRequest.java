@@ -0,0 +1,24 @@
+package com.cybersecurity.encryption.dto;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** {@link EncryptionRequest} for {@code application/cbor}, with the key as raw bytes. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BinaryEncryptionRequest {
+    @NotBlank(message = "Title is required")
+    private String title;
+    @NotBlank(message = "Message is required")
+    private String message;
+    @NotNull(message = "Algorithm is required")
+    private EncryptionAlgorithm algorithm;
+    @NotEmpty(message = "Key is required")
+    private byte[] key;
+}
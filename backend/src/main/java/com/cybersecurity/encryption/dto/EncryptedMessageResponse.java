@@ -1,6 +1,7 @@
 package com.cybersecurity.encryption.dto;
 
 import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,4 +17,20 @@ public class EncryptedMessageResponse {
     private String encryptedContent;
     private EncryptionAlgorithm algorithm;
     private LocalDateTime createdAt;
+    // Only files have a size; their content is downloaded from /api/files/{id}
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long fileSize;
+    // Only set by the reactive deployment, which cannot read the segment store; the content is null
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean inSegmentStore;
+
+    public EncryptedMessageResponse(Long id, String title, String encryptedContent, EncryptionAlgorithm algorithm,
+            LocalDateTime createdAt) {
+        this(id, title, encryptedContent, algorithm, createdAt, null);
+    }
+
+    public EncryptedMessageResponse(Long id, String title, String encryptedContent, EncryptionAlgorithm algorithm,
+            LocalDateTime createdAt, Long fileSize) {
+        this(id, title, encryptedContent, algorithm, createdAt, fileSize, null);
+    }
 }
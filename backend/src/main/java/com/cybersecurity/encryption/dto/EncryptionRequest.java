@@ -19,4 +19,6 @@ public class EncryptionRequest {
     private EncryptionAlgorithm algorithm;
     @NotBlank(message = "Key is required")
     private String key;
+    // When set, key is a passphrase and the message key is derived from it
+    private boolean passphrase;
 }
@@ -0,0 +1,33 @@
+package com.cybersecurity.encryption.dto;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/** One line of an NDJSON import; the export format, so an export can be imported again. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ImportRecord {
+    @NotBlank(message = "Title is required")
+    @Size(max = 255, message = "Title must be at most 255 characters")
+    private String title;
+    @NotBlank(message = "Encrypted content is required")
+    private String encryptedContent;
+    @NotNull(message = "Algorithm is required")
+    private EncryptionAlgorithm algorithm;
+    @NotBlank(message = "Initialization vector is required")
+    private String initializationVector;
+    // Both set for a message keyed by a passphrase
+    private String kdfSalt;
+    private String kdfParams;
+    private LocalDateTime createdAt;
+}
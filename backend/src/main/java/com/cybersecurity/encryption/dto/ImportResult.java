@@ -0,0 +1,22 @@
+package com.cybersecurity.encryption.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImportResult {
+    private String importId;
+    private long linesRead;
+    private long skipped;
+    private long imported;
+    private long rejected;
+    private List<String> errors = new ArrayList<>();
+    private long totalImported;
+    private boolean completed;
+    private long elapsedMs;
+    private long rowsPerSecond;
+}
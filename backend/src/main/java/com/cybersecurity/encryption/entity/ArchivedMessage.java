@@ -0,0 +1,30 @@
+package com.cybersecurity.encryption.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ciphertext of a message moved to the cold tier by the MessageTieringJob. The message row stays
+ * in encrypted_messages as a stub with {@code archived_at} set; this table holds the raw bytes
+ * instead of Base64 and is only read by primary key.
+ */
+@Entity
+@Table(name = "encrypted_messages_archive")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedMessage {
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Lob
+    @Column(name = "content", nullable = false, length = 16 * 1024 * 1024)
+    private byte[] content;
+}
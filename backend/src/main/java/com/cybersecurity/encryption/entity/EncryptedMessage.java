@@ -6,11 +6,18 @@ import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "encrypted_messages")
+// Serves the per-user listing in created_at order and the per-user count without a sort
+@Table(name = "encrypted_messages", indexes = {
+        @Index(name = "idx_encrypted_messages_user_created", columnList = "user_id, created_at"),
+        // Finds the live records of a segment during compaction
+        @Index(name = "idx_encrypted_messages_segment", columnList = "segment_id")})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "messages")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,7 +30,8 @@ public class EncryptedMessage {
     @Column(length = 255)
     private String title;
 
-    @NotBlank
+    // Null for a file, whose ciphertext is in the EncryptedFileStore, and when it is in the
+    // SegmentStore or the cold tier
     @Column(columnDefinition = "TEXT")
     private String encryptedContent;
     @NotNull
@@ -34,11 +42,31 @@ public class EncryptedMessage {
     private String encryptedKey;
     @Column(name = "initialization_vector")
     private String initializationVector;
+    // Set when the key is derived from a passphrase: the salt in Base64 and the KDF parameters
+    @Column(name = "kdf_salt")
+    private String kdfSalt;
+    @Column(name = "kdf_params")
+    private String kdfParams;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+    // Plaintext size and declared type, set for files only
+    @Column(name = "file_size")
+    private Long fileSize;
+    @Column(name = "content_type")
+    private String contentType;
+    // Location of the ciphertext in the SegmentStore, if it is kept there
+    @Column(name = "segment_id")
+    private Integer segmentId;
+    @Column(name = "segment_offset")
+    private Long segmentOffset;
+    @Column(name = "segment_length")
+    private Integer segmentLength;
+    // Set when the ciphertext was moved to encrypted_messages_archive
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
 
     @PrePersist
     protected void onCreate() {
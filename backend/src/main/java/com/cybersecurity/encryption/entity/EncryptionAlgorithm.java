@@ -1,5 +1,5 @@
 package com.cybersecurity.encryption.entity;
 
 public enum EncryptionAlgorithm {
-    AES, CHACHA20, DES
+    AES, CHACHA20, DES, AES_GCM
 }
@@ -0,0 +1,43 @@
+package com.cybersecurity.encryption.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the shared idempotency store ({@code app.idempotency.store=jdbc}). It is read and
+ * written with plain JDBC, since claiming a key has to be a single insert.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", length = 300)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    // 0 while the first request is still running
+    @Column(name = "status_code", nullable = false)
+    private int statusCode;
+
+    @Lob
+    @Column(name = "response_body", length = 16 * 1024 * 1024)
+    private byte[] responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
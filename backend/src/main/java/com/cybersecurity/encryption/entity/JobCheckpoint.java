@@ -0,0 +1,49 @@
+package com.cybersecurity.encryption.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a long-running job, committed together with the work it describes so that
+ * a restarted job continues after the last committed position.
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_id", length = 150)
+    private String jobId;
+
+    @Column(name = "last_position", nullable = false)
+    private long lastPosition;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long rejected;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,46 @@
+package com.cybersecurity.encryption.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One keyed token of a word in a message, the blind index behind content search. The token
+ * is a truncated HMAC, so the table reveals which messages share a word but not the word.
+ */
+@Entity
+// Term lookups go through (user_id, token); deletes of a message through its primary key prefix
+@Table(name = "message_search_tokens", indexes = @Index(name = "idx_message_search_tokens_user_token",
+        columnList = "user_id, token, message_id"))
+@IdClass(MessageSearchToken.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchToken {
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Id
+    @Column(length = 32)
+    private String token;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long messageId;
+        private String token;
+    }
+}
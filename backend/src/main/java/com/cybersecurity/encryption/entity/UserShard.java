@@ -0,0 +1,36 @@
+package com.cybersecurity.encryption.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The shard holding a user's messages, kept on shard 0 next to the users. Users without an entry
+ * are on shard 0. While {@code movingTo} is set the user's data is being copied by the ShardMover
+ * and writes to their vault are refused.
+ */
+@Entity
+@Table(name = "user_shards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserShard {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(name = "moving_to")
+    private Integer movingTo;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
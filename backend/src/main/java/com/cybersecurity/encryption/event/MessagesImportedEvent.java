@@ -0,0 +1,11 @@
+package com.cybersecurity.encryption.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class MessagesImportedEvent {
+    private final Long userId;
+    private final int count;
+}
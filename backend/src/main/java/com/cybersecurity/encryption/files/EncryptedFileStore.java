@@ -0,0 +1,72 @@
+package com.cybersecurity.encryption.files;
+
+import com.cybersecurity.encryption.event.MessageDeletedEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Ciphertext of uploaded files on the local disk, one file per encrypted_messages row under
+ * {@code app.files.storage-dir}. An upload is written to a temporary file and moved into place
+ * once its row exists, so a download never sees a partial file.
+ */
+@Component
+public class EncryptedFileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EncryptedFileStore.class);
+
+    @Value("${app.files.storage-dir:data/files}")
+    private String storageDir;
+
+    private Path root;
+    private Path tempDir;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(storageDir).toAbsolutePath().normalize();
+        tempDir = Files.createDirectories(root.resolve("tmp"));
+    }
+
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(tempDir, "upload-", ".part");
+    }
+
+    public void moveIntoPlace(Path tempFile, long id) throws IOException {
+        Path target = path(id);
+        Files.createDirectories(target.getParent());
+        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 256 subdirectories keep each directory small
+    public Path path(long id) {
+        return root.resolve(String.format("%02x", id & 0xff)).resolve(id + ".enc");
+    }
+
+    public void delete(long id) {
+        deleteQuietly(path(id));
+    }
+
+    public void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Text messages have no file, so for them this finds nothing to delete
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        delete(event.getMessageId());
+    }
+}
@@ -0,0 +1,278 @@
+package com.cybersecurity.encryption.files;
+
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.entity.EncryptedMessage;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.event.MessageCreatedEvent;
+import com.cybersecurity.encryption.repository.EncryptedMessageRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.service.EncryptionService.EncryptionResult;
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores files of any size encrypted. The multipart body is parsed as a stream and the file
+ * part is encrypted into the {@link EncryptedFileStore} as it arrives, so the plaintext is never
+ * buffered whole or written to disk. The encrypted_messages row holds only the metadata: title,
+ * algorithm, key, IV, size and content type, with no content.
+ */
+@Service
+public class FileEncryptionService {
+
+    private static final int MAX_FIELD_BYTES = 1024;
+
+    // Headers of one part, e.g. Content-Disposition with a long file name
+    private static final int MAX_PART_HEADER_BYTES = 2048;
+
+    // algorithm, key, title and file, with room for fields a client adds
+    private static final int MAX_PARTS = 16;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private EncryptedFileStore fileStore;
+
+    @Autowired
+    private EncryptedMessageRepository messageRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.files.max-size:2147483648}")
+    private long maxSize;
+
+    @Value("${app.files.max-concurrent-uploads:4}")
+    private int maxConcurrentUploads;
+
+    private Semaphore uploadPermits;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        uploadPermits = new Semaphore(maxConcurrentUploads);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Claims one of {@code app.files.max-concurrent-uploads} slots; an upload holds its request
+     * thread for as long as the client takes to send it. Pair every success with {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        return uploadPermits.tryAcquire();
+    }
+
+    public void release() {
+        uploadPermits.release();
+    }
+
+    /**
+     * Encrypts the part named {@code file}. The fields {@code algorithm}, {@code key} and the
+     * optional {@code title} are read as they stream past, so they must come before it.
+     */
+    public EncryptedMessageResponse upload(HttpServletRequest request, User user) throws IOException {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new RuntimeException("Expected a multipart/form-data request");
+        }
+        Map<String, String> fields = new HashMap<>();
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        // Explicit, so that neither a header block nor a run of small parts can grow without bound
+        upload.setMaxPartHeaderSize(MAX_PART_HEADER_BYTES);
+        upload.setMaxFileSize(maxSize);
+        upload.setMaxSize(maxSize + MAX_PARTS * (long) (MAX_FIELD_BYTES + MAX_PART_HEADER_BYTES));
+        FileItemInputIterator items = upload.getItemIterator(request);
+        // Counted here: setMaxFileCount only applies to parseRequest, not to the streaming iterator
+        int parts = 0;
+        while (items.hasNext()) {
+            FileItemInput item = items.next();
+            if (++parts > MAX_PARTS) {
+                throw new RuntimeException("The request has more than " + MAX_PARTS + " parts");
+            }
+            if (item.isFormField()) {
+                fields.put(item.getFieldName(), readField(item));
+            } else if ("file".equals(item.getFieldName())) {
+                return store(item, fields, user);
+            }
+        }
+        throw new RuntimeException("The request has no part named file");
+    }
+
+    private EncryptedMessageResponse store(FileItemInput item, Map<String, String> fields, User user)
+            throws IOException {
+        String algorithmName = fields.get("algorithm");
+        if (algorithmName == null) {
+            throw new RuntimeException("Algorithm is required, in a field before the file");
+        }
+        EncryptionAlgorithm algorithm;
+        try {
+            algorithm = EncryptionAlgorithm.valueOf(algorithmName);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown algorithm: " + algorithmName);
+        }
+        String key = fields.get("key");
+        if (key == null || key.isBlank()) {
+            throw new RuntimeException("Key is required, in a field before the file");
+        }
+        String title = fields.get("title");
+        if (title == null || title.isBlank()) {
+            title = item.getName() != null && !item.getName().isBlank() ? item.getName() : "Untitled file";
+        }
+        String fileTitle = title.length() > 255 ? title.substring(0, 255) : title;
+
+        Path tempFile = fileStore.createTempFile();
+        try {
+            SizeLimitedInputStream in = new SizeLimitedInputStream(item.getInputStream(), maxSize);
+            EncryptionResult result;
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                result = encryptionService.encryptStream(in, out, key, algorithm);
+            }
+            return transactionTemplate.execute(status -> save(fileTitle, algorithm, result, in.getCount(),
+                    item.getContentType(), user, tempFile));
+        } finally {
+            // Nothing left to delete once the file has been moved into place
+            fileStore.deleteQuietly(tempFile);
+        }
+    }
+
+    private EncryptedMessageResponse save(String title, EncryptionAlgorithm algorithm, EncryptionResult result,
+            long size, String contentType, User user, Path tempFile) {
+        shardRouter.bind(user.getId());
+        EncryptedMessage message = messageRepository.save(new EncryptedMessage(
+                null,
+                title,
+                null,
+                algorithm,
+                result.getKey(),
+                result.getInitializationVector(),
+                null,
+                null,
+                user,
+                null,
+                size,
+                contentType,
+                null,
+                null,
+                null,
+                null));
+        Long id = message.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    fileStore.delete(id);
+                }
+            }
+        });
+        try {
+            fileStore.moveIntoPlace(tempFile, id);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the file: " + e.getMessage(), e);
+        }
+        eventPublisher.publishEvent(new MessageCreatedEvent(user.getId(), id));
+        return new EncryptedMessageResponse(id, title, null, algorithm, message.getCreatedAt(), size);
+    }
+
+    public StoredFile findFile(Long id, User user) {
+        EncryptedMessage message = shardRouter.read(user.getId(), () -> messageRepository.findById(id))
+                .orElseThrow(() -> new RuntimeException("File not found"));
+        if (!message.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Access denied");
+        }
+        if (message.getFileSize() == null) {
+            throw new RuntimeException("Message " + id + " is not a file");
+        }
+        Path path = fileStore.path(id);
+        try {
+            return new StoredFile(id, message.getTitle(), message.getContentType(), message.getAlgorithm(),
+                    message.getInitializationVector(), path, Files.size(path));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("The content of file " + id + " is missing");
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read file " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String readField(FileItemInput item) throws IOException {
+        try (InputStream in = item.getInputStream()) {
+            byte[] value = in.readNBytes(MAX_FIELD_BYTES + 1);
+            if (value.length > MAX_FIELD_BYTES) {
+                throw new RuntimeException("Field " + item.getFieldName() + " is longer than " + MAX_FIELD_BYTES
+                        + " bytes");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Counts the plaintext and stops an upload as soon as it passes app.files.max-size
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                advance(read);
+            }
+            return read;
+        }
+
+        private void advance(int read) throws IOException {
+            count += read;
+            if (count > limit) {
+                throw new IOException("File is larger than the limit of " + limit + " bytes");
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.cybersecurity.encryption.files;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/** A user's encrypted file as it is served for download. */
+@Getter
+@AllArgsConstructor
+public class StoredFile {
+    private final Long id;
+    private final String title;
+    private final String contentType;
+    private final EncryptionAlgorithm algorithm;
+    private final String initializationVector;
+    private final Path path;
+    private final long length;
+}
@@ -0,0 +1,68 @@
+package com.cybersecurity.encryption.health;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.service.EncryptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encrypts and decrypts a message with every algorithm, on the first health check rather than
+ * at startup, so that the JVM does not pay for it before it can serve. The node reports ready
+ * once the round trips succeed; a passing result is kept, a failing one is retried on the next
+ * check. Part of {@code /actuator/health/readiness}.
+ */
+@Component
+public class CryptoSelfTestHealthIndicator implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoSelfTestHealthIndicator.class);
+
+    private static final String MESSAGE = "Secure Vault self-test";
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    private volatile Health passed;
+
+    @Override
+    public Health health() {
+        Health health = passed;
+        if (health != null) {
+            return health;
+        }
+        synchronized (this) {
+            if (passed != null) {
+                return passed;
+            }
+            long started = System.nanoTime();
+            Map<String, String> failures = new LinkedHashMap<>();
+            for (EncryptionAlgorithm algorithm : EncryptionAlgorithm.values()) {
+                try {
+                    // An empty key has one generated, of the longest length the algorithm takes
+                    EncryptionService.EncryptionResult result = encryptionService.encrypt(MESSAGE, "", algorithm);
+                    String decrypted = encryptionService.decrypt(result.getEncryptedContent(), result.getKey(),
+                            result.getInitializationVector(), algorithm);
+                    if (!MESSAGE.equals(decrypted)) {
+                        failures.put(algorithm.name(), "decrypted text differs from the original");
+                    }
+                } catch (RuntimeException e) {
+                    failures.put(algorithm.name(), e.getMessage());
+                }
+            }
+            if (!failures.isEmpty()) {
+                logger.error("Crypto self-test failed: {}", failures);
+                return Health.down().withDetails(failures).build();
+            }
+            logger.info("Crypto self-test passed for {} algorithms in {} ms", EncryptionAlgorithm.values().length,
+                    (System.nanoTime() - started) / 1_000_000);
+            passed = Health.up().withDetail("algorithms", EncryptionAlgorithm.values().length).build();
+            return passed;
+        }
+    }
+}
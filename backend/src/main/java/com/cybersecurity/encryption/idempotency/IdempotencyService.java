@@ -0,0 +1,218 @@
+package com.cybersecurity.encryption.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a request sent with an {@code Idempotency-Key} header at most once per user and key.
+ * A retry of a finished request gets the stored response back; a duplicate that arrives while
+ * the first is still running on this node waits for that execution instead of starting its
+ * own. Only successful responses are kept, so a retry after an error runs again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Pattern KEY = Pattern.compile("[\\x21-\\x7E]{1,255}");
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Autowired
+    private IdempotencyStore store;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // How long a duplicate waits for a claim held by another node
+    @Value("${app.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private Counter executedCounter;
+    private Counter replayedCounter;
+
+    @PostConstruct
+    void init() {
+        executedCounter = Counter.builder("idempotency.requests").tag("outcome", "executed")
+                .description("Requests sent with an idempotency key").register(meterRegistry);
+        replayedCounter = Counter.builder("idempotency.requests").tag("outcome", "replayed")
+                .description("Requests sent with an idempotency key").register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code action} unless the user already sent {@code request} with the same key. Without
+     * a key the action simply runs. Reusing a key for a different request is rejected.
+     */
+    public CompletableFuture<ResponseEntity<?>> execute(Long userId, String idempotencyKey, Object request,
+            Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        return execute(userId, idempotencyKey, request, MediaType.APPLICATION_JSON, action);
+    }
+
+    /**
+     * Same for a request in another wire format, {@code application/cbor}: the stored response is
+     * written and replayed in that format, and the key cannot be reused for the JSON request.
+     */
+    public CompletableFuture<ResponseEntity<?>> execute(Long userId, String idempotencyKey, Object request,
+            MediaType format, Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (!KEY.matcher(idempotencyKey).matches()) {
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1-255 visible ASCII characters"));
+        }
+        String key = userId + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request, format);
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            return running.thenApply(response -> replay(response, fingerprint, format));
+        }
+        try {
+            StoredResponse stored = store.get(key);
+            if (stored != null) {
+                finish(key, execution, stored);
+                return CompletableFuture.completedFuture(replay(stored, fingerprint, format));
+            }
+            if (!store.claim(key, fingerprint)) {
+                // Another node is running the same request; duplicates here wait for its response too
+                awaitOtherNode(key, System.currentTimeMillis() + waitTimeoutMs)
+                        .whenComplete((response, error) -> {
+                            if (error != null) {
+                                execution.completeExceptionally(error);
+                            } else {
+                                execution.complete(response);
+                            }
+                            inFlight.remove(key, execution);
+                        });
+                return execution.thenApply(response -> replay(response, fingerprint, format));
+            }
+            executedCounter.increment();
+            CompletableFuture<ResponseEntity<?>> result = invoke(action);
+            result.whenComplete((response, error) -> {
+                try {
+                    if (error != null) {
+                        store.release(key);
+                        execution.completeExceptionally(error);
+                        return;
+                    }
+                    StoredResponse outcome = serialize(fingerprint, response, format);
+                    if (response.getStatusCode().is2xxSuccessful()) {
+                        store.complete(key, outcome);
+                    } else {
+                        store.release(key);
+                    }
+                    execution.complete(outcome);
+                } catch (RuntimeException e) {
+                    execution.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, execution);
+                }
+            });
+            return result;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, execution);
+            execution.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> invoke(Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void finish(String key, CompletableFuture<StoredResponse> execution, StoredResponse response) {
+        execution.complete(response);
+        inFlight.remove(key, execution);
+    }
+
+    // Completes with null if the other node has not stored a response by the deadline
+    private CompletableFuture<StoredResponse> awaitOtherNode(String key, long deadline) {
+        return CompletableFuture.supplyAsync(() -> store.get(key),
+                        CompletableFuture.delayedExecutor(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                .thenCompose(stored -> stored != null || System.currentTimeMillis() >= deadline
+                        ? CompletableFuture.completedFuture(stored)
+                        : awaitOtherNode(key, deadline));
+    }
+
+    private ResponseEntity<?> replay(StoredResponse response, String fingerprint, MediaType format) {
+        if (response == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "A request with this " + HEADER + " is still in progress"));
+        }
+        if (!response.getFingerprint().equals(fingerprint)) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+        }
+        replayedCounter.increment();
+        return ResponseEntity.status(response.getStatus())
+                .header(REPLAYED_HEADER, "true")
+                .contentType(format)
+                .body(response.getBody());
+    }
+
+    private StoredResponse serialize(String fingerprint, ResponseEntity<?> response, MediaType format) {
+        try {
+            return new StoredResponse(fingerprint, response.getStatusCode().value(),
+                    mapper(format).writeValueAsBytes(response.getBody()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not store response: " + e.getMessage(), e);
+        }
+    }
+
+    private String fingerprint(Object request, MediaType format) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // JSON fingerprints stay as they were before other formats existed
+            if (!MediaType.APPLICATION_JSON.equals(format)) {
+                digest.update(format.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Could not fingerprint request: " + e.getMessage(), e);
+        }
+    }
+
+    private ObjectMapper mapper(MediaType format) {
+        return MediaType.APPLICATION_CBOR.equals(format) ? cborConverter.getObjectMapper() : objectMapper;
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", message));
+    }
+}
@@ -0,0 +1,19 @@
+package com.cybersecurity.encryption.idempotency;
+
+/**
+ * Holds the responses to requests sent with an {@code Idempotency-Key} until they expire.
+ * A key is claimed before the request runs, so that a shared store lets only one node
+ * execute it; the claim is either completed with the response or released on failure.
+ */
+public interface IdempotencyStore {
+
+    /** Returns the completed response for the key, or null if there is none. */
+    StoredResponse get(String key);
+
+    /** Claims the key for one execution; false if it is already claimed or completed. */
+    boolean claim(String key, String fingerprint);
+
+    void complete(String key, StoredResponse response);
+
+    void release(String key);
+}
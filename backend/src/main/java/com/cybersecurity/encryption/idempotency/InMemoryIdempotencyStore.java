@@ -0,0 +1,57 @@
+package com.cybersecurity.encryption.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    // Rough per-entry overhead beyond the key and body, for the weigher
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    @Value("${app.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${app.idempotency.memory.max-bytes:67108864}")
+    private long maxBytes;
+
+    private Cache<String, StoredResponse> responses;
+
+    @PostConstruct
+    void init() {
+        responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, StoredResponse>weigher((key, response) -> ENTRY_OVERHEAD_BYTES + key.length()
+                        + (response.getBody() == null ? 0 : response.getBody().length))
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    @Override
+    public StoredResponse get(String key) {
+        StoredResponse response = responses.getIfPresent(key);
+        return response == null || response.isPending() ? null : response;
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint) {
+        return responses.asMap().putIfAbsent(key, new StoredResponse(fingerprint, StoredResponse.PENDING, null)) == null;
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        responses.put(key, response);
+    }
+
+    @Override
+    public void release(String key) {
+        responses.asMap().computeIfPresent(key, (k, response) -> response.isPending() ? null : response);
+    }
+}
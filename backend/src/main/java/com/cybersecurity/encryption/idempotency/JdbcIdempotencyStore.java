@@ -0,0 +1,86 @@
+package com.cybersecurity.encryption.idempotency;
+
+import com.cybersecurity.encryption.entity.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps responses in the {@link IdempotencyRecord} table, so that a retry reaching another
+ * node is answered too. Expired rows are deleted on the way, at most once per purge interval.
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String SELECT_SQL = "SELECT fingerprint, status_code, response_body FROM idempotency_keys"
+            + " WHERE idempotency_key = ? AND status_code <> 0 AND expires_at > ?";
+    private static final String INSERT_SQL = "INSERT INTO idempotency_keys (idempotency_key, fingerprint,"
+            + " status_code, created_at, expires_at) VALUES (?, ?, 0, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    // A claim older than this belongs to a node that died while executing the request
+    @Value("${app.idempotency.pending-timeout-ms:60000}")
+    private long pendingTimeoutMs;
+
+    @Value("${app.idempotency.jdbc.purge-interval-ms:60000}")
+    private long purgeIntervalMs;
+
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    @Override
+    public StoredResponse get(String key) {
+        List<StoredResponse> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new StoredResponse(
+                rs.getString("fingerprint"), rs.getInt("status_code"), rs.getBytes("response_body")),
+                key, now(0));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint) {
+        purgeExpired();
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND (expires_at < ?"
+                + " OR (status_code = 0 AND created_at < ?))", key, now(0), now(-pendingTimeoutMs));
+        try {
+            jdbcTemplate.update(INSERT_SQL, key, fingerprint, now(0), now(ttlMs));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        jdbcTemplate.update("UPDATE idempotency_keys SET status_code = ?, response_body = ?, expires_at = ?"
+                + " WHERE idempotency_key = ?", response.getStatus(), response.getBody(), now(ttlMs), key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status_code = 0", key);
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long due = nextPurge.get();
+        if (now >= due && nextPurge.compareAndSet(due, now + purgeIntervalMs)) {
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?", now(0));
+        }
+    }
+
+    private static Timestamp now(long offsetMs) {
+        return new Timestamp(System.currentTimeMillis() + offsetMs);
+    }
+}
@@ -0,0 +1,23 @@
+package com.cybersecurity.encryption.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The response to a request with an idempotency key, kept as serialized JSON. A status of
+ * {@link #PENDING} marks a key that is claimed by an execution that has not finished.
+ */
+@Getter
+@AllArgsConstructor
+public class StoredResponse {
+
+    public static final int PENDING = 0;
+
+    private final String fingerprint;
+    private final int status;
+    private final byte[] body;
+
+    public boolean isPending() {
+        return status == PENDING;
+    }
+}
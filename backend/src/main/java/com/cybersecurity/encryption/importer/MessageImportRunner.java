@@ -0,0 +1,59 @@
+package com.cybersecurity.encryption.importer;
+
+import com.cybersecurity.encryption.dto.ImportResult;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.MessageImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line import of an NDJSON file into one user's vault, for migrations that are too
+ * large to send over HTTP. Run with {@code --spring.profiles.active=import}; the application
+ * exits when the file is imported. Re-running with the same {@code app.import.id} continues
+ * from the last checkpoint.
+ */
+@Component
+@Profile("import")
+public class MessageImportRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageImportRunner.class);
+
+    @Autowired
+    private MessageImportService importService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.import.file}")
+    private String file;
+
+    @Value("${app.import.username}")
+    private String username;
+
+    @Value("${app.import.id}")
+    private String importId;
+
+    @Override
+    public void run(String... args) throws Exception {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        ImportResult result;
+        try (InputStream in = "-".equals(file) ? System.in : Files.newInputStream(Path.of(file))) {
+            result = importService.importMessages(user.getId(), importId, in);
+        }
+        logger.info("Imported {} records into {}'s vault in {} ms ({} rows/s); {} lines skipped from an earlier run,"
+                + " {} rejected", result.getImported(), username, result.getElapsedMs(), result.getRowsPerSecond(),
+                result.getSkipped(), result.getRejected());
+        result.getErrors().forEach(error -> logger.warn("Rejected {}", error));
+    }
+}
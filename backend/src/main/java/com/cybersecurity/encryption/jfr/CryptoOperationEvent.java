@@ -0,0 +1,33 @@
+package com.cybersecurity.encryption.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cybersecurity.encryption.CryptoOperation")
+@Label("Crypto Operation")
+@Description("Encryption or decryption of a single message")
+@Category({ "Secure Vault", "Crypto" })
+@StackTrace(false)
+public class CryptoOperationEvent extends Event {
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Request ID")
+    public String requestId;
+}
@@ -0,0 +1,53 @@
+package com.cybersecurity.encryption.jfr;
+
+import com.cybersecurity.encryption.tracing.RequestTracingFilter;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Records a {@link PasswordHashEvent} around each call to the wrapped encoder, so
+ * BCrypt time can be told apart from the rest of a sign-in or sign-up.
+ */
+public class InstrumentedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+
+    public InstrumentedPasswordEncoder(PasswordEncoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            commit(event, "encode");
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            commit(event, "matches");
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static void commit(PasswordHashEvent event, String operation) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.requestId = RequestTracingFilter.current();
+            event.commit();
+        }
+    }
+}
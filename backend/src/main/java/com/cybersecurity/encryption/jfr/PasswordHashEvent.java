@@ -0,0 +1,22 @@
+package com.cybersecurity.encryption.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cybersecurity.encryption.PasswordHash")
+@Label("Password Hash")
+@Description("BCrypt hashing on sign-up or verification on sign-in")
+@Category({ "Secure Vault", "Security" })
+@StackTrace(false)
+public class PasswordHashEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Request ID")
+    public String requestId;
+}
@@ -0,0 +1,28 @@
+package com.cybersecurity.encryption.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cybersecurity.encryption.RepositoryCall")
+@Label("Repository Call")
+@Description("A single Spring Data repository method invocation")
+@Category({ "Secure Vault", "Persistence" })
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Request ID")
+    public String requestId;
+}
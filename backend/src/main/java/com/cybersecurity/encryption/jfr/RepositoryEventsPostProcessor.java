@@ -0,0 +1,47 @@
+package com.cybersecurity.encryption.jfr;
+
+import com.cybersecurity.encryption.tracing.RequestTracingFilter;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps every Spring Data repository proxy so each method call is recorded as a
+ * {@link RepositoryCallEvent}.
+ */
+@Component
+public class RepositoryEventsPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, information) -> proxyFactory.addAdvice(
+                            interceptor(information.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+    private static MethodInterceptor interceptor(String repository) {
+        return invocation -> {
+            RepositoryCallEvent event = new RepositoryCallEvent();
+            event.begin();
+            boolean success = false;
+            try {
+                Object result = invocation.proceed();
+                success = true;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.repository = repository;
+                    event.method = invocation.getMethod().getName();
+                    event.success = success;
+                    event.requestId = RequestTracingFilter.current();
+                    event.commit();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.cybersecurity.encryption.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cybersecurity.encryption.TokenVerification")
+@Label("Token Verification")
+@Description("Parsing and signature check of a JWT")
+@Category({ "Secure Vault", "Security" })
+@StackTrace(false)
+public class TokenVerificationEvent extends Event {
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Request ID")
+    public String requestId;
+}
@@ -0,0 +1,22 @@
+package com.cybersecurity.encryption.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.cybersecurity.encryption.UserLookup")
+@Label("User Lookup")
+@Description("Loading the user behind an authenticated request")
+@Category({ "Secure Vault", "Security" })
+@StackTrace(false)
+public class UserLookupEvent extends Event {
+
+    @Label("Found")
+    public boolean found;
+
+    @Label("Request ID")
+    public String requestId;
+}
@@ -0,0 +1,302 @@
+package com.cybersecurity.encryption.kdf;
+
+import com.cybersecurity.encryption.bulkhead.Bulkhead;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives message keys from passphrases with Argon2id or scrypt. Each message gets its own salt,
+ * stored next to its IV together with the parameters it was derived with, so changing the
+ * configured parameters only affects new messages.
+ * <p>
+ * Derivations are memory-hard on purpose and run on their own bulkhead, which bounds how many
+ * run at once and so the memory they take. Derived keys are cached for a short time per user,
+ * salt and parameters, so decrypting the same message again does not pay for the derivation. The
+ * cache key also holds an HMAC of the passphrase under a per-process secret, so a wrong
+ * passphrase never gets the key derived from the right one. Cached keys are kept as bytes and
+ * zeroed when they expire or are evicted; callers get a Base64 copy.
+ */
+@Component
+public class PassphraseKeyDeriver {
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int MIN_PASSPHRASE_LENGTH = 8;
+
+    private static final Pattern ARGON2ID = Pattern.compile("argon2id\\$v=19\\$m=(\\d{1,9}),t=(\\d{1,3}),p=(\\d{1,2})");
+
+    private static final Pattern SCRYPT = Pattern.compile("scrypt\\$ln=(\\d{1,2}),r=(\\d{1,2}),p=(\\d{1,2})");
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    // argon2id or scrypt, for new messages
+    @Value("${app.passphrase-kdf.function:argon2id}")
+    private String function;
+
+    @Value("${app.passphrase-kdf.argon2.memory-kib:19456}")
+    private int argon2MemoryKib;
+
+    @Value("${app.passphrase-kdf.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${app.passphrase-kdf.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    // N = 2^log-cost
+    @Value("${app.passphrase-kdf.scrypt.log-cost:15}")
+    private int scryptLogCost;
+
+    @Value("${app.passphrase-kdf.scrypt.block-size:8}")
+    private int scryptBlockSize;
+
+    @Value("${app.passphrase-kdf.scrypt.parallelism:1}")
+    private int scryptParallelism;
+
+    // Stored or imported parameters needing more memory than this are refused
+    @Value("${app.passphrase-kdf.max-memory-kib:262144}")
+    private long maxMemoryKib;
+
+    // Defaults to the number of cores
+    @Value("${app.passphrase-kdf.threads:0}")
+    private int threads;
+
+    @Value("${app.passphrase-kdf.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${app.passphrase-kdf.cache.maximum-size:1000}")
+    private long cacheMaximumSize;
+
+    @Value("${app.passphrase-kdf.cache.ttl-ms:300000}")
+    private long cacheTtlMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Bulkhead bulkhead;
+
+    private AsyncCache<DerivedKeyId, CachedKey> derivedKeys;
+
+    private SecretKeySpec passphraseTagKey;
+
+    private String currentParams;
+
+    @PostConstruct
+    void init() {
+        currentParams = switch (function) {
+            case "argon2id" -> "argon2id$v=19$m=" + argon2MemoryKib + ",t=" + argon2Iterations + ",p=" + argon2Parallelism;
+            case "scrypt" -> "scrypt$ln=" + scryptLogCost + ",r=" + scryptBlockSize + ",p=" + scryptParallelism;
+            default -> throw new IllegalStateException(
+                    "Unknown app.passphrase-kdf.function '" + function + "'; use argon2id or scrypt");
+        };
+        validateParams(currentParams);
+        byte[] tagKey = new byte[32];
+        secureRandom.nextBytes(tagKey);
+        passphraseTagKey = new SecretKeySpec(tagKey, "HmacSHA256");
+        Arrays.fill(tagKey, (byte) 0);
+        bulkhead = new Bulkhead("kdf", threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                queueCapacity, "abort", meterRegistry);
+        // Failed derivations are dropped by the cache, so a rejected one is retried on the next request
+        derivedKeys = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .recordStats()
+                .<DerivedKeyId, CachedKey>removalListener((id, key, cause) -> {
+                    if (key != null) {
+                        key.wipe();
+                    }
+                })
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, derivedKeys.synchronous(), "passphrase.keys");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bulkhead.shutdown();
+        derivedKeys.synchronous().invalidateAll();
+    }
+
+    /** A key for a new message, under a fresh salt and the configured parameters. */
+    public DerivedKey deriveNew(Long userId, String passphrase, EncryptionAlgorithm algorithm) {
+        if (passphrase.length() < MIN_PASSPHRASE_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Passphrase must be at least " + MIN_PASSPHRASE_LENGTH + " characters long");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        secureRandom.nextBytes(salt);
+        String encodedSalt = Base64.getEncoder().encodeToString(salt);
+        return new DerivedKey(derive(userId, passphrase, encodedSalt, currentParams, algorithm), encodedSalt,
+                currentParams);
+    }
+
+    /** The Base64 key of an existing message, from the salt and parameters stored with it. */
+    public String derive(Long userId, String passphrase, String salt, String params, EncryptionAlgorithm algorithm) {
+        validate(salt, params);
+        DerivedKeyId id = new DerivedKeyId(userId, salt, params, keyLength(algorithm), passphraseTag(passphrase));
+        try {
+            while (true) {
+                // Concurrent requests for the same key wait for one derivation
+                String key = derivedKeys.get(id, (keyId, executor) -> bulkhead.submit(() -> compute(passphrase, keyId)))
+                        .join().encode();
+                // Null if the cache dropped and wiped the key after handing it out; it is gone by now
+                if (key != null) {
+                    return key;
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Refuses a malformed salt, and parameters this node does not support or that need more than
+     * the allowed memory.
+     */
+    public void validate(String salt, String params) {
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(salt);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Key derivation salt must be Base64");
+        }
+        if (decoded.length < 8 || decoded.length > 64) {
+            throw new IllegalArgumentException("Key derivation salt must be 8 to 64 bytes");
+        }
+        validateParams(params);
+    }
+
+    private void validateParams(String params) {
+        Matcher argon2 = ARGON2ID.matcher(params);
+        if (argon2.matches()) {
+            long memoryKib = Long.parseLong(argon2.group(1));
+            int iterations = Integer.parseInt(argon2.group(2));
+            int parallelism = Integer.parseInt(argon2.group(3));
+            if (parallelism < 1 || iterations < 1 || memoryKib < 8L * parallelism || memoryKib > maxMemoryKib) {
+                throw new IllegalArgumentException("Unsupported key derivation parameters: " + params);
+            }
+            return;
+        }
+        Matcher scrypt = SCRYPT.matcher(params);
+        if (scrypt.matches()) {
+            int logCost = Integer.parseInt(scrypt.group(1));
+            int blockSize = Integer.parseInt(scrypt.group(2));
+            int parallelism = Integer.parseInt(scrypt.group(3));
+            // 128 * r * N bytes
+            if (logCost < 1 || logCost > 30 || blockSize < 1 || parallelism < 1
+                    || ((long) blockSize << logCost) / 8 > maxMemoryKib) {
+                throw new IllegalArgumentException("Unsupported key derivation parameters: " + params);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Unknown key derivation parameters: " + params);
+    }
+
+    private CachedKey compute(String passphrase, DerivedKeyId id) {
+        byte[] password = passphrase.getBytes(StandardCharsets.UTF_8);
+        byte[] salt = Base64.getDecoder().decode(id.salt());
+        byte[] key = new byte[id.keyLength()];
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean derived = false;
+        try {
+            Matcher argon2 = ARGON2ID.matcher(id.params());
+            if (argon2.matches()) {
+                Argon2BytesGenerator generator = new Argon2BytesGenerator();
+                generator.init(new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                        .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                        .withMemoryAsKB(Integer.parseInt(argon2.group(1)))
+                        .withIterations(Integer.parseInt(argon2.group(2)))
+                        .withParallelism(Integer.parseInt(argon2.group(3)))
+                        .withSalt(salt)
+                        .build());
+                generator.generateBytes(password, key);
+            } else {
+                Matcher scrypt = SCRYPT.matcher(id.params());
+                scrypt.matches();
+                byte[] output = SCrypt.generate(password, salt, 1 << Integer.parseInt(scrypt.group(1)),
+                        Integer.parseInt(scrypt.group(2)), Integer.parseInt(scrypt.group(3)), key.length);
+                System.arraycopy(output, 0, key, 0, key.length);
+                Arrays.fill(output, (byte) 0);
+            }
+            derived = true;
+            return new CachedKey(key);
+        } finally {
+            sample.stop(Timer.builder("passphrase.kdf")
+                    .tag("function", id.params().substring(0, id.params().indexOf('$')))
+                    .description("Time to derive a key from a passphrase")
+                    .register(meterRegistry));
+            Arrays.fill(password, (byte) 0);
+            if (!derived) {
+                Arrays.fill(key, (byte) 0);
+            }
+        }
+    }
+
+    private String passphraseTag(String passphrase) {
+        byte[] password = passphrase.getBytes(StandardCharsets.UTF_8);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(passphraseTagKey);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        } finally {
+            Arrays.fill(password, (byte) 0);
+        }
+    }
+
+    // DES takes an 8-byte key; the other algorithms get 256 bits
+    private static int keyLength(EncryptionAlgorithm algorithm) {
+        return algorithm == EncryptionAlgorithm.DES ? 8 : 32;
+    }
+
+    public record DerivedKey(String key, String salt, String params) {
+    }
+
+    /** A derived key in the cache; it is copied and wiped under the same lock. */
+    static final class CachedKey {
+        private final byte[] key;
+        private boolean wiped;
+
+        CachedKey(byte[] key) {
+            this.key = key;
+        }
+
+        synchronized String encode() {
+            return wiped ? null : Base64.getEncoder().encodeToString(key);
+        }
+
+        synchronized void wipe() {
+            wiped = true;
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private record DerivedKeyId(Long userId, String salt, String params, int keyLength, String passphraseTag) {
+    }
+}
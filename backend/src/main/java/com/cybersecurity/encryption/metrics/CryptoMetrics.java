@@ -0,0 +1,77 @@
+package com.cybersecurity.encryption.metrics;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and payload-size meters for every algorithm and operation. All meters are
+ * registered up front so the hot path is an array lookup and a record call.
+ */
+@Component
+public class CryptoMetrics {
+
+    public enum Operation {
+        ENCRYPT, DECRYPT
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Indexed by [algorithm][operation][0 = success, 1 = failure]
+    private Timer[][][] timers;
+
+    // Indexed by [algorithm][operation]
+    private DistributionSummary[][] payloadSizes;
+
+    @PostConstruct
+    void init() {
+        EncryptionAlgorithm[] algorithms = EncryptionAlgorithm.values();
+        Operation[] operations = Operation.values();
+        timers = new Timer[algorithms.length][operations.length][2];
+        payloadSizes = new DistributionSummary[algorithms.length][operations.length];
+
+        for (EncryptionAlgorithm algorithm : algorithms) {
+            for (Operation operation : operations) {
+                String algorithmTag = algorithm.name();
+                String operationTag = operation.name().toLowerCase();
+                for (int outcome = 0; outcome < 2; outcome++) {
+                    timers[algorithm.ordinal()][operation.ordinal()][outcome] = Timer.builder("crypto.operation")
+                            .description("Time spent encrypting or decrypting a single message")
+                            .tag("algorithm", algorithmTag)
+                            .tag("operation", operationTag)
+                            .tag("outcome", outcome == 0 ? "success" : "failure")
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(Duration.ofNanos(10_000))
+                            .maximumExpectedValue(Duration.ofSeconds(5))
+                            .register(meterRegistry);
+                }
+                payloadSizes[algorithm.ordinal()][operation.ordinal()] = DistributionSummary
+                        .builder("crypto.payload.size")
+                        .description("Ciphertext size handled by a single operation")
+                        .baseUnit("bytes")
+                        .tag("algorithm", algorithmTag)
+                        .tag("operation", operationTag)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(16.0)
+                        .maximumExpectedValue(16.0 * 1024 * 1024)
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    public void record(EncryptionAlgorithm algorithm, Operation operation, long elapsedNanos, boolean success,
+            long payloadBytes) {
+        timers[algorithm.ordinal()][operation.ordinal()][success ? 0 : 1].record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (success) {
+            payloadSizes[algorithm.ordinal()][operation.ordinal()].record(payloadBytes);
+        }
+    }
+}
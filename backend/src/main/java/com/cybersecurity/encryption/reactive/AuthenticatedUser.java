@@ -0,0 +1,15 @@
+package com.cybersecurity.encryption.reactive;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Principal of a request authenticated by {@link JwtWebFilter}. Carries only what the
+ * reactive endpoints need, so no user row has to be loaded per request.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser {
+    private final Long id;
+    private final String username;
+}
@@ -0,0 +1,52 @@
+package com.cybersecurity.encryption.reactive;
+
+import com.cybersecurity.encryption.security.JwtTokenProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Reactive counterpart of the servlet JWT filter. Signature checks are a few
+ * microseconds of CPU and run inline; the user id lookup is non-blocking.
+ */
+public class JwtWebFilter implements WebFilter {
+
+    private final JwtTokenProvider tokenProvider;
+    private final ReactiveMessageStore messageStore;
+
+    public JwtWebFilter(JwtTokenProvider tokenProvider, ReactiveMessageStore messageStore) {
+        this.tokenProvider = tokenProvider;
+        this.messageStore = messageStore;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String bearerToken = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!StringUtils.hasText(bearerToken) || !bearerToken.startsWith("Bearer ")) {
+            return chain.filter(exchange);
+        }
+
+        String username = tokenProvider.validateAndGetUsername(bearerToken.substring(7));
+        if (username == null) {
+            return chain.filter(exchange);
+        }
+
+        return messageStore.findUserId(username)
+                .map(id -> Optional.<Authentication>of(new UsernamePasswordAuthenticationToken(
+                        new AuthenticatedUser(id, username), null, Collections.emptyList())))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(authentication -> authentication
+                        .map(auth -> chain.filter(exchange)
+                                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth)))
+                        .orElseGet(() -> chain.filter(exchange)));
+    }
+}
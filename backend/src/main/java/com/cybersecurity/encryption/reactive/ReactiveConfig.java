@@ -0,0 +1,54 @@
+package com.cybersecurity.encryption.reactive;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+
+    @Value("${app.bulkhead.crypto.threads:0}")
+    private int cryptoThreads;
+
+    @Value("${app.bulkhead.crypto.queue-capacity:100}")
+    private int cryptoQueueCapacity;
+
+    // Boot skips the JDBC DataSource once an R2DBC ConnectionFactory exists, but the
+    // shared JPA services (schema validation, crypto service) still need one.
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise be picked.
+    // Netty keeps idle connections on its few event-loop threads.
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // Crypto is CPU-bound and must stay off the event loop. Bounded like the servlet
+    // crypto bulkhead: past the queue capacity, tasks are rejected.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler cryptoScheduler() {
+        int threads = cryptoThreads > 0 ? cryptoThreads : Runtime.getRuntime().availableProcessors();
+        return Schedulers.newBoundedElastic(threads, cryptoQueueCapacity, "crypto");
+    }
+}
@@ -0,0 +1,135 @@
+package com.cybersecurity.encryption.reactive;
+
+import com.cybersecurity.encryption.bulkhead.BulkheadFullException;
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.idempotency.IdempotencyService;
+import com.cybersecurity.encryption.service.BlindIndexService;
+import com.cybersecurity.encryption.service.EncryptionService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * WebFlux version of the encrypt, decrypt and listing endpoints. Request handling and
+ * database access never block; only the cipher work runs on the bounded crypto
+ * scheduler.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api")
+public class ReactiveEncryptionController {
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ReactiveMessageStore messageStore;
+
+    @Autowired
+    private BlindIndexService blindIndexService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    @Qualifier("cryptoScheduler")
+    private Scheduler cryptoScheduler;
+
+    @PostMapping("/encrypt")
+    public Mono<ResponseEntity<?>> encryptMessage(@Valid @RequestBody EncryptionRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        if (idempotencyKey == null) {
+            return encrypt(request, user);
+        }
+        // The idempotency store may be JDBC, so its calls stay off the event loop
+        return Mono.fromFuture(() -> idempotencyService.execute(user.getId(), idempotencyKey, request,
+                        () -> encrypt(request, user).publishOn(Schedulers.boundedElastic()).toFuture()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ResponseEntity<?>> encrypt(EncryptionRequest request, AuthenticatedUser user) {
+        if (request.isPassphrase()) {
+            return Mono.just(failure(new RuntimeException("Passphrase keys are only supported by the servlet"
+                    + " deployment"), "Encryption failed: "));
+        }
+        return Mono.fromCallable(() -> encryptionService.encrypt(request.getMessage(), request.getKey(),
+                        request.getAlgorithm()))
+                .subscribeOn(cryptoScheduler)
+                .flatMap(result -> messageStore.insert(user.getId(), request.getTitle(), request.getAlgorithm(),
+                        result, blindIndexService.isEnabled()
+                                ? blindIndexService.messageTokens(user.getId(), request.getMessage())
+                                : List.of()))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(failure(e, "Encryption failed: ")));
+    }
+
+    @PostMapping("/decrypt")
+    public Mono<ResponseEntity<?>> decryptMessage(@Valid @RequestBody DecryptionRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return messageStore.findMessage(request.getMessageId())
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Message not found")))
+                .flatMap(message -> {
+                    if (!message.getUserId().equals(user.getId())) {
+                        return Mono.error(new RuntimeException("Access denied"));
+                    }
+                    if (message.isFile()) {
+                        return Mono.error(new RuntimeException("This message is a file; download it from /api/files/"
+                                + request.getMessageId()));
+                    }
+                    if (message.isInSegmentStore()) {
+                        return Mono.error(new RuntimeException("This message is in the segment store; decrypt it"
+                                + " through the servlet deployment"));
+                    }
+                    if (message.isPassphraseProtected()) {
+                        return Mono.error(new RuntimeException("This message is protected by a passphrase; decrypt it"
+                                + " through the servlet deployment"));
+                    }
+                    return Mono.fromCallable(() -> encryptionService.decrypt(
+                                    message.getEncryptedContent(),
+                                    request.getKey(),
+                                    message.getInitializationVector(),
+                                    message.getAlgorithm()))
+                            .subscribeOn(cryptoScheduler);
+                })
+                .<ResponseEntity<?>>map(decryptedContent -> ResponseEntity.ok(Map.of("decryptedMessage", decryptedContent)))
+                .onErrorResume(e -> Mono.just(failure(e, "Decryption failed: ")));
+    }
+
+    @GetMapping("/messages")
+    public Mono<ResponseEntity<?>> getMessages(@RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String search,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        boolean hasSearch = search != null && !search.trim().isEmpty();
+        return Mono.defer(() -> messageStore.findPage(user.getId(), PageRequest.of(page, size),
+                        hasSearch ? search.trim() : null))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(failure(e, "Failed to fetch messages: ")));
+    }
+
+    private ResponseEntity<?> failure(Throwable e, String prefix) {
+        if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", new BulkheadFullException("crypto").getMessage()));
+        }
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", prefix + e.getMessage()));
+    }
+}
@@ -0,0 +1,176 @@
+package com.cybersecurity.encryption.reactive;
+
+import com.cybersecurity.encryption.cache.CacheInvalidationBus;
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.service.EncryptionService.EncryptionResult;
+import com.cybersecurity.encryption.tiering.ColdMessageStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.r2dbc.spi.Readable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Non-blocking access to the users and encrypted_messages tables for the reactive
+ * endpoints. Writes bypass JPA, so they announce themselves on the
+ * {@link CacheInvalidationBus} like the servlet service does.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMessageStore {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    // A username never moves to another id, so lookups only need to expire for deleted users.
+    private final Cache<String, Long> userIds = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public Mono<Long> findUserId(String username) {
+        Long cached = userIds.getIfPresent(username);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return databaseClient.sql("SELECT id FROM users WHERE username = :username")
+                .bind("username", username)
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .doOnNext(id -> userIds.put(username, id));
+    }
+
+    public Mono<EncryptedMessageResponse> insert(Long userId, String title, EncryptionAlgorithm algorithm,
+            EncryptionResult result, List<String> searchTokens) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        return databaseClient.sql("INSERT INTO encrypted_messages "
+                + "(title, encrypted_content, algorithm, encrypted_key, initialization_vector, user_id, created_at) "
+                + "VALUES (:title, :content, :algorithm, :key, :iv, :userId, :createdAt)")
+                .bind("title", title)
+                .bind("content", result.getEncryptedContent())
+                .bind("algorithm", algorithm.name())
+                .bind("key", result.getKey())
+                .bind("iv", result.getInitializationVector())
+                .bind("userId", userId)
+                .bind("createdAt", createdAt)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .flatMap(id -> insertSearchTokens(id, userId, searchTokens).thenReturn(id))
+                .doOnNext(id -> invalidationBus.publish(userId))
+                .map(id -> new EncryptedMessageResponse(id, title, result.getEncryptedContent(), algorithm, createdAt));
+    }
+
+    // One multi-row statement; without a transaction here a failure leaves the message unsearchable
+    private Mono<Void> insertSearchTokens(Long messageId, Long userId, List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO message_search_tokens (message_id, token, user_id) VALUES ");
+        for (int i = 0; i < tokens.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(:messageId, :token").append(i).append(", :userId)");
+        }
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(sql.toString())
+                .bind("messageId", messageId)
+                .bind("userId", userId);
+        for (int i = 0; i < tokens.size(); i++) {
+            insert = insert.bind("token" + i, tokens.get(i));
+        }
+        return insert.then();
+    }
+
+    public Mono<StoredMessage> findMessage(Long id) {
+        return databaseClient.sql("SELECT m.user_id, m.encrypted_content, a.content AS archived_content, "
+                + "m.initialization_vector, m.algorithm, m.file_size, m.segment_id, m.kdf_params FROM encrypted_messages m"
+                + ColdMessageStore.JOIN + " WHERE m.id = :id")
+                .bind("id", id)
+                .map(row -> new StoredMessage(
+                        row.get("user_id", Long.class),
+                        content(row),
+                        row.get("initialization_vector", String.class),
+                        EncryptionAlgorithm.valueOf(row.get("algorithm", String.class)),
+                        row.get("file_size", Long.class) != null,
+                        row.get("segment_id", Integer.class) != null,
+                        row.get("kdf_params", String.class) != null))
+                .one();
+    }
+
+    public Mono<Page<EncryptedMessageResponse>> findPage(Long userId, Pageable pageable, String search) {
+        String where = "WHERE m.user_id = :userId" + (search != null ? " AND LOWER(m.title) LIKE :pattern" : "");
+        DatabaseClient.GenericExecuteSpec select = databaseClient.sql(
+                "SELECT m.id, m.title, m.encrypted_content, a.content AS archived_content, m.algorithm, m.created_at, "
+                        + "m.file_size, m.segment_id FROM encrypted_messages m" + ColdMessageStore.JOIN + " " + where
+                        + " ORDER BY m.created_at DESC LIMIT :limit OFFSET :offset")
+                .bind("userId", userId)
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset());
+        DatabaseClient.GenericExecuteSpec count = databaseClient.sql(
+                "SELECT COUNT(*) AS total FROM encrypted_messages m " + where)
+                .bind("userId", userId);
+        if (search != null) {
+            String pattern = "%" + escapeLike(search.toLowerCase()) + "%";
+            select = select.bind("pattern", pattern);
+            count = count.bind("pattern", pattern);
+        }
+
+        return Mono.zip(
+                select.map(this::toResponse).all().collectList(),
+                count.map(row -> row.get("total", Long.class)).one())
+                .map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()));
+    }
+
+    // Segment records cannot be read here, so such messages are listed without content and marked
+    private EncryptedMessageResponse toResponse(Readable row) {
+        boolean inSegmentStore = row.get("segment_id", Integer.class) != null;
+        return new EncryptedMessageResponse(
+                row.get("id", Long.class),
+                row.get("title", String.class),
+                content(row),
+                EncryptionAlgorithm.valueOf(row.get("algorithm", String.class)),
+                row.get("created_at", LocalDateTime.class),
+                row.get("file_size", Long.class),
+                inSegmentStore ? Boolean.TRUE : null);
+    }
+
+    // Cold messages keep their content in the archive table, as raw bytes
+    private static String content(Readable row) {
+        byte[] archived = row.get("archived_content", byte[].class);
+        return archived != null ? Base64.getEncoder().encodeToString(archived)
+                : row.get("encrypted_content", String.class);
+    }
+
+    // Same escaping as the derived "Containing" query in the servlet repository.
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StoredMessage {
+        private final Long userId;
+        private final String encryptedContent;
+        private final String initializationVector;
+        private final EncryptionAlgorithm algorithm;
+        private final boolean file;
+        // Segments are on the servlet deployment's local disk
+        private final boolean inSegmentStore;
+        private final boolean passphraseProtected;
+    }
+}
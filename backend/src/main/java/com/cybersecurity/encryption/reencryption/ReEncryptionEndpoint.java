@@ -0,0 +1,43 @@
+package com.cybersecurity.encryption.reencryption;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Progress and control of the {@link ReEncryptionJob}: {@code GET /actuator/reencryption}
+ * returns the status, {@code POST} with {@code {"action": "pause"}}, {@code "resume"} or
+ * {@code "start"} changes it. Served on the management port only; SecurityConfig refuses it on
+ * the API port, where any signed-up user holds a token.
+ */
+@Component
+@Endpoint(id = "reencryption")
+@ConditionalOnProperty(name = "app.reencryption.enabled", havingValue = "true")
+public class ReEncryptionEndpoint {
+
+    @Autowired
+    private ReEncryptionJob job;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return job.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> control(String action) {
+        boolean changed = switch (action) {
+            case "pause" -> job.pause();
+            case "resume" -> job.resume();
+            case "start" -> job.start();
+            default -> throw new IllegalArgumentException("Unknown action: " + action);
+        };
+        Map<String, Object> status = job.status();
+        status.put("changed", changed);
+        return status;
+    }
+}
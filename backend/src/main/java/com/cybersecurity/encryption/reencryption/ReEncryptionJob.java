@@ -0,0 +1,494 @@
+package com.cybersecurity.encryption.reencryption;
+
+import com.cybersecurity.encryption.cache.CacheInvalidationBus;
+import com.cybersecurity.encryption.entity.EncryptedMessage;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.JobCheckpoint;
+import com.cybersecurity.encryption.repository.JobCheckpointRepository;
+import com.cybersecurity.encryption.segment.SegmentPointer;
+import com.cybersecurity.encryption.segment.SegmentStore;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.tiering.ColdMessageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Moves messages stored with {@code app.reencryption.source-algorithms} to AES-GCM while the
+ * application keeps serving. Rows are read in primary-key order, one chunk at a time, decrypted
+ * with their server-held key and encrypted again on a pool of worker threads, and written back
+ * with a JDBC batch in the same transaction as the {@link JobCheckpoint} holding the last ID, so
+ * a restart continues after the last committed chunk. Rows without a stored key are left alone.
+ * Messages in the cold tier are migrated where they are: the stub gets the new algorithm and IV
+ * and encrypted_messages_archive the new ciphertext, so they stay archived.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reencryption.enabled", havingValue = "true")
+public class ReEncryptionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReEncryptionJob.class);
+
+    public enum State {
+        IDLE, RUNNING, PAUSED, COMPLETED, FAILED
+    }
+
+    static final EncryptionAlgorithm TARGET = EncryptionAlgorithm.AES_GCM;
+    private static final String JOB_ID = "reencrypt:" + TARGET.name();
+
+    // The algorithm and IV in the WHERE clause skip rows that were deleted or changed since they were read,
+    // and archived_at those the tiering job moved to the cold tier meanwhile
+    private static final String UPDATE_SQL = "UPDATE encrypted_messages SET encrypted_content = ?, segment_id = ?,"
+            + " segment_offset = ?, segment_length = ?, algorithm = ?, initialization_vector = ?"
+            + " WHERE id = ? AND algorithm = ? AND initialization_vector = ? AND archived_at IS NULL";
+    private static final String ARCHIVED_UPDATE_SQL = "UPDATE encrypted_messages SET algorithm = ?,"
+            + " initialization_vector = ? WHERE id = ? AND algorithm = ? AND initialization_vector = ?"
+            + " AND archived_at IS NOT NULL";
+    // Only for stubs the statement above updated, identified by their new IV
+    private static final String ARCHIVED_CONTENT_SQL = "UPDATE encrypted_messages_archive SET content = ?"
+            + " WHERE message_id IN (SELECT id FROM encrypted_messages WHERE id = ? AND initialization_vector = ?)";
+    private static final long CPU_BACKOFF_MS = 250;
+    private static final int MAX_LOGGED_FAILURES = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ColdMessageStore coldMessageStore;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.reencryption.source-algorithms:DES,CHACHA20}")
+    private EncryptionAlgorithm[] sourceAlgorithms;
+
+    @Value("${app.reencryption.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.reencryption.threads:0}")
+    private int threads;
+
+    @Value("${app.reencryption.rows-per-second:0}")
+    private double rowsPerSecond;
+
+    @Value("${app.reencryption.max-cpu:0}")
+    private double maxCpu;
+
+    @Value("${app.reencryption.auto-start:true}")
+    private boolean autoStart;
+
+    private ThreadPoolTaskExecutor workers;
+    private String selectSql;
+    private Counter migratedCounter;
+    private Counter failedCounter;
+
+    private final Object lock = new Object();
+    private volatile State state = State.IDLE;
+    private volatile boolean paused;
+    private volatile boolean stopping;
+    private Thread coordinator;
+
+    private volatile JobCheckpoint checkpoint;
+    private volatile long remainingAtStart;
+    private volatile long withoutKey;
+    private volatile long cpuThrottledMs;
+    private volatile LocalDateTime startedAt;
+    private volatile String lastError;
+    private long failuresLogged;
+
+    // Rate pacing baseline, reset on resume so that a pause is not made up for with a burst
+    private long pacingStartNanos;
+    private long pacedRows;
+
+    @PostConstruct
+    void init() {
+        if (sourceAlgorithms.length == 0 || List.of(sourceAlgorithms).contains(TARGET)) {
+            throw new IllegalStateException("app.reencryption.source-algorithms must list algorithms other than "
+                    + TARGET);
+        }
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        workers = new ThreadPoolTaskExecutor();
+        workers.setThreadNamePrefix("reencrypt-");
+        workers.setCorePoolSize(poolSize);
+        workers.setMaxPoolSize(poolSize);
+        workers.setDaemon(true);
+        workers.initialize();
+        threads = poolSize;
+
+        selectSql = "SELECT m.id, " + ColdMessageStore.CONTENT_COLUMNS + ", m.algorithm, m.encrypted_key,"
+                + " m.initialization_vector, m.user_id, m.archived_at FROM encrypted_messages m" + ColdMessageStore.JOIN
+                + " WHERE" + candidates("m.") + " AND m.encrypted_key IS NOT NULL ORDER BY m.id LIMIT ?";
+        migratedCounter = Counter.builder("reencryption.rows").tag("outcome", "migrated")
+                .description("Messages processed by the re-encryption job").register(meterRegistry);
+        failedCounter = Counter.builder("reencryption.rows").tag("outcome", "failed")
+                .description("Messages processed by the re-encryption job").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (autoStart) {
+            start();
+        }
+    }
+
+    /** Starts a pass unless one is running; a completed pass starts over from the first row. */
+    public boolean start() {
+        synchronized (lock) {
+            if (coordinator != null && coordinator.isAlive()) {
+                return false;
+            }
+            stopping = false;
+            paused = false;
+            coordinator = new Thread(this::run, "reencryption");
+            coordinator.setDaemon(true);
+            coordinator.start();
+            return true;
+        }
+    }
+
+    public boolean pause() {
+        synchronized (lock) {
+            if (state != State.RUNNING) {
+                return false;
+            }
+            paused = true;
+            return true;
+        }
+    }
+
+    public boolean resume() {
+        synchronized (lock) {
+            if (!paused) {
+                return false;
+            }
+            paused = false;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread running;
+        synchronized (lock) {
+            stopping = true;
+            lock.notifyAll();
+            running = coordinator;
+        }
+        if (running != null) {
+            // A chunk is committed as a whole, so an interrupted chunk is simply read again
+            running.interrupt();
+            running.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        workers.shutdown();
+    }
+
+    public Map<String, Object> status() {
+        JobCheckpoint current = checkpoint;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("sourceAlgorithms", sourceAlgorithms);
+        status.put("targetAlgorithm", TARGET);
+        status.put("lastId", current == null ? null : current.getLastPosition());
+        status.put("migrated", current == null ? 0 : current.getProcessed());
+        status.put("failed", current == null ? 0 : current.getRejected());
+        status.put("remainingAtStart", remainingAtStart);
+        status.put("withoutServerKey", withoutKey);
+        status.put("threads", threads);
+        status.put("rowsPerSecondLimit", rowsPerSecond);
+        status.put("maxCpu", maxCpu);
+        status.put("cpuThrottledMs", cpuThrottledMs);
+        status.put("startedAt", startedAt);
+        status.put("updatedAt", current == null ? null : current.getUpdatedAt());
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private void run() {
+        state = State.RUNNING;
+        startedAt = LocalDateTime.now();
+        lastError = null;
+        try {
+            JobCheckpoint loaded = checkpointRepository.findById(JOB_ID)
+                    .orElseGet(() -> new JobCheckpoint(JOB_ID, 0, 0, 0, false, null));
+            if (loaded.isCompleted()) {
+                loaded = new JobCheckpoint(JOB_ID, 0, 0, 0, false, null);
+            }
+            checkpoint = loaded;
+            countRemaining(loaded.getLastPosition());
+            logger.info("Re-encryption of {} to {} starting after ID {}: {} messages to migrate, {} without a"
+                    + " server-held key", sourceAlgorithms, TARGET, loaded.getLastPosition(), remainingAtStart,
+                    withoutKey);
+            resetPacing();
+
+            while (!stopping) {
+                if (awaitResume()) {
+                    break;
+                }
+                throttleCpu();
+                List<Row> rows = fetch(checkpoint.getLastPosition());
+                if (rows.isEmpty()) {
+                    checkpoint = commit(List.of(), 0, checkpoint.getLastPosition(), true);
+                    state = State.COMPLETED;
+                    logger.info("Re-encryption finished: {} migrated, {} failed", checkpoint.getProcessed(),
+                            checkpoint.getRejected());
+                    return;
+                }
+                List<Object[]> updates = reencrypt(rows);
+                int failed = rows.size() - updates.size();
+                checkpoint = commit(updates, failed, rows.get(rows.size() - 1).id, false);
+                afterCommit(rows, updates);
+                migratedCounter.increment(updates.size());
+                failedCounter.increment(failed);
+                pace(rows.size());
+            }
+            state = State.IDLE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = State.IDLE;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            state = State.FAILED;
+            logger.error("Re-encryption stopped after ID {}", checkpoint == null ? 0 : checkpoint.getLastPosition(), e);
+        }
+    }
+
+    // Messages after an ID in a source algorithm, hot or cold; files are left alone
+    private String candidates(String alias) {
+        return " " + alias + "id > ? AND " + alias + "algorithm IN ("
+                + String.join(", ", Collections.nCopies(sourceAlgorithms.length, "?")) + ") AND " + alias
+                + "file_size IS NULL";
+    }
+
+    private void countRemaining(long afterId) {
+        Object[] args = new Object[sourceAlgorithms.length + 1];
+        args[0] = afterId;
+        for (int i = 0; i < sourceAlgorithms.length; i++) {
+            args[i + 1] = sourceAlgorithms[i].name();
+        }
+        String where = " FROM encrypted_messages WHERE" + candidates("");
+        Long withKey = jdbcTemplate.queryForObject("SELECT COUNT(*)" + where + " AND encrypted_key IS NOT NULL",
+                Long.class, args);
+        Long noKey = jdbcTemplate.queryForObject("SELECT COUNT(*)" + where + " AND encrypted_key IS NULL",
+                Long.class, args);
+        remainingAtStart = withKey == null ? 0 : withKey;
+        withoutKey = noKey == null ? 0 : noKey;
+    }
+
+    // Returns true when the job is being stopped
+    private boolean awaitResume() throws InterruptedException {
+        synchronized (lock) {
+            if (!paused) {
+                return stopping;
+            }
+            state = State.PAUSED;
+            logger.info("Re-encryption paused after ID {}", checkpoint.getLastPosition());
+            while (paused && !stopping) {
+                lock.wait();
+            }
+            if (!stopping) {
+                state = State.RUNNING;
+                logger.info("Re-encryption resumed");
+                resetPacing();
+            }
+            return stopping;
+        }
+    }
+
+    private List<Row> fetch(long afterId) {
+        Object[] args = new Object[sourceAlgorithms.length + 2];
+        args[0] = afterId;
+        for (int i = 0; i < sourceAlgorithms.length; i++) {
+            args[i + 1] = sourceAlgorithms[i].name();
+        }
+        args[args.length - 1] = chunkSize;
+        return jdbcTemplate.query(selectSql, (rs, rowNum) -> new Row(rs.getLong("id"),
+                coldMessageStore.content(rs), EncryptionAlgorithm.valueOf(rs.getString("algorithm")),
+                rs.getString("encrypted_key"), rs.getString("initialization_vector"), rs.getLong("user_id"),
+                rs.getTimestamp("archived_at") != null), args);
+    }
+
+    // Splits the chunk into one slice per worker; rows that cannot be decrypted are left unchanged
+    private List<Object[]> reencrypt(List<Row> rows) throws InterruptedException {
+        int sliceSize = (rows.size() + threads - 1) / threads;
+        List<Future<List<Object[]>>> slices = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += sliceSize) {
+            List<Row> slice = rows.subList(from, Math.min(rows.size(), from + sliceSize));
+            slices.add(workers.submit(() -> reencryptSlice(slice)));
+        }
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        try {
+            for (Future<List<Object[]>> slice : slices) {
+                updates.addAll(slice.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Re-encryption worker failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return updates;
+    }
+
+    private List<Object[]> reencryptSlice(List<Row> slice) {
+        List<Object[]> updates = new ArrayList<>(slice.size());
+        for (Row row : slice) {
+            try {
+                EncryptionService.EncryptionResult result = encryptionService.reencrypt(row.encryptedContent,
+                        row.key, row.iv, row.algorithm);
+                if (row.archived) {
+                    updates.add(new Object[] {Base64.getDecoder().decode(result.getEncryptedContent()), null, null,
+                            null, TARGET.name(), result.getInitializationVector(), row.id, row.algorithm.name(),
+                            row.iv});
+                    continue;
+                }
+                // The old record becomes garbage for segment compaction
+                SegmentPointer pointer = segmentStore.isEnabled()
+                        ? segmentStore.append(result.getEncryptedContent()) : null;
+                updates.add(new Object[] {pointer == null ? result.getEncryptedContent() : null,
+                        pointer != null ? pointer.getSegmentId() : null,
+                        pointer != null ? pointer.getOffset() : null,
+                        pointer != null ? pointer.getLength() : null,
+                        TARGET.name(), result.getInitializationVector(), row.id, row.algorithm.name(), row.iv});
+            } catch (RuntimeException e) {
+                logFailure(row, e);
+            }
+        }
+        return updates;
+    }
+
+    private synchronized void logFailure(Row row, RuntimeException e) {
+        if (failuresLogged++ < MAX_LOGGED_FAILURES) {
+            logger.warn("Message {} ({}) was not re-encrypted: {}", row.id, row.algorithm, e.getMessage());
+        }
+    }
+
+    private JobCheckpoint commit(List<Object[]> updates, int failed, long lastId, boolean completed) {
+        JobCheckpoint current = checkpoint;
+        return transactionTemplate.execute(status -> {
+            // Cold updates carry the raw bytes for the archive table instead of Base64
+            List<Object[]> hot = updates.stream().filter(update -> !(update[0] instanceof byte[])).toList();
+            List<Object[]> cold = updates.stream().filter(update -> update[0] instanceof byte[]).toList();
+            if (!hot.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, hot, hot.size(), (ps, update) -> {
+                    for (int i = 0; i < update.length; i++) {
+                        ps.setObject(i + 1, update[i]);
+                    }
+                });
+            }
+            if (!cold.isEmpty()) {
+                jdbcTemplate.batchUpdate(ARCHIVED_UPDATE_SQL, cold, cold.size(), (ps, update) -> {
+                    for (int i = 4; i < update.length; i++) {
+                        ps.setObject(i - 3, update[i]);
+                    }
+                });
+                jdbcTemplate.batchUpdate(ARCHIVED_CONTENT_SQL, cold, cold.size(), (ps, update) -> {
+                    ps.setBytes(1, (byte[]) update[0]);
+                    ps.setLong(2, (Long) update[6]);
+                    ps.setString(3, (String) update[5]);
+                });
+            }
+            current.setLastPosition(lastId);
+            current.setProcessed(current.getProcessed() + updates.size());
+            current.setRejected(current.getRejected() + failed);
+            current.setCompleted(completed);
+            return checkpointRepository.save(current);
+        });
+    }
+
+    // The rows were changed behind Hibernate's back, so drop them from the second-level cache
+    // and the users' cached listings, which show the algorithm
+    private void afterCommit(List<Row> rows, List<Object[]> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Set<Long> updatedIds = updates.stream().map(update -> (Long) update[6]).collect(Collectors.toSet());
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Row row : rows) {
+            if (updatedIds.contains(row.id)) {
+                entityManagerFactory.getCache().evict(EncryptedMessage.class, row.id);
+                userIds.add(row.userId);
+            }
+        }
+        userIds.forEach(invalidationBus::publish);
+    }
+
+    private void resetPacing() {
+        pacingStartNanos = System.nanoTime();
+        pacedRows = 0;
+    }
+
+    private void pace(int rows) throws InterruptedException {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        pacedRows += rows;
+        long dueNanos = pacingStartNanos + (long) (pacedRows * 1_000_000_000L / rowsPerSecond);
+        long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    // Waits while the whole process, including request handling, uses more than max-cpu of the machine
+    private void throttleCpu() throws InterruptedException {
+        if (maxCpu <= 0) {
+            return;
+        }
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean processOs)) {
+            return;
+        }
+        while (!stopping && processOs.getProcessCpuLoad() > maxCpu) {
+            Thread.sleep(CPU_BACKOFF_MS);
+            cpuThrottledMs += CPU_BACKOFF_MS;
+        }
+    }
+
+    private record Row(long id, String encryptedContent, EncryptionAlgorithm algorithm, String key, String iv,
+            long userId, boolean archived) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.cybersecurity.encryption.repository;
+
+import com.cybersecurity.encryption.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -1,10 +1,12 @@
 package com.cybersecurity.encryption.security;
 
+import com.cybersecurity.encryption.tracing.RateLimitedLogger;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
@@ -12,14 +14,17 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JwtAuthenticationEntryPoint implements AuthenticationEntryPoint {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationEntryPoint.class);
 
+    private static final RateLimitedLogger unauthorizedLogger = new RateLimitedLogger(logger, 10, 1_000);
+
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response,
             AuthenticationException authException) throws IOException, ServletException {
-        logger.error("Responding with unauthorized error. Message - {}", authException.getMessage());
+        unauthorizedLogger.warn("Responding with unauthorized error. Message - {}", authException.getMessage());
 
         response.setContentType("application/json");
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -1,5 +1,8 @@
 package com.cybersecurity.encryption.security;
 
+import com.cybersecurity.encryption.tracing.AuthOutcome;
+import com.cybersecurity.encryption.tracing.RateLimitedLogger;
+import com.cybersecurity.encryption.tracing.RequestTrace;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +10,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,6 +23,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
@@ -29,58 +34,57 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    private static final RateLimitedLogger failureLogger = new RateLimitedLogger(logger, 10, 1_000);
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
             FilterChain filterChain) throws ServletException, IOException {
-        String requestURI = request.getRequestURI();
-        logger.debug("Processing request to: {}", requestURI);
+        RequestTrace trace = RequestTrace.of(request);
 
         try {
             // Skip JWT authentication for public endpoints
-            if (requestURI.startsWith("/api/auth/")) {
-                logger.debug("Skipping JWT authentication for public endpoint: {}", requestURI);
+            if (request.getRequestURI().startsWith("/api/auth/")) {
+                record(trace, AuthOutcome.PUBLIC, null);
                 filterChain.doFilter(request, response);
                 return;
             }
 
             String jwt = getJwtFromRequest(request);
-            logger.debug("JWT token extracted: {}", jwt != null ? "present" : "absent");
 
             if (StringUtils.hasText(jwt)) {
-                logger.debug("Validating JWT token...");
-                if (tokenProvider.validateToken(jwt)) {
-                    logger.debug("JWT token is valid, extracting username...");
-                    String username = tokenProvider.getUsernameFromToken(jwt);
-                    logger.debug("Username extracted from JWT: {}", username);
-
+                String username = tokenProvider.validateAndGetUsername(jwt);
+                if (username != null) {
                     UserDetails userDetails = userDetailsService.loadUserByUsername(username);
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    logger.debug("Authentication set in SecurityContext for user: {}", username);
+                    record(trace, AuthOutcome.VALID, username);
                 } else {
-                    logger.warn("JWT token is invalid");
+                    record(trace, AuthOutcome.INVALID, null);
                 }
             } else {
-                logger.debug("No JWT token found in request");
+                record(trace, AuthOutcome.NO_TOKEN, null);
             }
         } catch (Exception ex) {
-            logger.error("Could not set user authentication in security context", ex);
+            record(trace, AuthOutcome.ERROR, null);
+            failureLogger.warn("Could not set user authentication in security context: {}", ex.toString());
         }
 
         filterChain.doFilter(request, response);
     }
 
+    private void record(RequestTrace trace, AuthOutcome outcome, String username) {
+        if (trace != null) {
+            trace.authenticated(outcome, username);
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
-        logger.debug("Authorization header: {}", bearerToken);
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
-            String token = bearerToken.substring(7);
-            logger.debug("Extracted token (first 20 chars): {}",
-                    token.length() > 20 ? token.substring(0, 20) + "..." : token);
-            return token;
+            return bearerToken.substring(7);
         }
         return null;
     }
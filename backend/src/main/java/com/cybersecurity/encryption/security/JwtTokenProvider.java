@@ -1,22 +1,34 @@
 package com.cybersecurity.encryption.security;
 
+import com.cybersecurity.encryption.jfr.TokenVerificationEvent;
+import com.cybersecurity.encryption.tracing.RateLimitedLogger;
+import com.cybersecurity.encryption.tracing.RequestTracingFilter;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    // Anyone can send bad tokens, so never log more than a handful per second.
+    private static final RateLimitedLogger rejectedTokenLogger = new RateLimitedLogger(logger, 10, 1_000);
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
@@ -26,8 +38,31 @@ public class JwtTokenProvider {
     @Value("${app.jwt.refresh-expiration-ms}")
     private int refreshExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer validTokenTimer;
+    private Timer invalidTokenTimer;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        validTokenTimer = verificationTimer("valid");
+        invalidTokenTimer = verificationTimer("invalid");
+    }
+
+    private Timer verificationTimer(String outcome) {
+        return Timer.builder("jwt.verification")
+                .description("Time spent parsing and verifying a JWT signature")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
     }
 
     public String generateToken(Authentication authentication) {
@@ -47,38 +82,55 @@ public class JwtTokenProvider {
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims claims = parser.parseSignedClaims(token).getPayload();
 
         return claims.getSubject();
     }
 
     public boolean validateToken(String authToken) {
+        return validateAndGetUsername(authToken) != null;
+    }
+
+    /**
+     * Verifies the token and returns its subject, or {@code null} when the token is
+     * not valid. Parses the token once, unlike validateToken followed by
+     * getUsernameFromToken.
+     */
+    public String validateAndGetUsername(String authToken) {
+        TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String username = null;
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(authToken);
-            return true;
-        } catch (MalformedJwtException e) {
-            logger.error("Invalid JWT token: {}", e.getMessage());
+            username = parser.parseSignedClaims(authToken).getPayload().getSubject();
+            return username;
         } catch (ExpiredJwtException e) {
-            logger.error("JWT token is expired: {}", e.getMessage());
+            rejectedTokenLogger.warn("Rejected JWT: {}", "expired");
+        } catch (MalformedJwtException e) {
+            rejectedTokenLogger.warn("Rejected JWT: {}", "malformed");
         } catch (UnsupportedJwtException e) {
-            logger.error("JWT token is unsupported: {}", e.getMessage());
+            rejectedTokenLogger.warn("Rejected JWT: {}", "unsupported");
+        } catch (JwtException e) {
+            rejectedTokenLogger.warn("Rejected JWT: {}", "signature or claims check failed");
         } catch (IllegalArgumentException e) {
-            logger.error("JWT claims string is empty: {}", e.getMessage());
+            rejectedTokenLogger.warn("Rejected JWT: {}", "empty");
+        } finally {
+            boolean valid = username != null;
+            (valid ? validTokenTimer : invalidTokenTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.valid = valid;
+                event.requestId = RequestTracingFilter.current();
+                event.commit();
+            }
         }
 
-        return false;
+        return null;
     }
 
     public int getJwtExpirationMs() {
@@ -1,9 +1,16 @@
 package com.cybersecurity.encryption.security;
 
+import com.cybersecurity.encryption.jfr.InstrumentedPasswordEncoder;
+import com.cybersecurity.encryption.security.ratelimit.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -20,9 +27,12 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Arrays;
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
@@ -36,11 +46,27 @@ public class SecurityConfig {
     @Value("${app.cors.allowed-origins}")
     private String allowedOrigins;
 
+    @Autowired
+    private Environment environment;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
     }
 
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
+    // Keep the limiter inside the security chain only, after the user is known.
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -56,7 +82,7 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new InstrumentedPasswordEncoder(new BCryptPasswordEncoder());
     }
 
     @Bean
@@ -65,9 +91,20 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(auth -> auth.requestMatchers("/api/auth/**").permitAll()
+                // Async dispatches only write out the result of a request that was already authorized
+                .authorizeHttpRequests(auth -> auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/api/test/**").permitAll()
+                        // Health probes stay anonymous, also as /livez and /readyz on the API port
+                        .requestMatchers("/actuator/health/**", "/livez", "/readyz").permitAll()
+                        // Metrics only on management.server.port, which listens on loopback unless
+                        // management.server.address opens it for scraping
+                        .requestMatchers(request -> onManagementPort(request)
+                                && "/actuator/prometheus".equals(request.getRequestURI())).permitAll()
+                        // Job control only from the node itself, whatever address the port listens on
+                        .requestMatchers(request -> onManagementPort(request) && fromLoopback(request)).permitAll()
+                        .requestMatchers("/actuator/**").denyAll()
                         .anyRequest().authenticated());
 
         // Fix for H2 console
@@ -75,16 +112,33 @@ public class SecurityConfig {
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(rateLimitFilter(), JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    // Set by Boot once the management server listens on a port of its own
+    private boolean onManagementPort(HttpServletRequest request) {
+        String managementPort = environment.getProperty("local.management.port");
+        return managementPort != null && request.getLocalPort() == Integer.parseInt(managementPort);
+    }
+
+    private static boolean fromLoopback(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(Arrays.asList(allowedOrigins.split(",")));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("Content-Disposition", "Content-Range", "Accept-Ranges", "ETag",
+                "X-Encryption-Algorithm", "X-Initialization-Vector", "X-Original-Content-Type"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
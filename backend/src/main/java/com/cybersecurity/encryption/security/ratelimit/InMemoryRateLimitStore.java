@@ -0,0 +1,38 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    @Value("${app.rate-limit.max-tracked-keys:100000}")
+    private long maxTrackedKeys;
+
+    // Should exceed the slowest full refill, otherwise eviction only resets a bucket early.
+    @Value("${app.rate-limit.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    void init() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(Duration.ofMillis(idleEvictionMs))
+                .build();
+    }
+
+    @Override
+    public RateLimitResult tryConsume(String key, RateLimitPolicy policy) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket());
+        return bucket.tryConsume(policy, System.nanoTime());
+    }
+}
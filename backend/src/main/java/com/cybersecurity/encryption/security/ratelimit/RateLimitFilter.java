@@ -0,0 +1,131 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a token bucket per caller and endpoint group. Runs after the JWT filter so
+ * that authenticated calls are charged to the user; anonymous calls and the auth
+ * endpoints are charged to the client IP. Authenticated calls also draw from a larger
+ * bucket per client IP, so that one address cannot multiply its budget with many accounts.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    @Autowired
+    private RateLimitStore store;
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-limit.auth.capacity:10}")
+    private long authCapacity;
+
+    @Value("${app.rate-limit.auth.refill-per-second:0.2}")
+    private double authRefillPerSecond;
+
+    @Value("${app.rate-limit.crypto.capacity:30}")
+    private long cryptoCapacity;
+
+    @Value("${app.rate-limit.crypto.refill-per-second:5}")
+    private double cryptoRefillPerSecond;
+
+    @Value("${app.rate-limit.read.capacity:100}")
+    private long readCapacity;
+
+    @Value("${app.rate-limit.read.refill-per-second:20}")
+    private double readRefillPerSecond;
+
+    @Value("${app.rate-limit.ip.capacity:300}")
+    private long ipCapacity;
+
+    @Value("${app.rate-limit.ip.refill-per-second:60}")
+    private double ipRefillPerSecond;
+
+    private RateLimitPolicy authPolicy;
+    private RateLimitPolicy cryptoPolicy;
+    private RateLimitPolicy readPolicy;
+    private RateLimitPolicy ipPolicy;
+
+    @PostConstruct
+    void init() {
+        authPolicy = new RateLimitPolicy("auth", authCapacity, authRefillPerSecond);
+        cryptoPolicy = new RateLimitPolicy("crypto", cryptoCapacity, cryptoRefillPerSecond);
+        readPolicy = new RateLimitPolicy("read", readCapacity, readRefillPerSecond);
+        ipPolicy = new RateLimitPolicy("ip", ipCapacity, ipRefillPerSecond);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        RateLimitPolicy policy = resolvePolicy(request.getRequestURI());
+        String caller = resolveCaller(request, policy);
+        String key = policy.getName() + ":" + caller;
+        RateLimitResult result = store.tryConsume(key, policy);
+        if (result.isAllowed() && caller.startsWith("user:")) {
+            // Only calls the user's bucket allowed are charged to the address, which other users may share
+            String ipKey = ipPolicy.getName() + ":" + request.getRemoteAddr();
+            RateLimitResult ipResult = store.tryConsume(ipKey, ipPolicy);
+            if (!ipResult.isAllowed() || ipResult.getRemaining() < result.getRemaining()) {
+                key = ipKey;
+                result = ipResult;
+            }
+        }
+
+        if (!result.isAllowed()) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(result.getRetryAfterNanos() + 999_999_999L));
+            logger.debug("Rate limit exceeded for {}", key);
+            response.setStatus(429);
+            response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+            response.setContentType("application/json");
+            response.getWriter()
+                    .write("{\"error\": \"Too Many Requests\", \"message\": \"Rate limit exceeded, retry in "
+                            + retryAfterSeconds + " seconds\"}");
+            return;
+        }
+
+        response.setHeader("X-RateLimit-Remaining", Long.toString(result.getRemaining()));
+        filterChain.doFilter(request, response);
+    }
+
+    private RateLimitPolicy resolvePolicy(String uri) {
+        if (uri.startsWith("/api/auth/")) {
+            return authPolicy;
+        }
+        if (uri.equals("/api/encrypt") || uri.equals("/api/decrypt") || uri.equals("/api/files")) {
+            return cryptoPolicy;
+        }
+        return readPolicy;
+    }
+
+    private String resolveCaller(HttpServletRequest request, RateLimitPolicy policy) {
+        if (policy != authPolicy) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()
+                    && !(authentication instanceof AnonymousAuthenticationToken)) {
+                return "user:" + authentication.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,24 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitPolicy {
+    private final String name;
+    private final long capacity;
+    private final double refillPerSecond;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    public RateLimitPolicy(String name, long capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid rate limit for " + name
+                    + ": capacity must be >= 1 and refill-per-second > 0");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.emissionIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (capacity - 1);
+    }
+}
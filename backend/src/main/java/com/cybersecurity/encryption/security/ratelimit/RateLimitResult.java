@@ -0,0 +1,12 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RateLimitResult {
+    private final boolean allowed;
+    private final long remaining;
+    private final long retryAfterNanos;
+}
@@ -0,0 +1,11 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+/**
+ * Holds the bucket state for every rate-limited key. Implementations backed by a
+ * shared store must apply the consume step atomically on the store side so that
+ * several nodes draw from the same budget.
+ */
+public interface RateLimitStore {
+
+    RateLimitResult tryConsume(String key, RateLimitPolicy policy);
+}
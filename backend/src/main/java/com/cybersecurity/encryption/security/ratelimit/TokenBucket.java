@@ -0,0 +1,31 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is the theoretical
+ * arrival time of the next request, updated with a single CAS. A bucket that has
+ * been idle for {@code capacity / refillPerSecond} seconds is full again.
+ */
+public class TokenBucket {
+
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    public RateLimitResult tryConsume(RateLimitPolicy policy, long nowNanos) {
+        long interval = policy.getEmissionIntervalNanos();
+        long tolerance = policy.getBurstToleranceNanos();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long tat = Math.max(current, nowNanos);
+            long earliest = tat - tolerance;
+            if (nowNanos < earliest) {
+                return new RateLimitResult(false, 0, earliest - nowNanos);
+            }
+            long next = tat + interval;
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                long remaining = (tolerance - (next - interval - nowNanos)) / interval;
+                return new RateLimitResult(true, Math.max(0, remaining), 0);
+            }
+        }
+    }
+}
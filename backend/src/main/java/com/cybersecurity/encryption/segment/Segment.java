@@ -0,0 +1,147 @@
+package com.cybersecurity.encryption.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped segment file: an 8-byte header followed by records of
+ * {@code [payload length][CRC32C of payload][payload]}, appended until the file is full.
+ * The file is mapped at its full size up front, so the unwritten tail reads as zeros.
+ */
+final class Segment {
+
+    static final int MAGIC = 0x53565347; // "SVSG"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private final int id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    // Readers only look below this, and it is written after the record it covers
+    private volatile int writePosition;
+    private volatile boolean sealed;
+    private volatile long sealedAtNanos;
+
+    private Segment(int id, Path path, MappedByteBuffer buffer, int writePosition) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+        this.writePosition = writePosition;
+    }
+
+    static Segment create(int id, Path path, int capacity) throws IOException {
+        MappedByteBuffer buffer = map(path, capacity, StandardOpenOption.CREATE_NEW);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.force(0, FILE_HEADER_BYTES);
+        return new Segment(id, path, buffer, FILE_HEADER_BYTES);
+    }
+
+    /**
+     * Maps an existing segment and finds where its last intact record ends. A record torn by a
+     * crash fails its checksum, so it and anything after it count as free space again.
+     */
+    static Segment open(int id, Path path, long size) throws IOException {
+        if (size < FILE_HEADER_BYTES || size > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + path + " has an invalid size of " + size + " bytes");
+        }
+        MappedByteBuffer buffer = map(path, (int) size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Segment " + path + " has an unknown header");
+        }
+        int position = FILE_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_BYTES
+                    || buffer.getInt(position + 4) != checksum(buffer, position + RECORD_HEADER_BYTES, length)) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            // Clear the length slot so a later scan stops here too
+            buffer.putInt(position, 0);
+        }
+        return new Segment(id, path, buffer, position);
+    }
+
+    private static MappedByteBuffer map(Path path, int capacity, StandardOpenOption... extra) throws IOException {
+        StandardOpenOption[] options = new StandardOpenOption[extra.length + 2];
+        options[0] = StandardOpenOption.READ;
+        options[1] = StandardOpenOption.WRITE;
+        System.arraycopy(extra, 0, options, 2, extra.length);
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    /** Appends a record and returns its offset, or -1 if it does not fit. Callers serialize appends. */
+    int append(byte[] payload, boolean sync) {
+        int offset = writePosition;
+        if (payload.length > buffer.capacity() - offset - RECORD_HEADER_BYTES) {
+            return -1;
+        }
+        buffer.put(offset + RECORD_HEADER_BYTES, payload);
+        buffer.putInt(offset + 4, checksum(buffer, offset + RECORD_HEADER_BYTES, payload.length));
+        buffer.putInt(offset, payload.length);
+        if (sync) {
+            buffer.force(offset, RECORD_HEADER_BYTES + payload.length);
+        }
+        writePosition = offset + RECORD_HEADER_BYTES + payload.length;
+        return offset;
+    }
+
+    byte[] read(int offset, int length) {
+        if (offset < FILE_HEADER_BYTES || length <= 0 || offset > writePosition - RECORD_HEADER_BYTES - length) {
+            throw new RuntimeException("No record of " + length + " bytes at offset " + offset + " of segment " + id);
+        }
+        if (buffer.getInt(offset) != length
+                || buffer.getInt(offset + 4) != checksum(buffer, offset + RECORD_HEADER_BYTES, length)) {
+            throw new RuntimeException("Corrupt record at offset " + offset + " of segment " + id);
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + RECORD_HEADER_BYTES, payload);
+        return payload;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    long getSealedAtNanos() {
+        return sealedAtNanos;
+    }
+
+    void seal(long nanos) {
+        sealedAtNanos = nanos;
+        sealed = true;
+    }
+}
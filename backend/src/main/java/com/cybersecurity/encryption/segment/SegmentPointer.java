@@ -0,0 +1,13 @@
+package com.cybersecurity.encryption.segment;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** Where a message's ciphertext lives in the {@link SegmentStore}. */
+@Getter
+@AllArgsConstructor
+public class SegmentPointer {
+    private final Integer segmentId;
+    private final Long offset;
+    private final Integer length;
+}
@@ -0,0 +1,279 @@
+package com.cybersecurity.encryption.segment;
+
+import com.cybersecurity.encryption.entity.EncryptedMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-structured store for message ciphertext, so that encrypted_messages keeps a
+ * (segment, offset, length) pointer instead of a TEXT column. Ciphertext is appended as raw
+ * bytes to the active memory-mapped segment under {@code app.segment-store.dir}; a full segment
+ * is sealed and a new one started. On startup each segment is scanned and a record torn by a
+ * crash is dropped along with whatever followed it.
+ * <p>
+ * A record is live while a row points at it, so a deleted message, a rolled-back insert or a
+ * re-encrypted message simply leaves garbage behind. A background pass finds sealed segments
+ * whose garbage exceeds {@code app.segment-store.compaction.min-garbage-ratio}, copies their
+ * live records to the active segment, repoints the rows and deletes the old file one pass later,
+ * once no reader can still hold the old pointer. The directory belongs to one process.
+ */
+@Component
+public class SegmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+
+    /** The columns {@link #content(ResultSet)} reads. */
+    public static final String CONTENT_COLUMNS = "encrypted_content, segment_id, segment_offset, segment_length";
+
+    private static final String FILE_SUFFIX = ".seg";
+    private static final String STATS_SQL = "SELECT segment_id, COUNT(*) AS records, SUM(segment_length) AS bytes"
+            + " FROM encrypted_messages WHERE segment_id IS NOT NULL GROUP BY segment_id";
+    private static final String LIVE_SQL = "SELECT id, segment_offset, segment_length FROM encrypted_messages"
+            + " WHERE segment_id = ? AND id > ? ORDER BY id LIMIT ?";
+    // The old pointer in the WHERE clause skips rows deleted or rewritten since they were read
+    private static final String MOVE_SQL = "UPDATE encrypted_messages SET segment_id = ?, segment_offset = ?"
+            + " WHERE id = ? AND segment_id = ? AND segment_offset = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.segment-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.segment-store.dir:data/segments}")
+    private String dir;
+
+    @Value("${app.segment-store.segment-size:67108864}")
+    private int segmentSize;
+
+    // Forces each record to disk before the row pointing at it commits
+    @Value("${app.segment-store.sync:true}")
+    private boolean sync;
+
+    @Value("${app.segment-store.compaction.min-garbage-ratio:0.5}")
+    private double minGarbageRatio;
+
+    // Also how long a sealed segment waits before compaction, so inserts into it have committed
+    @Value("${app.segment-store.compaction.interval-ms:60000}")
+    private long compactionIntervalMs;
+
+    @Value("${app.segment-store.compaction.batch-size:500}")
+    private int compactionBatchSize;
+
+    private final ConcurrentNavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    // Compacted segments, deleted on the next pass; only touched by the compaction thread
+    private final List<Segment> retired = new ArrayList<>();
+    private Path root;
+    private Segment active;
+    private ThreadPoolTaskScheduler compactor;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (segmentSize <= Segment.FILE_HEADER_BYTES + Segment.RECORD_HEADER_BYTES) {
+            throw new IllegalStateException("app.segment-store.segment-size is too small: " + segmentSize);
+        }
+        root = Files.createDirectories(Paths.get(dir).toAbsolutePath().normalize());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                segments.put(id, Segment.open(id, file, Files.size(file)));
+            }
+        }
+        // Appends continue in the newest segment; the others are old enough to compact right away
+        long longAgo = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(compactionIntervalMs);
+        segments.headMap(segments.isEmpty() ? 0 : segments.lastKey()).values().forEach(segment -> segment.seal(longAgo));
+        synchronized (this) {
+            active = segments.isEmpty() ? create(1) : segments.lastEntry().getValue();
+        }
+        logger.info("Segment store opened {} segments in {}", segments.size(), root);
+
+        Gauge.builder("segmentstore.segments", segments, Map::size)
+                .description("Segment files of the ciphertext store").register(meterRegistry);
+        Gauge.builder("segmentstore.bytes", segments,
+                        s -> s.values().stream().mapToLong(Segment::getWritePosition).sum())
+                .description("Bytes written to segment files, live or not").register(meterRegistry);
+
+        compactor = new ThreadPoolTaskScheduler();
+        compactor.setThreadNamePrefix("segment-compaction-");
+        compactor.setDaemon(true);
+        compactor.initialize();
+        compactor.scheduleWithFixedDelay(this::compact, Instant.now().plusMillis(compactionIntervalMs),
+                Duration.ofMillis(compactionIntervalMs));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends Base64 ciphertext as raw bytes. Returns null for ciphertext larger than a segment,
+     * which stays in the row.
+     */
+    public SegmentPointer append(String encryptedContent) {
+        return append(Base64.getDecoder().decode(encryptedContent));
+    }
+
+    private SegmentPointer append(byte[] payload) {
+        if (payload.length > segmentSize - Segment.FILE_HEADER_BYTES - Segment.RECORD_HEADER_BYTES) {
+            return null;
+        }
+        synchronized (this) {
+            int offset = active.append(payload, sync);
+            if (offset < 0) {
+                active.seal(System.nanoTime());
+                active = create(segments.lastKey() + 1);
+                offset = active.append(payload, sync);
+            }
+            return new SegmentPointer(active.getId(), (long) offset, payload.length);
+        }
+    }
+
+    /** Returns the Base64 ciphertext of a message, from its row or from its segment. */
+    public String content(EncryptedMessage message) {
+        if (message.getSegmentId() == null) {
+            return message.getEncryptedContent();
+        }
+        return read(message.getSegmentId(), message.getSegmentOffset(), message.getSegmentLength());
+    }
+
+    /** Same for a row selected with {@link #CONTENT_COLUMNS}. */
+    public String content(ResultSet rs) throws SQLException {
+        int segmentId = rs.getInt("segment_id");
+        if (rs.wasNull()) {
+            return rs.getString("encrypted_content");
+        }
+        return read(segmentId, rs.getLong("segment_offset"), rs.getInt("segment_length"));
+    }
+
+    private String read(int segmentId, long offset, int length) {
+        if (!enabled) {
+            throw new RuntimeException("Message content is in the segment store, which is disabled");
+        }
+        Segment segment = segments.get(segmentId);
+        if (segment == null) {
+            throw new RuntimeException("Segment " + segmentId + " is missing");
+        }
+        return Base64.getEncoder().encodeToString(segment.read((int) offset, length));
+    }
+
+    private Segment create(int id) {
+        try {
+            Segment segment = Segment.create(id, root.resolve(String.format("%08d", id) + FILE_SUFFIX), segmentSize);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create segment " + id, e);
+        }
+    }
+
+    void compact() {
+        try {
+            for (Segment segment : retired) {
+                segments.remove(segment.getId());
+                Files.deleteIfExists(segment.getPath());
+            }
+            retired.clear();
+
+            Map<Integer, long[]> live = new HashMap<>();
+            jdbcTemplate.query(STATS_SQL, rs -> {
+                live.put(rs.getInt("segment_id"), new long[] {rs.getLong("records"), rs.getLong("bytes")});
+            });
+            long sealedBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(compactionIntervalMs);
+            for (Segment segment : segments.values()) {
+                if (!segment.isSealed() || segment.getSealedAtNanos() - sealedBefore > 0) {
+                    continue;
+                }
+                long used = segment.getWritePosition() - Segment.FILE_HEADER_BYTES;
+                long[] stats = live.getOrDefault(segment.getId(), new long[2]);
+                long liveBytes = stats[0] * Segment.RECORD_HEADER_BYTES + stats[1];
+                if (used - liveBytes >= used * minGarbageRatio) {
+                    compact(segment, used - liveBytes);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Segment compaction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void compact(Segment segment, long garbageBytes) {
+        long afterId = 0;
+        int moved = 0;
+        while (true) {
+            List<Object[]> moves = new ArrayList<>();
+            List<Long> ids = new ArrayList<>();
+            jdbcTemplate.query(LIVE_SQL, rs -> {
+                long offset = rs.getLong("segment_offset");
+                SegmentPointer pointer = append(segment.read((int) offset, rs.getInt("segment_length")));
+                moves.add(new Object[] {pointer.getSegmentId(), pointer.getOffset(), rs.getLong("id"),
+                        segment.getId(), offset});
+                ids.add(rs.getLong("id"));
+            }, segment.getId(), afterId, compactionBatchSize);
+            if (moves.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MOVE_SQL, moves,
+                    moves.size(), (ps, move) -> {
+                        for (int i = 0; i < move.length; i++) {
+                            ps.setObject(i + 1, move[i]);
+                        }
+                    }));
+            // The rows changed behind Hibernate's back
+            ids.forEach(id -> entityManagerFactory.getCache().evict(EncryptedMessage.class, id));
+            moved += moves.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        retired.add(segment);
+        logger.info("Compacted segment {}: moved {} records, reclaimed {} bytes", segment.getId(), moved,
+                garbageBytes);
+    }
+}
@@ -4,7 +4,9 @@ import com.cybersecurity.encryption.dto.*;
 import com.cybersecurity.encryption.entity.User;
 import com.cybersecurity.encryption.repository.UserRepository;
 import com.cybersecurity.encryption.security.JwtTokenProvider;
+import com.cybersecurity.encryption.sharding.ShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -13,6 +15,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
@@ -22,6 +25,8 @@ public class AuthService {
     private PasswordEncoder encoder;
     @Autowired
     private JwtTokenProvider jwtUtils;
+    @Autowired
+    private ShardRouter shardRouter;
 
     public AuthResponse authenticateUser(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
@@ -54,13 +59,14 @@ public class AuthService {
         user.setUsername(signUpRequest.getUsername());
         user.setEmail(signUpRequest.getEmail());
         user.setPassword(encoder.encode(signUpRequest.getPassword()));
-        userRepository.save(user);
+        user = userRepository.save(user);
+        shardRouter.assignNewUser(user.getId());
         return new MessageResponse("User registered successfully!");
     }
 
     public TokenRefreshResponse refreshToken(String refreshToken) {
-        if (jwtUtils.validateToken(refreshToken)) {
-            String username = jwtUtils.getUsernameFromToken(refreshToken);
+        String username = jwtUtils.validateAndGetUsername(refreshToken);
+        if (username != null) {
             String newToken = jwtUtils.generateTokenFromUsername(username, jwtUtils.getJwtExpirationMs());
             TokenRefreshResponse response = new TokenRefreshResponse();
             response.setAccessToken(newToken);
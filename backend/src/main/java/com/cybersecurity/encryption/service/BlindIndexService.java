@@ -0,0 +1,194 @@
+package com.cybersecurity.encryption.service;
+
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.MessageSearchToken;
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import com.cybersecurity.encryption.tiering.ColdMessageStore;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Keyed blind index over message content ({@code app.blind-index.enabled}). When a message is
+ * created, every distinct normalized word of the plaintext is stored as a {@link MessageSearchToken}:
+ * an HMAC-SHA256 under a per-user key derived from {@code app.blind-index.key}, truncated to 128
+ * bits. A search computes the tokens of its words the same way and looks them up in the index,
+ * so the database never sees a word and nothing has to be decrypted.
+ */
+@Service
+public class BlindIndexService {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int TOKEN_BYTES = 16;
+    private static final String INSERT_SQL = "INSERT INTO message_search_tokens (message_id, token, user_id)"
+            + " VALUES (?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ColdMessageStore coldMessageStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${app.blind-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.blind-index.key:}")
+    private String key;
+
+    @Value("${app.blind-index.min-term-length:2}")
+    private int minTermLength;
+
+    @Value("${app.blind-index.max-term-length:64}")
+    private int maxTermLength;
+
+    @Value("${app.blind-index.max-terms-per-message:1000}")
+    private int maxTermsPerMessage;
+
+    @Value("${app.blind-index.max-query-terms:8}")
+    private int maxQueryTerms;
+
+    private byte[] masterKey;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        masterKey = key.isEmpty() ? new byte[0] : Base64.getDecoder().decode(key);
+        if (masterKey.length < 32) {
+            throw new IllegalStateException("app.blind-index.key must be a Base64 key of at least 32 bytes");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lower-cased, NFKC-normalized words of the text, each once, in order of first occurrence.
+     * Words shorter or longer than the configured limits are not indexed.
+     */
+    public List<String> terms(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : WORD_SEPARATOR.split(normalized)) {
+            int length = word.codePointCount(0, word.length());
+            if (length >= minTermLength && length <= maxTermLength) {
+                terms.add(word);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /** Stores the tokens of the message's words; runs in the transaction that saves the message. */
+    public void index(Long messageId, Long userId, String plaintext) {
+        List<String> tokens = messageTokens(userId, plaintext);
+        jdbcTemplate.batchUpdate(INSERT_SQL, tokens, tokens.size(), (ps, token) -> {
+            ps.setLong(1, messageId);
+            ps.setString(2, token);
+            ps.setLong(3, userId);
+        });
+    }
+
+    /** Tokens to index for a message, capped at {@code app.blind-index.max-terms-per-message}. */
+    public List<String> messageTokens(Long userId, String plaintext) {
+        List<String> terms = terms(plaintext);
+        return tokens(userId, terms.subList(0, Math.min(terms.size(), maxTermsPerMessage)));
+    }
+
+    public void remove(Long messageId) {
+        jdbcTemplate.update("DELETE FROM message_search_tokens WHERE message_id = ?", messageId);
+    }
+
+    /** Messages of the user containing every word of the query, newest first. */
+    @Transactional(readOnly = true)
+    public Page<EncryptedMessageResponse> search(Long userId, String query, Pageable pageable) {
+        if (!enabled) {
+            throw new RuntimeException("Content search is not enabled");
+        }
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            throw new RuntimeException("Search needs at least one word of " + minTermLength + " or more characters");
+        }
+        if (terms.size() > maxQueryTerms) {
+            throw new RuntimeException("Search is limited to " + maxQueryTerms + " words");
+        }
+        List<String> tokens = tokens(userId, terms);
+        shardRouter.bind(userId);
+
+        // Each further word is a primary-key probe on the messages matching the first one
+        StringBuilder matches = new StringBuilder("SELECT t0.message_id FROM message_search_tokens t0");
+        for (int i = 1; i < tokens.size(); i++) {
+            matches.append(" JOIN message_search_tokens t").append(i).append(" ON t").append(i)
+                    .append(".message_id = t0.message_id AND t").append(i).append(".token = ?");
+        }
+        matches.append(" WHERE t0.user_id = ? AND t0.token = ?");
+        List<Object> args = new ArrayList<>(tokens.subList(1, tokens.size()));
+        args.add(userId);
+        args.add(tokens.get(0));
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (" + matches + ") t", Long.class,
+                args.toArray());
+
+        args.add(pageable.getPageSize());
+        args.add(pageable.getOffset());
+        List<EncryptedMessageResponse> content = jdbcTemplate.query(
+                "SELECT m.id, m.title, " + ColdMessageStore.CONTENT_COLUMNS + ", m.algorithm, m.created_at"
+                        + " FROM encrypted_messages m"
+                        + " JOIN (" + matches + ") t ON t.message_id = m.id" + ColdMessageStore.JOIN
+                        + " ORDER BY m.created_at DESC, m.id DESC LIMIT ? OFFSET ?",
+                (rs, rowNum) -> new EncryptedMessageResponse(
+                        rs.getLong("id"),
+                        rs.getString("title"),
+                        coldMessageStore.content(rs),
+                        EncryptionAlgorithm.valueOf(rs.getString("algorithm")),
+                        rs.getTimestamp("created_at").toLocalDateTime()),
+                args.toArray());
+        return new PageImpl<>(content, pageable, total == null ? 0 : total);
+    }
+
+    /** Tokens of already normalized terms, in the same order. */
+    public List<String> tokens(Long userId, List<String> terms) {
+        try {
+            // Per-user keys: the same word gives unrelated tokens in different vaults
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+            mac.update("user-token-key".getBytes(StandardCharsets.US_ASCII));
+            byte[] userKey = mac.doFinal(ByteBuffer.allocate(Long.BYTES).putLong(userId).array());
+
+            mac.init(new SecretKeySpec(userKey, "HmacSHA256"));
+            List<String> tokens = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                byte[] digest = mac.doFinal(term.getBytes(StandardCharsets.UTF_8));
+                tokens.add(HexFormat.of().formatHex(digest, 0, TOKEN_BYTES));
+            }
+            return tokens;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not compute search tokens: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,42 +1,275 @@
 package com.cybersecurity.encryption.service;
 
+import com.cybersecurity.encryption.buffer.SecureBuffer;
+import com.cybersecurity.encryption.buffer.SecureBufferPool;
+import com.cybersecurity.encryption.cache.UserMessageCache;
 import com.cybersecurity.encryption.dto.*;
 import com.cybersecurity.encryption.entity.EncryptedMessage;
 import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
 import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.event.MessageCreatedEvent;
+import com.cybersecurity.encryption.event.MessageDeletedEvent;
+import com.cybersecurity.encryption.jfr.CryptoOperationEvent;
+import com.cybersecurity.encryption.kdf.PassphraseKeyDeriver;
+import com.cybersecurity.encryption.metrics.CryptoMetrics;
+import com.cybersecurity.encryption.segment.SegmentPointer;
+import com.cybersecurity.encryption.segment.SegmentStore;
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import com.cybersecurity.encryption.tiering.ColdMessageStore;
+import com.cybersecurity.encryption.tracing.RequestTracingFilter;
 import com.cybersecurity.encryption.repository.EncryptedMessageRepository;
 import org.bouncycastle.crypto.engines.ChaCha7539Engine;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class EncryptionService {
 
-    static {
-        // Add Bouncy Castle provider
-        Security.addProvider(new BouncyCastleProvider());
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+
+    // DRBG generates and reseeds inside synchronized methods, so a single instance would put
+    // every IV and key of the process behind one monitor, which also pins virtual threads.
+    // Callers use one of a few instances picked by thread ID instead.
+    private static final SecureRandom[] secureRandoms = newSecureRandoms(
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    private static SecureRandom[] newSecureRandoms(int count) {
+        SecureRandom[] randoms = new SecureRandom[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                randoms[i] = SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                randoms[i] = new SecureRandom();
+            }
+        }
+        return randoms;
+    }
+
+    @SuppressWarnings("deprecation") // Thread.threadId() needs Java 19
+    private static SecureRandom secureRandom() {
+        return secureRandoms[(int) (Thread.currentThread().getId() % secureRandoms.length)];
     }
 
     @Autowired
     private EncryptedMessageRepository messageRepository;
 
+    @Autowired
+    private UserMessageCache messageCache;
+
+    @Autowired
+    private CryptoMetrics cryptoMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BlindIndexService blindIndexService;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ColdMessageStore coldMessageStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SecureBufferPool bufferPool;
+
+    @Autowired
+    private PassphraseKeyDeriver passphraseKeyDeriver;
+
+    // Cached reads only open a transaction on a miss, so a hit never touches the pool.
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate writeTransaction;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
     public EncryptionResult encrypt(String message, String keyString, EncryptionAlgorithm algorithm) {
+        CryptoOperationEvent event = new CryptoOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        EncryptionResult result = null;
+        try {
+            result = encryptWith(message, keyString, algorithm);
+            return result;
+        } finally {
+            recordOperation(event, start, algorithm, CryptoMetrics.Operation.ENCRYPT, result != null,
+                    result != null ? result.getEncryptedContent().length() / 4 * 3 : 0);
+        }
+    }
+
+    public String decrypt(String encryptedContent, String keyString, String ivString, EncryptionAlgorithm algorithm) {
+        CryptoOperationEvent event = new CryptoOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String plaintext = decryptWith(encryptedContent, keyString, ivString, algorithm);
+            success = true;
+            return plaintext;
+        } finally {
+            recordOperation(event, start, algorithm, CryptoMetrics.Operation.DECRYPT, success,
+                    encryptedContent != null ? encryptedContent.length() / 4 * 3 : 0);
+        }
+    }
+
+    private void recordOperation(CryptoOperationEvent event, long start, EncryptionAlgorithm algorithm,
+            CryptoMetrics.Operation operation, boolean success, long payloadBytes) {
+        if (algorithm == null) {
+            return;
+        }
+        cryptoMetrics.record(algorithm, operation, System.nanoTime() - start, success, payloadBytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm.name();
+            event.operation = operation.name();
+            event.payloadBytes = payloadBytes;
+            event.success = success;
+            event.requestId = RequestTracingFilter.current();
+            event.commit();
+        }
+    }
+
+    /**
+     * Encrypts a stream too large to hold in memory, one buffer at a time, with the same cipher
+     * and key rules as {@link #encrypt}. The output is the ciphertext a message with the same bytes
+     * would get, without the Base64, so a file decrypts the same way. The result holds the key and
+     * IV; its content is null.
+     */
+    public EncryptionResult encryptStream(InputStream in, OutputStream out, String keyString,
+            EncryptionAlgorithm algorithm) {
+        CryptoOperationEvent event = new CryptoOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long payloadBytes = 0;
+        boolean success = false;
+        try (SecureBuffer key = streamKey(keyString, algorithm)) {
+            byte[] iv = new byte[algorithm == EncryptionAlgorithm.AES ? 16 : algorithm == EncryptionAlgorithm.DES ? 8 : 12];
+            secureRandom().nextBytes(iv);
+            byte[] buffer = new byte[STREAM_BUFFER_BYTES];
+            int read;
+            if (algorithm == EncryptionAlgorithm.CHACHA20) {
+                ChaCha7539Engine engine = new ChaCha7539Engine();
+                engine.init(true, new ParametersWithIV(new KeyParameter(key.array(), 0, key.length()), iv));
+                byte[] output = new byte[buffer.length];
+                while ((read = in.read(buffer)) != -1) {
+                    engine.processBytes(buffer, 0, read, output, 0);
+                    out.write(output, 0, read);
+                    payloadBytes += read;
+                }
+            } else {
+                Cipher cipher = streamCipher(algorithm, key, iv);
+                while ((read = in.read(buffer)) != -1) {
+                    byte[] output = cipher.update(buffer, 0, read);
+                    if (output != null) {
+                        out.write(output);
+                    }
+                    payloadBytes += read;
+                }
+                out.write(cipher.doFinal());
+            }
+            success = true;
+            return new EncryptionResult(
+                    null,
+                    key.toBase64(),
+                    Base64.getEncoder().encodeToString(iv));
+        } catch (Exception e) {
+            throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
+        } finally {
+            recordOperation(event, start, algorithm, CryptoMetrics.Operation.ENCRYPT, success, payloadBytes);
+        }
+    }
+
+    // Same accepted lengths as the message path; an empty key is generated
+    private SecureBuffer streamKey(String keyString, EncryptionAlgorithm algorithm) {
+        String name = switch (algorithm) {
+            case AES -> "AES";
+            case CHACHA20 -> "ChaCha20";
+            case DES -> "DES";
+            case AES_GCM -> "AES-GCM";
+        };
+        Set<Integer> lengths = switch (algorithm) {
+            case AES, AES_GCM -> Set.of(16, 24, 32);
+            case CHACHA20 -> Set.of(32);
+            case DES -> Set.of(8);
+        };
+        if (keyString == null || keyString.isEmpty()) {
+            return randomKey(Collections.max(lengths));
+        }
+        SecureBuffer key;
+        try {
+            key = bufferPool.decodeBase64(keyString);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Invalid key format. The " + name + " key must be Base64 encoded. Error: " + e.getMessage());
+        }
+        if (!lengths.contains(key.length())) {
+            key.close();
+            throw new IllegalArgumentException("Invalid " + name + " key length. Provided key is "
+                    + key.length() + " bytes.");
+        }
+        return key;
+    }
+
+    private static Cipher streamCipher(EncryptionAlgorithm algorithm, SecureBuffer key, byte[] iv) throws Exception {
+        Cipher cipher;
+        switch (algorithm) {
+            case AES:
+                cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.array(), 0, key.length(), "AES"),
+                        new IvParameterSpec(iv));
+                return cipher;
+            case DES:
+                cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.array(), 0, key.length(), "DES"),
+                        new IvParameterSpec(iv));
+                return cipher;
+            case AES_GCM:
+                return aesGcmCipher(Cipher.ENCRYPT_MODE, key, iv);
+            default:
+                throw new IllegalArgumentException("Unsupported encryption algorithm: " + algorithm);
+        }
+    }
+
+    private EncryptionResult encryptWith(String message, String keyString, EncryptionAlgorithm algorithm) {
         try {
             switch (algorithm) {
                 case AES:
@@ -45,6 +278,8 @@ public class EncryptionService {
                     return encryptChaCha20(message, keyString);
                 case DES:
                     return encryptDES(message, keyString);
+                case AES_GCM:
+                    return encryptAESGCM(message, keyString);
                 default:
                     throw new IllegalArgumentException("Unsupported encryption algorithm: " + algorithm);
             }
@@ -53,306 +288,548 @@ public class EncryptionService {
         }
     }
 
-    public String decrypt(String encryptedContent, String keyString, String ivString, EncryptionAlgorithm algorithm) {
+    private String decryptWith(String encryptedContent, String keyString, String ivString,
+            EncryptionAlgorithm algorithm) {
+        try (SecureBuffer plaintext = decryptBytes(encryptedContent, keyString, ivString, algorithm)) {
+            return plaintext.decode(textCharset(algorithm));
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Ciphertext and plaintext only pass through pooled buffers, which are zeroed when closed
+    private SecureBuffer decryptBytes(String encryptedContent, String keyString, String ivString,
+            EncryptionAlgorithm algorithm) throws Exception {
+        SecureBuffer encrypted;
         try {
+            encrypted = bufferPool.decodeBase64(encryptedContent);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(algorithm == EncryptionAlgorithm.CHACHA20
+                    ? "Invalid format for key, nonce, or encrypted content. All must be Base64 encoded."
+                    : "Invalid format for key, IV, or encrypted content. All must be Base64 encoded.");
+        }
+        try (encrypted) {
             switch (algorithm) {
                 case AES:
-                    return decryptAES(encryptedContent, keyString, ivString);
+                    return decryptAES(encrypted, keyString, ivString);
                 case CHACHA20:
-                    return decryptChaCha20(encryptedContent, keyString, ivString);
+                    return decryptChaCha20(encrypted, keyString, ivString);
                 case DES:
-                    return decryptDES(encryptedContent, keyString, ivString);
+                    return decryptDES(encrypted, keyString, ivString);
+                case AES_GCM:
+                    return decryptAESGCM(encrypted, keyString, ivString);
                 default:
                     throw new IllegalArgumentException("Unsupported encryption algorithm: " + algorithm);
             }
+        }
+    }
+
+    private String encryptPooled(Cipher cipher, SecureBuffer plaintext) throws Exception {
+        try (SecureBuffer encrypted = bufferPool.acquire(cipher.getOutputSize(plaintext.length()))) {
+            encrypted.setLength(cipher.doFinal(plaintext.array(), 0, plaintext.length(), encrypted.array(), 0));
+            return encrypted.toBase64();
+        }
+    }
+
+    private SecureBuffer decryptPooled(Cipher cipher, SecureBuffer encrypted) throws Exception {
+        SecureBuffer plaintext = bufferPool.acquire(cipher.getOutputSize(encrypted.length()));
+        try {
+            plaintext.setLength(cipher.doFinal(encrypted.array(), 0, encrypted.length(), plaintext.array(), 0));
+            return plaintext;
         } catch (Exception e) {
-            throw new RuntimeException("Decryption failed: " + e.getMessage(), e);
+            plaintext.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decrypts a stored message with its server-held key and encrypts its plaintext with AES-GCM
+     * under a fresh nonce. AES-GCM text is UTF-8, so AES-CBC and DES plaintext, which was encoded
+     * with the platform charset, is transcoded first. The returned key is the one the user already
+     * has: 32-byte ChaCha20 and AES keys are used as they are, and an 8-byte DES key is stretched by
+     * {@link #legacyDesKeyToAes(SecureBuffer)}, which AES-GCM decryption applies to such keys as well.
+     */
+    public EncryptionResult reencrypt(String encryptedContent, String keyString, String ivString,
+            EncryptionAlgorithm algorithm) {
+        try (SecureBuffer plaintext = decryptBytes(encryptedContent, keyString, ivString, algorithm)) {
+            Charset charset = textCharset(algorithm);
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                return encryptAESGCM(plaintext, keyString);
+            }
+            try (SecureBuffer utf8 = bufferPool.encode(plaintext.decode(charset), StandardCharsets.UTF_8)) {
+                return encryptAESGCM(utf8, keyString);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Re-encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    private EncryptionResult encryptAESGCM(SecureBuffer plaintext, String keyString) throws Exception {
+        byte[] iv = new byte[12];
+        secureRandom().nextBytes(iv);
+        Cipher cipher;
+        try (SecureBuffer key = bufferPool.decodeBase64(keyString)) {
+            cipher = aesGcmCipher(Cipher.ENCRYPT_MODE, key, iv);
         }
+        return new EncryptionResult(
+                encryptPooled(cipher, plaintext),
+                keyString,
+                Base64.getEncoder().encodeToString(iv));
+    }
+
+    // AES-CBC and DES have always encoded text with the platform charset
+    private static Charset textCharset(EncryptionAlgorithm algorithm) {
+        return algorithm == EncryptionAlgorithm.AES || algorithm == EncryptionAlgorithm.DES
+                ? Charset.defaultCharset()
+                : StandardCharsets.UTF_8;
     }
 
     private EncryptionResult encryptAES(String message, String keyString) throws Exception {
         SecretKey secretKey;
         if (keyString == null || keyString.isEmpty()) {
             KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
-            keyGenerator.init(256);
+            keyGenerator.init(256, secureRandom());
             secretKey = keyGenerator.generateKey();
         } else {
-            byte[] keyBytes;
+            SecureBuffer key;
             try {
-                keyBytes = Base64.getDecoder().decode(keyString);
+                key = bufferPool.decodeBase64(keyString);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException(
                         "Invalid key format. The AES key must be Base64 encoded. Error: " + e.getMessage());
             }
-
-            if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
-                throw new IllegalArgumentException(
-                        "Invalid AES key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits). Provided key is "
-                                + keyBytes.length + " bytes.");
+            try (key) {
+                if (key.length() != 16 && key.length() != 24 && key.length() != 32) {
+                    throw new IllegalArgumentException(
+                            "Invalid AES key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits). Provided key is "
+                                    + key.length() + " bytes.");
+                }
+                secretKey = new SecretKeySpec(key.array(), 0, key.length(), "AES");
             }
-
-            secretKey = new SecretKeySpec(keyBytes, "AES");
         }
-        SecureRandom random = new SecureRandom();
         byte[] iv = new byte[16];
-        random.nextBytes(iv);
+        secureRandom().nextBytes(iv);
         IvParameterSpec ivSpec = new IvParameterSpec(iv);
 
         Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
         cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-        byte[] encryptedBytes = cipher.doFinal(message.getBytes());
+        String encryptedContent;
+        try (SecureBuffer plaintext = bufferPool.encode(message, Charset.defaultCharset())) {
+            encryptedContent = encryptPooled(cipher, plaintext);
+        }
 
         return new EncryptionResult(
-                Base64.getEncoder().encodeToString(encryptedBytes),
-                Base64.getEncoder().encodeToString(secretKey.getEncoded()),
+                encryptedContent,
+                encodeKey(secretKey),
                 Base64.getEncoder().encodeToString(iv));
     }
 
-    private String decryptAES(String encryptedContent, String keyString, String ivString) throws Exception {
-        byte[] keyBytes;
+    private SecureBuffer decryptAES(SecureBuffer encrypted, String keyString, String ivString) throws Exception {
+        SecureBuffer key;
         byte[] ivBytes;
-        byte[] encryptedBytes;
 
         try {
-            keyBytes = Base64.getDecoder().decode(keyString);
             ivBytes = Base64.getDecoder().decode(ivString);
-            encryptedBytes = Base64.getDecoder().decode(encryptedContent);
+            key = bufferPool.decodeBase64(keyString);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(
                     "Invalid format for key, IV, or encrypted content. All must be Base64 encoded.");
         }
-        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
-            throw new IllegalArgumentException(
-                    "Invalid AES key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits). Provided key is "
-                            + keyBytes.length + " bytes.");
-        }
-
-        if (ivBytes.length != 16) {
-            throw new IllegalArgumentException("Invalid IV length. AES IV must be 16 bytes (128 bits).");
-        }
+        try (key) {
+            if (key.length() != 16 && key.length() != 24 && key.length() != 32) {
+                throw new IllegalArgumentException(
+                        "Invalid AES key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits). Provided key is "
+                                + key.length() + " bytes.");
+            }
 
-        SecretKey secretKey = new SecretKeySpec(keyBytes, "AES");
-        IvParameterSpec ivSpec = new IvParameterSpec(ivBytes);
+            if (ivBytes.length != 16) {
+                throw new IllegalArgumentException("Invalid IV length. AES IV must be 16 bytes (128 bits).");
+            }
 
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-        byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+            SecretKey secretKey = new SecretKeySpec(key.array(), 0, key.length(), "AES");
+            IvParameterSpec ivSpec = new IvParameterSpec(ivBytes);
 
-        return new String(decryptedBytes);
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
+            return decryptPooled(cipher, encrypted);
+        }
     }
 
     private EncryptionResult encryptChaCha20(String message, String keyString) throws Exception {
-        byte[] keyBytes;
+        SecureBuffer key;
         if (keyString == null || keyString.isEmpty()) {
-            SecureRandom random = new SecureRandom();
-            keyBytes = new byte[32];
-            random.nextBytes(keyBytes);
+            key = randomKey(32);
         } else {
             try {
-                keyBytes = Base64.getDecoder().decode(keyString);
+                key = bufferPool.decodeBase64(keyString);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException(
                         "Invalid key format. The ChaCha20 key must be Base64 encoded. Error: " + e.getMessage());
             }
+        }
 
-            if (keyBytes.length != 32) {
+        try (key) {
+            if (key.length() != 32) {
                 throw new IllegalArgumentException(
                         "Invalid ChaCha20 key length. ChaCha20 keys must be exactly 32 bytes (256 bits). Provided key is "
-                                + keyBytes.length + " bytes.");
+                                + key.length() + " bytes.");
             }
-        }
-
-        SecureRandom random = new SecureRandom();
-        byte[] nonce = new byte[12];
-        random.nextBytes(nonce);
-        ChaCha7539Engine engine = new ChaCha7539Engine();
-        KeyParameter keyParam = new KeyParameter(keyBytes);
-        ParametersWithIV params = new ParametersWithIV(keyParam, nonce);
-
-        engine.init(true, params);
 
-        byte[] messageBytes = message.getBytes("UTF-8");
-        byte[] encryptedBytes = new byte[messageBytes.length];
-        engine.processBytes(messageBytes, 0, messageBytes.length, encryptedBytes, 0);
-
-        return new EncryptionResult(
-                Base64.getEncoder().encodeToString(encryptedBytes),
-                Base64.getEncoder().encodeToString(keyBytes),
-                Base64.getEncoder().encodeToString(nonce));
+            byte[] nonce = new byte[12];
+            secureRandom().nextBytes(nonce);
+            ChaCha7539Engine engine = new ChaCha7539Engine();
+            KeyParameter keyParam = new KeyParameter(key.array(), 0, key.length());
+            ParametersWithIV params = new ParametersWithIV(keyParam, nonce);
+
+            engine.init(true, params);
+
+            try (SecureBuffer plaintext = bufferPool.encode(message, StandardCharsets.UTF_8);
+                 SecureBuffer encrypted = bufferPool.acquire(plaintext.length())) {
+                engine.processBytes(plaintext.array(), 0, plaintext.length(), encrypted.array(), 0);
+                return new EncryptionResult(
+                        encrypted.toBase64(),
+                        key.toBase64(),
+                        Base64.getEncoder().encodeToString(nonce));
+            }
+        }
     }
 
-    private String decryptChaCha20(String encryptedContent, String keyString, String nonceString) throws Exception {
-        byte[] keyBytes;
+    private SecureBuffer decryptChaCha20(SecureBuffer encrypted, String keyString, String nonceString)
+            throws Exception {
+        SecureBuffer key;
         byte[] nonceBytes;
-        byte[] encryptedBytes;
 
         try {
-            keyBytes = Base64.getDecoder().decode(keyString);
             nonceBytes = Base64.getDecoder().decode(nonceString);
-            encryptedBytes = Base64.getDecoder().decode(encryptedContent);
+            key = bufferPool.decodeBase64(keyString);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(
                     "Invalid format for key, nonce, or encrypted content. All must be Base64 encoded.");
         }
-        if (keyBytes.length != 32) {
-            throw new IllegalArgumentException(
-                    "Invalid ChaCha20 key length. ChaCha20 keys must be exactly 32 bytes (256 bits). Provided key is "
-                            + keyBytes.length + " bytes.");
-        }
-
-        if (nonceBytes.length != 12) {
-            throw new IllegalArgumentException("Invalid nonce length. ChaCha20 nonce must be 12 bytes (96 bits).");
-        }
-
         ChaCha7539Engine engine = new ChaCha7539Engine();
-        KeyParameter keyParam = new KeyParameter(keyBytes);
-        ParametersWithIV params = new ParametersWithIV(keyParam, nonceBytes);
+        try (key) {
+            if (key.length() != 32) {
+                throw new IllegalArgumentException(
+                        "Invalid ChaCha20 key length. ChaCha20 keys must be exactly 32 bytes (256 bits). Provided key is "
+                                + key.length() + " bytes.");
+            }
 
-        engine.init(false, params);
+            if (nonceBytes.length != 12) {
+                throw new IllegalArgumentException("Invalid nonce length. ChaCha20 nonce must be 12 bytes (96 bits).");
+            }
+
+            KeyParameter keyParam = new KeyParameter(key.array(), 0, key.length());
+            ParametersWithIV params = new ParametersWithIV(keyParam, nonceBytes);
 
-        byte[] decryptedBytes = new byte[encryptedBytes.length];
-        engine.processBytes(encryptedBytes, 0, encryptedBytes.length, decryptedBytes, 0);
+            engine.init(false, params);
+        }
 
-        return new String(decryptedBytes, "UTF-8");
+        SecureBuffer plaintext = bufferPool.acquire(encrypted.length());
+        engine.processBytes(encrypted.array(), 0, encrypted.length(), plaintext.array(), 0);
+        return plaintext;
     }
 
     private EncryptionResult encryptDES(String message, String keyString) throws Exception {
         SecretKey secretKey;
         if (keyString == null || keyString.isEmpty()) {
             KeyGenerator keyGenerator = KeyGenerator.getInstance("DES");
+            keyGenerator.init(secureRandom());
             secretKey = keyGenerator.generateKey();
         } else {
-            byte[] keyBytes;
+            SecureBuffer key;
             try {
-                keyBytes = Base64.getDecoder().decode(keyString);
+                key = bufferPool.decodeBase64(keyString);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException(
                         "Invalid key format. The DES key must be Base64 encoded. Error: " + e.getMessage());
             }
-
-            if (keyBytes.length != 8) {
-                throw new IllegalArgumentException(
-                        "Invalid DES key length. DES keys must be exactly 8 bytes (64 bits). Provided key is "
-                                + keyBytes.length + " bytes.");
+            try (key) {
+                if (key.length() != 8) {
+                    throw new IllegalArgumentException(
+                            "Invalid DES key length. DES keys must be exactly 8 bytes (64 bits). Provided key is "
+                                    + key.length() + " bytes.");
+                }
+                secretKey = new SecretKeySpec(key.array(), 0, key.length(), "DES");
             }
-
-            secretKey = new SecretKeySpec(keyBytes, "DES");
         }
 
-        SecureRandom random = new SecureRandom();
         byte[] iv = new byte[8];
-        random.nextBytes(iv);
+        secureRandom().nextBytes(iv);
         IvParameterSpec ivSpec = new IvParameterSpec(iv);
 
         Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
         cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-        byte[] encryptedBytes = cipher.doFinal(message.getBytes());
+        String encryptedContent;
+        try (SecureBuffer plaintext = bufferPool.encode(message, Charset.defaultCharset())) {
+            encryptedContent = encryptPooled(cipher, plaintext);
+        }
 
         return new EncryptionResult(
-                Base64.getEncoder().encodeToString(encryptedBytes),
-                Base64.getEncoder().encodeToString(secretKey.getEncoded()),
+                encryptedContent,
+                encodeKey(secretKey),
                 Base64.getEncoder().encodeToString(iv));
     }
 
-    private String decryptDES(String encryptedContent, String keyString, String ivString) throws Exception {
-        byte[] keyBytes;
+    private SecureBuffer decryptDES(SecureBuffer encrypted, String keyString, String ivString) throws Exception {
+        SecureBuffer key;
         byte[] ivBytes;
-        byte[] encryptedBytes;
 
         try {
-            keyBytes = Base64.getDecoder().decode(keyString);
             ivBytes = Base64.getDecoder().decode(ivString);
-            encryptedBytes = Base64.getDecoder().decode(encryptedContent);
+            key = bufferPool.decodeBase64(keyString);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(
                     "Invalid format for key, IV, or encrypted content. All must be Base64 encoded.");
         }
+        try (key) {
+            if (key.length() != 8) {
+                throw new IllegalArgumentException(
+                        "Invalid DES key length. DES keys must be exactly 8 bytes (64 bits). Provided key is "
+                                + key.length() + " bytes.");
+            }
+
+            if (ivBytes.length != 8) {
+                throw new IllegalArgumentException("Invalid IV length. DES IV must be 8 bytes (64 bits).");
+            }
+
+            SecretKey secretKey = new SecretKeySpec(key.array(), 0, key.length(), "DES");
+            IvParameterSpec ivSpec = new IvParameterSpec(ivBytes);
+
+            Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
+            return decryptPooled(cipher, encrypted);
+        }
+    }
 
-        if (keyBytes.length != 8) {
+    private EncryptionResult encryptAESGCM(String message, String keyString) throws Exception {
+        SecureBuffer key;
+        if (keyString == null || keyString.isEmpty()) {
+            key = randomKey(32);
+        } else {
+            try {
+                key = bufferPool.decodeBase64(keyString);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Invalid key format. The AES-GCM key must be Base64 encoded. Error: " + e.getMessage());
+            }
+        }
+
+        try (key) {
+            if (key.length() != 16 && key.length() != 24 && key.length() != 32) {
+                throw new IllegalArgumentException(
+                        "Invalid AES-GCM key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits). Provided key is "
+                                + key.length() + " bytes.");
+            }
+
+            byte[] iv = new byte[12];
+            secureRandom().nextBytes(iv);
+            Cipher cipher = aesGcmCipher(Cipher.ENCRYPT_MODE, key, iv);
+            String encryptedContent;
+            try (SecureBuffer plaintext = bufferPool.encode(message, StandardCharsets.UTF_8)) {
+                encryptedContent = encryptPooled(cipher, plaintext);
+            }
+
+            return new EncryptionResult(
+                    encryptedContent,
+                    key.toBase64(),
+                    Base64.getEncoder().encodeToString(iv));
+        }
+    }
+
+    private SecureBuffer decryptAESGCM(SecureBuffer encrypted, String keyString, String ivString) throws Exception {
+        SecureBuffer key;
+        byte[] ivBytes;
+
+        try {
+            ivBytes = Base64.getDecoder().decode(ivString);
+            key = bufferPool.decodeBase64(keyString);
+        } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(
-                    "Invalid DES key length. DES keys must be exactly 8 bytes (64 bits). Provided key is "
-                            + keyBytes.length + " bytes.");
+                    "Invalid format for key, IV, or encrypted content. All must be Base64 encoded.");
+        }
+        try (key) {
+            if (key.length() != 8 && key.length() != 16 && key.length() != 24 && key.length() != 32) {
+                throw new IllegalArgumentException(
+                        "Invalid AES-GCM key length. AES keys must be 16, 24, or 32 bytes (128, 192, or 256 bits), or the 8-byte key of a migrated DES message. Provided key is "
+                                + key.length() + " bytes.");
+            }
+
+            if (ivBytes.length != 12) {
+                throw new IllegalArgumentException("Invalid IV length. AES-GCM IV must be 12 bytes (96 bits).");
+            }
+
+            return decryptPooled(aesGcmCipher(Cipher.DECRYPT_MODE, key, ivBytes), encrypted);
         }
+    }
 
-        if (ivBytes.length != 8) {
-            throw new IllegalArgumentException("Invalid IV length. DES IV must be 8 bytes (64 bits).");
+    // An 8-byte key is that of a message migrated from DES
+    private static Cipher aesGcmCipher(int mode, SecureBuffer key, byte[] iv) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        if (key.length() != 8) {
+            cipher.init(mode, new SecretKeySpec(key.array(), 0, key.length(), "AES"), new GCMParameterSpec(128, iv));
+            return cipher;
+        }
+        byte[] aesKey = legacyDesKeyToAes(key);
+        try {
+            cipher.init(mode, new SecretKeySpec(aesKey, "AES"), new GCMParameterSpec(128, iv));
+            return cipher;
+        } finally {
+            Arrays.fill(aesKey, (byte) 0);
         }
+    }
 
-        SecretKey secretKey = new SecretKeySpec(keyBytes, "DES");
-        IvParameterSpec ivSpec = new IvParameterSpec(ivBytes);
+    /**
+     * AES-256 key for a message migrated from DES, so that the user's DES key keeps working.
+     * The message gains integrity protection, but its secrecy is still bounded by the 56-bit
+     * DES key until the user encrypts it again with a real AES key.
+     */
+    private static byte[] legacyDesKeyToAes(SecureBuffer desKey) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update("secure-vault:des-to-aes-gcm".getBytes(StandardCharsets.US_ASCII));
+        digest.update(desKey.array(), 0, desKey.length());
+        return digest.digest();
+    }
 
-        Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-        byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+    // A new key in a pooled buffer like a decoded one; the array past the key is zeroed with it
+    private SecureBuffer randomKey(int length) {
+        SecureBuffer key = bufferPool.acquire(length);
+        secureRandom().nextBytes(key.array());
+        return key;
+    }
 
-        return new String(decryptedBytes);
+    // getEncoded() returns a copy of the key, which is zeroed once encoded
+    private static String encodeKey(SecretKey secretKey) {
+        byte[] encoded = secretKey.getEncoded();
+        try {
+            return Base64.getEncoder().encodeToString(encoded);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
     }
 
-    @Transactional
+    // Keys are derived and messages encrypted before the transaction, so no connection is held meanwhile
     public EncryptedMessageResponse createEncryptedMessage(EncryptionRequest request, User user) {
-        EncryptionResult result = encrypt(request.getMessage(), request.getKey(), request.getAlgorithm());
-        EncryptedMessage message = new EncryptedMessage(
-                null,
-                request.getTitle(),
-                result.getEncryptedContent(),
-                request.getAlgorithm(),
-                result.getKey(),
-                result.getInitializationVector(),
-                user,
-                null);
-        message = messageRepository.save(message);
+        String key = request.getKey();
+        PassphraseKeyDeriver.DerivedKey derived = null;
+        if (request.isPassphrase()) {
+            derived = passphraseKeyDeriver.deriveNew(user.getId(), request.getKey(), request.getAlgorithm());
+            key = derived.key();
+        }
+        EncryptionResult result = encrypt(request.getMessage(), key, request.getAlgorithm());
+        PassphraseKeyDeriver.DerivedKey kdf = derived;
+        EncryptedMessage message = writeTransaction.execute(status -> {
+            shardRouter.bind(user.getId());
+            // Appended before the insert; if the transaction rolls back the record is left for compaction
+            SegmentPointer pointer = segmentStore.isEnabled() ? segmentStore.append(result.getEncryptedContent()) : null;
+            EncryptedMessage saved = messageRepository.save(new EncryptedMessage(
+                    null,
+                    request.getTitle(),
+                    pointer == null ? result.getEncryptedContent() : null,
+                    request.getAlgorithm(),
+                    // A key derived from a passphrase is not kept
+                    kdf == null ? result.getKey() : null,
+                    result.getInitializationVector(),
+                    kdf != null ? kdf.salt() : null,
+                    kdf != null ? kdf.params() : null,
+                    user,
+                    null,
+                    null,
+                    null,
+                    pointer != null ? pointer.getSegmentId() : null,
+                    pointer != null ? pointer.getOffset() : null,
+                    pointer != null ? pointer.getLength() : null,
+                    null));
+            if (blindIndexService.isEnabled()) {
+                blindIndexService.index(saved.getId(), user.getId(), request.getMessage());
+            }
+            eventPublisher.publishEvent(new MessageCreatedEvent(user.getId(), saved.getId()));
+            return saved;
+        });
         return new EncryptedMessageResponse(
                 message.getId(),
                 message.getTitle(),
-                message.getEncryptedContent(),
+                result.getEncryptedContent(),
                 message.getAlgorithm(),
                 message.getCreatedAt());
     }
 
-    @Transactional(readOnly = true)
     public String decryptUserMessage(DecryptionRequest request, User user) {
-        EncryptedMessage message = messageRepository.findById(request.getMessageId())
-                .orElseThrow(() -> new RuntimeException("Message not found"));
-        if (!message.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Access denied");
-        }
-        return decrypt(
-                message.getEncryptedContent(),
-                request.getKey(),
-                message.getInitializationVector(),
-                message.getAlgorithm());
+        StoredCiphertext stored = readOnlyTransaction.execute(status -> {
+            shardRouter.bind(user.getId());
+            EncryptedMessage message = messageRepository.findById(request.getMessageId())
+                    .orElseThrow(() -> new RuntimeException("Message not found"));
+            if (!message.getUser().getId().equals(user.getId())) {
+                throw new RuntimeException("Access denied");
+            }
+            if (message.getFileSize() != null) {
+                throw new RuntimeException("This message is a file; download it from /api/files/" + message.getId());
+            }
+            return new StoredCiphertext(coldMessageStore.content(message), message.getInitializationVector(),
+                    message.getAlgorithm(), message.getKdfSalt(), message.getKdfParams());
+        });
+        String key = stored.kdfParams() == null ? request.getKey()
+                : passphraseKeyDeriver.derive(user.getId(), request.getKey(), stored.kdfSalt(), stored.kdfParams(),
+                        stored.algorithm());
+        return decrypt(stored.encryptedContent(), key, stored.initializationVector(), stored.algorithm());
     }
 
-    @Transactional(readOnly = true)
     public Page<EncryptedMessageResponse> getUserMessages(User user, Pageable pageable, String search) {
+        boolean hasSearch = search != null && !search.trim().isEmpty();
+        if (!hasSearch && pageable.getPageNumber() == 0) {
+            return messageCache.getFirstPage(user.getId(), pageable.getPageSize(),
+                    () -> readOnlyTransaction.execute(status -> loadUserMessages(user, pageable, null)));
+        }
+        return readOnlyTransaction.execute(status -> loadUserMessages(user, pageable, hasSearch ? search.trim() : null));
+    }
+
+    private Page<EncryptedMessageResponse> loadUserMessages(User user, Pageable pageable, String search) {
+        shardRouter.bind(user.getId());
         Page<EncryptedMessage> messages;
-        if (search != null && !search.trim().isEmpty()) {
-            messages = messageRepository.findByUserAndTitleContainingIgnoreCaseOrderByCreatedAtDesc(user, search.trim(),
+        if (search != null) {
+            messages = messageRepository.findByUserAndTitleContainingIgnoreCaseOrderByCreatedAtDesc(user, search,
                     pageable);
         } else {
             messages = messageRepository.findByUserOrderByCreatedAtDesc(user, pageable);
         }
+        // Cold messages on the page are fetched together
+        Map<Long, String> coldContents = coldMessageStore.contents(messages.stream()
+                .filter(message -> message.getArchivedAt() != null)
+                .map(EncryptedMessage::getId)
+                .toList());
         return messages.map(message -> new EncryptedMessageResponse(
                 message.getId(),
                 message.getTitle(),
-                message.getEncryptedContent(),
+                message.getArchivedAt() != null ? coldContents.get(message.getId())
+                        : message.getFileSize() == null ? segmentStore.content(message) : null,
                 message.getAlgorithm(),
-                message.getCreatedAt()));
+                message.getCreatedAt(),
+                message.getFileSize()));
     }
 
     @Transactional
     public void deleteUserMessage(Long id, User user) {
+        shardRouter.bind(user.getId());
         EncryptedMessage message = messageRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
         if (!message.getUser().getId().equals(user.getId())) {
             throw new RuntimeException("Access denied");
         }
+        if (blindIndexService.isEnabled()) {
+            blindIndexService.remove(id);
+        }
+        if (message.getArchivedAt() != null) {
+            coldMessageStore.remove(id);
+        }
         messageRepository.delete(message);
+        eventPublisher.publishEvent(new MessageDeletedEvent(user.getId(), id));
     }
 
-    @Transactional(readOnly = true)
     public Map<String, Object> getUserStats(User user) {
-        Long messageCount = messageRepository.countByUser(user);
+        Long messageCount = messageCache.getMessageCount(user.getId(),
+                () -> readOnlyTransaction.execute(status -> {
+                    shardRouter.bind(user.getId());
+                    return messageRepository.countByUser(user);
+                }));
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalMessages", messageCount);
         stats.put("user", new UserResponse(
@@ -363,6 +840,10 @@ public class EncryptionService {
         return stats;
     }
 
+    private record StoredCiphertext(String encryptedContent, String initializationVector,
+            EncryptionAlgorithm algorithm, String kdfSalt, String kdfParams) {
+    }
+
     public static class EncryptionResult {
         private final String encryptedContent;
         private final String key;
@@ -0,0 +1,135 @@
+package com.cybersecurity.encryption.service;
+
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import com.cybersecurity.encryption.tiering.ColdMessageStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes all messages of a user as NDJSON, one object per line, straight from a forward-only
+ * JDBC cursor. Rows are never collected, so memory does not depend on the size of the vault.
+ */
+@Service
+public class MessageExportService {
+
+    // Files are not exported; their ciphertext is in the file store, not in the row
+    private static final String EXPORT_SQL = "SELECT m.id, m.title, " + ColdMessageStore.CONTENT_COLUMNS
+            + ", m.algorithm, m.initialization_vector, m.kdf_salt, m.kdf_params, m.created_at FROM encrypted_messages m"
+            + ColdMessageStore.JOIN + " WHERE m.user_id = ? AND m.file_size IS NULL ORDER BY m.created_at, m.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ColdMessageStore coldMessageStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${app.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${app.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${app.export.timeout-ms:3600000}")
+    private long timeoutMs;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Reserves one of the export slots; each export holds a pooled connection for its whole
+     * duration. Every successful call must be paired with {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /** Streams the user's messages, oldest first, and returns the number written. */
+    @Transactional(readOnly = true)
+    public long exportUserMessages(Long userId, OutputStream out) throws IOException {
+        shardRouter.bind(userId);
+        long[] count = new long[1];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Lines are separated by the newline below, not by Jackson's default space
+            generator.setRootValueSeparator(null);
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(cursorFetchSize(connection));
+                statement.setLong(1, userId);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                writeMessage(generator, rs);
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    // Connector/J buffers the whole result set for any positive fetch size unless useCursorFetch
+    // is set; Integer.MIN_VALUE switches it to row-by-row streaming instead
+    private int cursorFetchSize(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().contains("MySQL") ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    private void writeMessage(JsonGenerator generator, ResultSet rs) throws SQLException {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeStringField("title", rs.getString("title"));
+            generator.writeStringField("encryptedContent", coldMessageStore.content(rs));
+            generator.writeStringField("algorithm", rs.getString("algorithm"));
+            generator.writeStringField("initializationVector", rs.getString("initialization_vector"));
+            // Only for messages keyed by a passphrase
+            String kdfParams = rs.getString("kdf_params");
+            if (kdfParams != null) {
+                generator.writeStringField("kdfSalt", rs.getString("kdf_salt"));
+                generator.writeStringField("kdfParams", kdfParams);
+            }
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            generator.writeStringField("createdAt", createdAt == null ? null : createdAt.toLocalDateTime().toString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            // The client went away; abort the query instead of reading the remaining rows
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.cybersecurity.encryption.service;
+
+import com.cybersecurity.encryption.dto.ImportRecord;
+import com.cybersecurity.encryption.dto.ImportResult;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.JobCheckpoint;
+import com.cybersecurity.encryption.event.MessagesImportedEvent;
+import com.cybersecurity.encryption.kdf.PassphraseKeyDeriver;
+import com.cybersecurity.encryption.repository.JobCheckpointRepository;
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Imports already-encrypted messages from NDJSON in the export format. Valid records are
+ * inserted with JDBC batches; every {@code app.import.commit-size} records are committed
+ * together with a {@link JobCheckpoint} holding the last consumed line, so sending the same
+ * input again with the same import ID continues after that line instead of starting over.
+ */
+@Service
+public class MessageImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageImportService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO encrypted_messages (title, encrypted_content, algorithm,"
+            + " initialization_vector, kdf_salt, kdf_params, user_id, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final long PROGRESS_LOG_INTERVAL = 100_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PassphraseKeyDeriver passphraseKeyDeriver;
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.import.commit-size:10000}")
+    private int commitSize;
+
+    @Value("${app.import.max-rejected:1000}")
+    private long maxRejected;
+
+    @Value("${app.import.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private ObjectReader recordReader;
+    private Semaphore permits;
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        recordReader = objectMapper.readerFor(ImportRecord.class);
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public static boolean isValidImportId(String importId) {
+        return importId != null && IMPORT_ID.matcher(importId).matches();
+    }
+
+    public Optional<JobCheckpoint> getCheckpoint(Long userId, String importId) {
+        return shardRouter.read(userId, () -> checkpointRepository.findById(jobId(userId, importId)));
+    }
+
+    /**
+     * Reads the input to the end and imports every valid record for the user. Lines up to the
+     * checkpoint of an earlier run with the same import ID are skipped. Invalid records are
+     * counted and skipped; more than {@code app.import.max-rejected} of them abort the import
+     * after committing the records before them.
+     */
+    public ImportResult importMessages(Long userId, String importId, InputStream in) throws IOException {
+        if (!isValidImportId(importId)) {
+            throw new RuntimeException("Import ID must be 1-64 letters, digits, '.', '_' or '-'");
+        }
+        String jobId = jobId(userId, importId);
+        if (!runningJobs.add(jobId)) {
+            throw new RuntimeException("Import " + importId + " is already running");
+        }
+        try {
+            return run(userId, importId, jobId, in);
+        } finally {
+            runningJobs.remove(jobId);
+        }
+    }
+
+    private ImportResult run(Long userId, String importId, String jobId, InputStream in) throws IOException {
+        // Kept on the user's shard, with the messages it counts
+        JobCheckpoint checkpoint = shardRouter.read(userId, () -> checkpointRepository.findById(jobId))
+                .orElseGet(() -> new JobCheckpoint(jobId, 0, 0, 0, false, null));
+        long resumeAfter = checkpoint.getLastPosition();
+        if (resumeAfter > 0) {
+            logger.info("Resuming import {} for user {} after line {}", importId, userId, resumeAfter);
+        }
+
+        ImportResult result = new ImportResult();
+        result.setImportId(importId);
+        long started = System.nanoTime();
+        long nextProgressLog = PROGRESS_LOG_INTERVAL;
+        List<Object[]> pending = new ArrayList<>(commitSize);
+        long pendingRejected = 0;
+        long line = 0;
+        LocalDateTime now = LocalDateTime.now();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (line <= resumeAfter) {
+                result.setSkipped(result.getSkipped() + 1);
+                continue;
+            }
+            if (text.isBlank()) {
+                continue;
+            }
+            String error = parse(text, userId, now, pending);
+            if (error != null) {
+                pendingRejected++;
+                result.setRejected(result.getRejected() + 1);
+                if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                    result.getErrors().add("line " + line + ": " + error);
+                }
+            }
+            if (pending.size() >= commitSize || result.getRejected() > maxRejected) {
+                checkpoint = commit(checkpoint, userId, pending, pendingRejected, line, false);
+                result.setImported(result.getImported() + pending.size());
+                pending.clear();
+                pendingRejected = 0;
+                if (result.getRejected() > maxRejected) {
+                    throw new RuntimeException("Import " + importId + " stopped at line " + line + " after "
+                            + result.getRejected() + " invalid records; first errors: " + result.getErrors());
+                }
+                if (result.getImported() >= nextProgressLog) {
+                    logger.info("Import {}: {} records imported, {} rows/s", importId, result.getImported(),
+                            rate(result.getImported(), started));
+                    nextProgressLog += PROGRESS_LOG_INTERVAL;
+                }
+            }
+        }
+        checkpoint = commit(checkpoint, userId, pending, pendingRejected, Math.max(line, resumeAfter), true);
+        result.setImported(result.getImported() + pending.size());
+
+        result.setLinesRead(line);
+        result.setTotalImported(checkpoint.getProcessed());
+        result.setCompleted(true);
+        result.setElapsedMs((System.nanoTime() - started) / 1_000_000);
+        result.setRowsPerSecond(rate(result.getImported(), started));
+        logger.info("Import {} for user {} finished: {} imported, {} skipped, {} rejected, {} rows/s", importId,
+                userId, result.getImported(), result.getSkipped(), result.getRejected(), result.getRowsPerSecond());
+        return result;
+    }
+
+    // Returns null and adds the insert parameters, or returns why the line was rejected
+    private String parse(String text, Long userId, LocalDateTime now, List<Object[]> pending) {
+        ImportRecord record;
+        try {
+            record = recordReader.readValue(text);
+        } catch (JsonProcessingException e) {
+            return "invalid JSON: " + e.getOriginalMessage();
+        }
+        Set<ConstraintViolation<ImportRecord>> violations = validator.validate(record);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        byte[] iv;
+        try {
+            Base64.getDecoder().decode(record.getEncryptedContent());
+            iv = Base64.getDecoder().decode(record.getInitializationVector());
+        } catch (IllegalArgumentException e) {
+            return "content and initialization vector must be Base64";
+        }
+        if (iv.length != ivLength(record.getAlgorithm())) {
+            return record.getAlgorithm() + " needs a " + ivLength(record.getAlgorithm()) + "-byte initialization vector";
+        }
+        if (record.getKdfSalt() != null || record.getKdfParams() != null) {
+            if (record.getKdfSalt() == null || record.getKdfParams() == null) {
+                return "kdfSalt and kdfParams must be given together";
+            }
+            try {
+                passphraseKeyDeriver.validate(record.getKdfSalt(), record.getKdfParams());
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+        LocalDateTime createdAt = record.getCreatedAt() != null ? record.getCreatedAt() : now;
+        pending.add(new Object[] {record.getTitle(), record.getEncryptedContent(), record.getAlgorithm().name(),
+                record.getInitializationVector(), record.getKdfSalt(), record.getKdfParams(), userId,
+                Timestamp.valueOf(createdAt)});
+        return null;
+    }
+
+    private JobCheckpoint commit(JobCheckpoint checkpoint, Long userId, List<Object[]> rows, long rejected,
+            long line, boolean completed) {
+        return transactionTemplate.execute(status -> {
+            shardRouter.bind(userId);
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows, batchSize, (ps, row) -> {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                });
+                eventPublisher.publishEvent(new MessagesImportedEvent(userId, rows.size()));
+            }
+            checkpoint.setLastPosition(line);
+            checkpoint.setProcessed(checkpoint.getProcessed() + rows.size());
+            checkpoint.setRejected(checkpoint.getRejected() + rejected);
+            checkpoint.setCompleted(completed);
+            return checkpointRepository.save(checkpoint);
+        });
+    }
+
+    private static int ivLength(EncryptionAlgorithm algorithm) {
+        return switch (algorithm) {
+            case AES -> 16;
+            case CHACHA20 -> 12;
+            case DES -> 8;
+            case AES_GCM -> 12;
+        };
+    }
+
+    private static long rate(long rows, long startedNanos) {
+        return rows * 1_000_000_000L / Math.max(1, System.nanoTime() - startedNanos);
+    }
+
+    // The ShardMover finds a user's checkpoints by this prefix
+    private static String jobId(Long userId, String importId) {
+        return "import:" + userId + ":" + importId;
+    }
+}
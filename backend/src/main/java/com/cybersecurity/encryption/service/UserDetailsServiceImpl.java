@@ -1,7 +1,12 @@
 package com.cybersecurity.encryption.service;
 
 import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.jfr.UserLookupEvent;
 import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.tracing.RequestTracingFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -9,18 +14,50 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer lookupTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        lookupTimer = Timer.builder("user.lookup")
+                .description("Time spent loading the user behind an authenticated request")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry);
+    }
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
-
-        return user;
+        UserLookupEvent event = new UserLookupEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean found = false;
+        try {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+            found = true;
+            return user;
+        } finally {
+            lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.found = found;
+                event.requestId = RequestTracingFilter.current();
+                event.commit();
+            }
+        }
     }
 }
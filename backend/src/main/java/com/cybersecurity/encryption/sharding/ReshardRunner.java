@@ -0,0 +1,61 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line resharding: moves the vaults of {@code app.reshard.usernames} to shard
+ * {@code app.reshard.shard}, one user at a time, while the application keeps running. Without
+ * usernames it prints how users and messages are spread over the shards. Run with
+ * {@code --spring.profiles.active=reshard} and the same sharding settings as the application.
+ */
+@Component
+@Profile("reshard")
+public class ReshardRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReshardRunner.class);
+
+    @Autowired
+    private ShardMover shardMover;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.reshard.usernames:}")
+    private List<String> usernames;
+
+    @Value("${app.reshard.shard:-1}")
+    private int shard;
+
+    @Override
+    public void run(String... args) {
+        List<String> names = usernames.stream().map(String::trim).filter(name -> !name.isEmpty()).toList();
+        if (!names.isEmpty()) {
+            for (String username : names) {
+                User user = userRepository.findByUsername(username)
+                        .orElseThrow(() -> new RuntimeException("User not found: " + username));
+                long started = System.nanoTime();
+                Map<String, Long> copied = shardMover.move(user.getId(), shard);
+                if (copied.isEmpty()) {
+                    logger.info("{} is already on shard {}", username, shard);
+                } else {
+                    logger.info("Moved {} to shard {} in {} ms; rows copied: {}", username, shard,
+                            (System.nanoTime() - started) / 1_000_000, copied);
+                }
+            }
+        }
+        for (ShardMover.ShardStats stats : shardMover.stats()) {
+            logger.info("Shard {}: {} users, {} messages", stats.shard(), stats.users(), stats.messages());
+        }
+    }
+}
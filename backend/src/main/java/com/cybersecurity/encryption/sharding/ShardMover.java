@@ -0,0 +1,270 @@
+package com.cybersecurity.encryption.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Moves one user's messages to another shard while the application keeps serving them:
+ * <ol>
+ * <li>the directory entry is marked as moving, and after {@code app.sharding.move-grace-ms},
+ * longer than nodes cache the entry, no node starts writes to the vault any more;</li>
+ * <li>the rows are copied from one snapshot of the source, keeping their IDs, and the copy is
+ * compared with the source, which would show any write that still slipped in;</li>
+ * <li>the entry is switched to the new shard, and after another grace period, in which reads
+ * that looked up the old shard finish, the rows are deleted from the source.</li>
+ * </ol>
+ * A failed move removes what was copied and leaves the user where they were.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardMover {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardMover.class);
+
+    // A user's rows in every table kept per shard, parents first; each condition takes the user ID.
+    // Checkpoints are those of the user's imports, see MessageImportService.
+    private static final Map<String, String> USER_ROWS = new LinkedHashMap<>();
+
+    static {
+        USER_ROWS.put("encrypted_messages", "user_id = ?");
+        USER_ROWS.put("encrypted_messages_archive",
+                "message_id IN (SELECT id FROM encrypted_messages WHERE user_id = ?)");
+        USER_ROWS.put("message_search_tokens", "user_id = ?");
+        USER_ROWS.put("job_checkpoints", "job_id LIKE CONCAT('import:', ?, ':%')");
+    }
+
+    @Value("${app.sharding.move-grace-ms:10000}")
+    private long graceMs;
+
+    @Value("${app.sharding.move-chunk-size:1000}")
+    private int chunkSize;
+
+    @Autowired
+    private ShardRoutingDataSource routingDataSource;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    /** Moves the user's messages to the target shard and returns the rows copied per table. */
+    public Map<String, Long> move(Long userId, int target) {
+        if (target < 0 || target >= routingDataSource.getShardCount()) {
+            throw new RuntimeException("There is no shard " + target);
+        }
+        ShardRouter.Assignment assignment = shardRouter.lookup(userId);
+        if (assignment.movingTo() != null) {
+            throw new RuntimeException("User " + userId + " is already being moved to shard " + assignment.movingTo());
+        }
+        int source = assignment.shard();
+        if (source == target) {
+            return Map.of();
+        }
+        markMoving(userId, source, target);
+        Map<String, Long> copied;
+        try {
+            Thread.sleep(graceMs);
+            copied = copy(userId, source, target);
+            verify(userId, source, target);
+            if (directory().update("UPDATE user_shards SET shard = ?, moving_to = NULL, updated_at = ?"
+                    + " WHERE user_id = ? AND moving_to = ?", target, now(), userId, target) != 1) {
+                throw new RuntimeException("The directory entry of user " + userId + " changed during the move");
+            }
+        } catch (Exception e) {
+            deleteRows(target, userId);
+            directory().update("UPDATE user_shards SET moving_to = NULL, updated_at = ? WHERE user_id = ?"
+                    + " AND moving_to = ?", now(), userId, target);
+            shardRouter.forget(userId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Moving user " + userId + " to shard " + target + " failed: " + e.getMessage(), e);
+        }
+        shardRouter.forget(userId);
+        try {
+            Thread.sleep(graceMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted before the rows of user " + userId + " were deleted from shard "
+                    + source + "; they are no longer read and can be deleted by moving the user again", e);
+        }
+        deleteRows(source, userId);
+        return copied;
+    }
+
+    /** Users placed on each shard and the messages stored there, by shard. */
+    public List<ShardStats> stats() {
+        JdbcTemplate directory = directory();
+        long totalUsers = directory.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        List<ShardStats> stats = new ArrayList<>();
+        for (int shard = 0; shard < routingDataSource.getShardCount(); shard++) {
+            long users = directory.queryForObject("SELECT COUNT(*) FROM user_shards WHERE shard = ?", Long.class,
+                    shard);
+            long messages = new JdbcTemplate(routingDataSource.getShard(shard))
+                    .queryForObject("SELECT COUNT(*) FROM encrypted_messages", Long.class);
+            stats.add(new ShardStats(shard, users, messages));
+        }
+        // Users from before sharding have no entry and are on shard 0
+        long placedElsewhere = stats.stream().skip(1).mapToLong(ShardStats::users).sum();
+        stats.set(0, new ShardStats(0, totalUsers - placedElsewhere, stats.get(0).messages()));
+        return stats;
+    }
+
+    private void markMoving(Long userId, int source, int target) {
+        int updated = directory().update("UPDATE user_shards SET moving_to = ?, updated_at = ? WHERE user_id = ?"
+                + " AND shard = ? AND moving_to IS NULL", target, now(), userId, source);
+        if (updated == 0) {
+            // Users from before sharding have no entry yet
+            try {
+                directory().update("INSERT INTO user_shards (user_id, shard, moving_to, updated_at) VALUES (?, 0, ?, ?)",
+                        userId, target, now());
+            } catch (DuplicateKeyException e) {
+                throw new RuntimeException("The directory entry of user " + userId + " changed; try again", e);
+            }
+        }
+        shardRouter.forget(userId);
+    }
+
+    // Rows are read in one transaction, so they are consistent with each other even if the tiering
+    // job archives some of them meanwhile, and written in chunks
+    private Map<String, Long> copy(Long userId, int source, int target) throws SQLException {
+        Map<String, Long> copied = new LinkedHashMap<>();
+        try (Connection from = routingDataSource.getShard(source).getConnection();
+             Connection to = routingDataSource.getShard(target).getConnection()) {
+            from.setAutoCommit(false);
+            from.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            from.setReadOnly(true);
+            to.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, String> table : USER_ROWS.entrySet()) {
+                    copied.put(table.getKey(), copyTable(from, to, table.getKey(), table.getValue(), userId));
+                }
+            } finally {
+                from.rollback();
+            }
+        }
+        return copied;
+    }
+
+    private long copyTable(Connection from, Connection to, String table, String condition, Long userId)
+            throws SQLException {
+        try (PreparedStatement select = from.prepareStatement("SELECT * FROM " + table + " WHERE " + condition,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            select.setFetchSize(from.getMetaData().getDatabaseProductName().contains("MySQL")
+                    ? Integer.MIN_VALUE : chunkSize);
+            select.setLong(1, userId);
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columns = metaData.getColumnCount();
+                StringJoiner names = new StringJoiner(", ");
+                StringJoiner values = new StringJoiner(", ");
+                for (int i = 1; i <= columns; i++) {
+                    names.add(metaData.getColumnLabel(i));
+                    values.add("?");
+                }
+                long rows = 0;
+                try (PreparedStatement insert = to.prepareStatement("INSERT INTO " + table + " (" + names
+                        + ") VALUES (" + values + ")")) {
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            insert.setObject(i, value(rs, i));
+                        }
+                        insert.addBatch();
+                        if (++rows % chunkSize == 0) {
+                            insert.executeBatch();
+                            to.commit();
+                        }
+                    }
+                    insert.executeBatch();
+                    to.commit();
+                }
+                return rows;
+            }
+        } catch (SQLException e) {
+            to.rollback();
+            throw e;
+        }
+    }
+
+    // LOBs are only valid on their own connection
+    private static Object value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Blob blob) {
+            return blob.getBytes(1, (int) blob.length());
+        }
+        if (value instanceof Clob clob) {
+            return clob.getSubString(1, (int) clob.length());
+        }
+        return value;
+    }
+
+    // A write that slipped in after the snapshot adds a row with a higher ID or removes one
+    private void verify(Long userId, int source, int target) {
+        String sql = "SELECT COUNT(*) AS row_count, COALESCE(MAX(id), 0) AS max_id FROM encrypted_messages"
+                + " WHERE user_id = ?";
+        RowMapper<List<Long>> countAndMaxId = (rs, rowNum) -> List.of(rs.getLong("row_count"), rs.getLong("max_id"));
+        List<Long> expected = new JdbcTemplate(routingDataSource.getShard(source)).queryForObject(sql, countAndMaxId,
+                userId);
+        List<Long> actual = new JdbcTemplate(routingDataSource.getShard(target)).queryForObject(sql, countAndMaxId,
+                userId);
+        if (!expected.equals(actual)) {
+            throw new RuntimeException("The vault changed while it was copied: messages and highest ID " + expected
+                    + " on shard " + source + ", " + actual + " on shard " + target);
+        }
+    }
+
+    // Children first; chunked, so that no single transaction holds a large vault's locks
+    private void deleteRows(int shard, Long userId) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routingDataSource.getShard(shard));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(routingDataSource.getShard(shard)));
+        jdbcTemplate.update("DELETE FROM job_checkpoints WHERE " + USER_ROWS.get("job_checkpoints"), userId);
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM encrypted_messages WHERE user_id = ?"
+                    + " ORDER BY id LIMIT " + chunkSize, Long.class, userId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String in = String.join(", ", ids.stream().map(String::valueOf).toList());
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM encrypted_messages_archive WHERE message_id IN (" + in + ")");
+                jdbcTemplate.update("DELETE FROM message_search_tokens WHERE message_id IN (" + in + ")");
+                jdbcTemplate.update("DELETE FROM encrypted_messages WHERE id IN (" + in + ")");
+            });
+        }
+        logger.debug("Deleted the rows of user {} from shard {}", userId, shard);
+    }
+
+    private JdbcTemplate directory() {
+        return new JdbcTemplate(routingDataSource.getShard(0));
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    public record ShardStats(int shard, long users, long messages) {
+    }
+}
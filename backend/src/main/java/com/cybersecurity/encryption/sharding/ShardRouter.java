@@ -0,0 +1,171 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Sends a user's transactions to the shard holding their messages. A new user is placed by a hash
+ * of their ID, and the placement is recorded in user_shards on shard 0; users without an entry,
+ * such as those from before sharding, are on shard 0. Entries are cached for
+ * {@code app.sharding.directory-cache-ms}. Without {@code app.sharding.enabled} there is one
+ * database and binding does nothing.
+ */
+@Component
+public class ShardRouter {
+
+    // Past this many users the least recently used entries are looked up again
+    private static final int MAX_CACHED_USERS = 100_000;
+
+    @Value("${app.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.sharding.directory-cache-ms:2000}")
+    private long directoryCacheMs;
+
+    @Autowired(required = false)
+    private ShardRoutingDataSource routingDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate directory;
+    private Cache<Long, Assignment> assignments;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        if (enabled) {
+            directory = new JdbcTemplate(routingDataSource.getShard(0));
+            assignments = Caffeine.newBuilder()
+                    .expireAfterWrite(Duration.ofMillis(directoryCacheMs))
+                    .maximumSize(MAX_CACHED_USERS)
+                    .build();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getShardCount() {
+        return enabled ? routingDataSource.getShardCount() : 1;
+    }
+
+    /**
+     * Binds the current transaction to the user's shard. It must come before the transaction's
+     * first statement. Write transactions are refused while the user's data is being moved.
+     */
+    public void bind(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("A shard can only be bound inside a transaction");
+        }
+        Assignment assignment = assignment(userId);
+        if (assignment.movingTo() != null && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new RuntimeException("This vault is being moved to another database; try again in a few seconds");
+        }
+        Integer bound = ShardRoutingDataSource.currentShard();
+        if (bound != null) {
+            if (bound != assignment.shard()) {
+                throw new IllegalStateException("Transaction is bound to shard " + bound + ", not to shard "
+                        + assignment.shard() + " of user " + userId);
+            }
+            return;
+        }
+        ShardRoutingDataSource.setCurrentShard(assignment.shard());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ShardRoutingDataSource.setCurrentShard(null);
+            }
+        });
+    }
+
+    /** Runs a read in a read-only transaction on the user's shard. */
+    public <T> T read(Long userId, Supplier<T> action) {
+        return readOnlyTransaction.execute(status -> {
+            bind(userId);
+            return action.get();
+        });
+    }
+
+    /** Runs work that is not for one user, such as a background job, against one shard. */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        Integer previous = ShardRoutingDataSource.currentShard();
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    /** Places a new user, on the same shard whichever node registers them. */
+    public void assignNewUser(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        directory.update("INSERT INTO user_shards (user_id, shard, updated_at) VALUES (?, ?, ?)", userId,
+                jumpHash(userId, getShardCount()), Timestamp.valueOf(LocalDateTime.now()));
+        assignments.invalidate(userId);
+    }
+
+    public Assignment assignment(Long userId) {
+        return assignments.get(userId, this::lookup);
+    }
+
+    /** The directory entry as it is now, bypassing the cache. */
+    Assignment lookup(Long userId) {
+        List<Assignment> rows = directory.query("SELECT shard, moving_to FROM user_shards WHERE user_id = ?",
+                (rs, rowNum) -> new Assignment(rs.getInt("shard"), rs.getObject("moving_to", Integer.class)),
+                userId);
+        Assignment assignment = rows.isEmpty() ? new Assignment(0, null) : rows.get(0);
+        if (assignment.shard() >= getShardCount()) {
+            throw new IllegalStateException("User " + userId + " is on shard " + assignment.shard() + ", but only "
+                    + getShardCount() + " shards are configured");
+        }
+        return assignment;
+    }
+
+    void forget(Long userId) {
+        assignments.invalidate(userId);
+    }
+
+    // Jump consistent hash (Lamping and Veach): even, and when a shard is added only the
+    // placements that move to it change
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    public record Assignment(int shard, Integer movingTo) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One connection pool per shard. A connection comes from the shard the {@link ShardRouter} bound
+ * to the current thread, or from shard 0, which also holds the users and every table that is not
+ * kept per user.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    static Integer currentShard() {
+        return currentShard.get();
+    }
+
+    static void setCurrentShard(Integer shard) {
+        if (shard == null) {
+            currentShard.remove();
+        } else {
+            currentShard.set(shard);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = currentShard.get();
+        return shard != null ? shard : 0;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /** The pool of one shard, for work that picks its shard itself. */
+    public HikariDataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
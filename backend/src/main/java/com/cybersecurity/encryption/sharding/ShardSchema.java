@@ -0,0 +1,139 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.cybersecurity.encryption.entity.User;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.DatasourceConnectionProviderImpl;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.Table;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies {@code spring.jpa.hibernate.ddl-auto} to every shard, not only the first, and sets up
+ * the message IDs. The users stay on shard 0, so the other shards get no foreign keys to them.
+ * <p>
+ * A message keeps its ID when its user moves to another shard, so IDs are unique across shards:
+ * shard k hands out IDs congruent to k modulo {@value #ID_STRIDE}, and shards other than 0 start
+ * at 2^40, above the IDs from before sharding. H2 and MySQL are supported.
+ */
+public class ShardSchema implements Integrator, SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardSchema.class);
+
+    // Also the largest number of shards
+    static final int ID_STRIDE = 64;
+
+    static final long SHARD_ID_START = 1L << 40;
+
+    private final ShardRoutingDataSource routingDataSource;
+
+    private Metadata metadata;
+    private SessionFactoryImplementor sessionFactory;
+
+    public ShardSchema(ShardRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    /** Makes every connection of a MySQL shard's pool take its IDs from the shard's series. */
+    static String mysqlConnectionInitSql(int shard) {
+        return "SET SESSION auto_increment_increment = " + ID_STRIDE + ", auto_increment_offset = "
+                + (shard == 0 ? ID_STRIDE : shard);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+            SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    // Runs once the entity manager factory, and with it the schema of shard 0, is in place
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (metadata == null) {
+            throw new IllegalStateException("Hibernate did not hand its metadata to the shard schema");
+        }
+        Table users = metadata.getEntityBinding(User.class.getName()).getTable();
+        for (Table table : metadata.collectTableMappings()) {
+            for (ForeignKey foreignKey : table.getForeignKeys().values()) {
+                if (foreignKey.getReferencedTable() == users) {
+                    foreignKey.disableCreation();
+                }
+            }
+        }
+        for (int shard = 1; shard < routingDataSource.getShardCount(); shard++) {
+            // A registry of its own, so that Hibernate compares against the shard's catalog, not shard 0's
+            Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+            settings.put(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, routingDataSource.getShard(shard));
+            // A bare registry does not read the JPA setting, so it gets the shard's connections directly
+            DatasourceConnectionProviderImpl connections = new DatasourceConnectionProviderImpl();
+            connections.setDataSource(routingDataSource.getShard(shard));
+            connections.configure(settings);
+            StandardServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(settings)
+                    .addService(ConnectionProvider.class, connections).build();
+            try {
+                SchemaManagementToolCoordinator.process(metadata, registry, settings, action -> { });
+            } finally {
+                StandardServiceRegistryBuilder.destroy(registry);
+            }
+        }
+        for (int shard = 0; shard < routingDataSource.getShardCount(); shard++) {
+            try {
+                prepareIds(shard);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not set up message IDs on shard " + shard, e);
+            }
+        }
+        logger.info("Sharding encrypted_messages across {} databases", routingDataSource.getShardCount());
+    }
+
+    private void prepareIds(int shard) throws SQLException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routingDataSource.getShard(shard));
+        String product;
+        try (Connection connection = routingDataSource.getShard(shard).getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        }
+        if (product.contains("MySQL")) {
+            // The increment comes from the pool's connection init SQL; only the start is per table
+            if (shard > 0 && jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM encrypted_messages",
+                    Long.class) < SHARD_ID_START) {
+                jdbcTemplate.execute("ALTER TABLE encrypted_messages AUTO_INCREMENT = " + SHARD_ID_START);
+            }
+        } else if (product.contains("H2")) {
+            Integer increment = jdbcTemplate.queryForObject("SELECT IDENTITY_INCREMENT FROM INFORMATION_SCHEMA.COLUMNS"
+                    + " WHERE TABLE_NAME = 'ENCRYPTED_MESSAGES' AND COLUMN_NAME = 'ID'", Integer.class);
+            if (increment == null || increment != ID_STRIDE) {
+                long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM encrypted_messages",
+                        Long.class);
+                if (shard > 0) {
+                    next = Math.max(next, SHARD_ID_START);
+                }
+                next += Math.floorMod(shard - next, ID_STRIDE);
+                jdbcTemplate.execute("ALTER TABLE encrypted_messages ALTER COLUMN id RESTART WITH " + next
+                        + " SET INCREMENT BY " + ID_STRIDE);
+            }
+        } else {
+            throw new IllegalStateException("Sharding supports MySQL and H2, not " + product);
+        }
+    }
+}
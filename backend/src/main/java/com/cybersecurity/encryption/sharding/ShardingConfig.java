@@ -0,0 +1,112 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.JpaSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads encrypted_messages and the tables that belong to it over several databases by user.
+ * Shard 0 is {@code spring.datasource} and also keeps the users and every other table; the
+ * others are {@code app.sharding.urls}. The physical connection is only taken at the first
+ * statement, after the {@link ShardRouter} has bound the transaction to the user's shard.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Value("${app.sharding.urls}")
+    private List<String> urls;
+
+    @Value("${app.sharding.username:}")
+    private String username;
+
+    @Value("${app.sharding.password:}")
+    private String password;
+
+    @Value("${app.sharding.maximum-pool-size:10}")
+    private int maximumPoolSize;
+
+    @Value("${app.segment-store.enabled:false}")
+    private boolean segmentStoreEnabled;
+
+    @Value("${app.reencryption.enabled:false}")
+    private boolean reencryptionEnabled;
+
+    @Value("${app.datasource.replica.enabled:false}")
+    private boolean replicaEnabled;
+
+    @Autowired
+    private Environment environment;
+
+    // Takes the place of Boot's pool, configured from the same spring.datasource.* properties
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        // These read or rewrite encrypted_messages without knowing about shards
+        if (segmentStoreEnabled || reencryptionEnabled || replicaEnabled) {
+            throw new IllegalStateException("Sharding cannot be combined with the segment store, re-encryption"
+                    + " or the read replica");
+        }
+        List<String> shardUrls = urls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (shardUrls.size() + 1 > ShardSchema.ID_STRIDE) {
+            throw new IllegalStateException("At most " + ShardSchema.ID_STRIDE + " shards are supported");
+        }
+        List<HikariDataSource> shards = new ArrayList<>();
+        HikariDataSource first = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(first));
+        shards.add(first);
+        for (String url : shardUrls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(username.isEmpty() ? properties.determineUsername() : username)
+                    .password(username.isEmpty() ? properties.determinePassword() : password)
+                    .build();
+            shard.setMaximumPoolSize(maximumPoolSize);
+            shards.add(shard);
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            HikariDataSource shard = shards.get(i);
+            shard.setPoolName("shard-" + i);
+            if (shard.getJdbcUrl().startsWith("jdbc:mysql:")) {
+                shard.setConnectionInitSql(ShardSchema.mysqlConnectionInitSql(i));
+            }
+            shard.setMetricRegistry(meterRegistry);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public ShardSchema shardSchema(ShardRoutingDataSource shardRoutingDataSource) {
+        return new ShardSchema(shardRoutingDataSource);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaIntegrator(ShardSchema shardSchema) {
+        return hibernateProperties -> hibernateProperties.put(JpaSettings.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(shardSchema));
+    }
+}
@@ -0,0 +1,72 @@
+package com.cybersecurity.encryption.tiering;
+
+import com.cybersecurity.encryption.entity.EncryptedMessage;
+import com.cybersecurity.encryption.segment.SegmentStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads ciphertext wherever it lives: in the row, in the {@link SegmentStore}, or in the cold
+ * tier, the encrypted_messages_archive table filled by the {@link MessageTieringJob}. Cold
+ * messages keep their row as a stub, so listings and counts do not change; only their content
+ * takes one more primary-key lookup.
+ */
+@Component
+public class ColdMessageStore {
+
+    /** The columns {@link #content(ResultSet)} reads, for a query on encrypted_messages m with {@link #JOIN}. */
+    public static final String CONTENT_COLUMNS = SegmentStore.CONTENT_COLUMNS + ", a.content AS archived_content";
+    public static final String JOIN = " LEFT JOIN encrypted_messages_archive a ON a.message_id = m.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    /** Returns the Base64 ciphertext of a message. */
+    public String content(EncryptedMessage message) {
+        if (message.getArchivedAt() == null) {
+            return segmentStore.content(message);
+        }
+        String content = contents(Collections.singletonList(message.getId())).get(message.getId());
+        if (content == null) {
+            throw new RuntimeException("Archived content of message " + message.getId() + " is missing");
+        }
+        return content;
+    }
+
+    /** Same for a row selected with {@link #CONTENT_COLUMNS}. */
+    public String content(ResultSet rs) throws SQLException {
+        byte[] archived = rs.getBytes("archived_content");
+        return archived != null ? Base64.getEncoder().encodeToString(archived) : segmentStore.content(rs);
+    }
+
+    /** The Base64 ciphertext of cold messages, in one query. */
+    public Map<Long, String> contents(Collection<Long> messageIds) {
+        Map<Long, String> contents = new HashMap<>();
+        if (messageIds.isEmpty()) {
+            return contents;
+        }
+        jdbcTemplate.query("SELECT message_id, content FROM encrypted_messages_archive WHERE message_id IN ("
+                        + String.join(", ", Collections.nCopies(messageIds.size(), "?")) + ")",
+                rs -> {
+                    contents.put(rs.getLong("message_id"), Base64.getEncoder().encodeToString(rs.getBytes("content")));
+                },
+                messageIds.toArray());
+        return contents;
+    }
+
+    public void remove(Long messageId) {
+        jdbcTemplate.update("DELETE FROM encrypted_messages_archive WHERE message_id = ?", messageId);
+    }
+}
@@ -0,0 +1,163 @@
+package com.cybersecurity.encryption.tiering;
+
+import com.cybersecurity.encryption.entity.EncryptedMessage;
+import com.cybersecurity.encryption.segment.SegmentStore;
+import com.cybersecurity.encryption.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Moves the ciphertext of messages older than {@code app.tiering.max-age-days} out of
+ * encrypted_messages into the cold tier read by {@link ColdMessageStore}. Each chunk clears the
+ * content of its rows and inserts it into encrypted_messages_archive in one transaction, so a
+ * message is always in exactly one place. Runs once when the application is ready and then
+ * every {@code app.tiering.interval-ms}. Files are left alone, since their content is on disk.
+ */
+@Component
+@ConditionalOnProperty(name = "app.tiering.enabled", havingValue = "true")
+public class MessageTieringJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageTieringJob.class);
+
+    private static final String SELECT_SQL = "SELECT id, " + SegmentStore.CONTENT_COLUMNS + ", initialization_vector"
+            + " FROM encrypted_messages WHERE id > ? AND created_at < ? AND archived_at IS NULL"
+            + " AND file_size IS NULL ORDER BY id LIMIT ?";
+    // The IV in the WHERE clause skips rows that were deleted or re-encrypted since they were read
+    private static final String STUB_SQL = "UPDATE encrypted_messages SET encrypted_content = NULL, segment_id = NULL,"
+            + " segment_offset = NULL, segment_length = NULL, archived_at = ?"
+            + " WHERE id = ? AND archived_at IS NULL AND initialization_vector = ?";
+    // Only for rows this chunk turned into stubs, whatever update counts the driver reports
+    private static final String ARCHIVE_SQL = "INSERT INTO encrypted_messages_archive (message_id, content)"
+            + " SELECT id, ? FROM encrypted_messages WHERE id = ? AND archived_at = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.tiering.max-age-days:365}")
+    private int maxAgeDays;
+
+    @Value("${app.tiering.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.tiering.interval-ms:86400000}")
+    private long intervalMs;
+
+    private ThreadPoolTaskScheduler scheduler;
+    private Counter archivedCounter;
+
+    @PostConstruct
+    void init() {
+        archivedCounter = Counter.builder("tiering.rows").tag("outcome", "archived")
+                .description("Messages moved to the cold tier").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("tiering-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                logger.warn("Tiering run failed: {}", e.getMessage(), e);
+            }
+        }, Duration.ofMillis(intervalMs));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /** Archives every message that is old enough, and returns how many were moved. */
+    public synchronized long run() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(maxAgeDays));
+        long started = System.nanoTime();
+        long archived = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            archived += shardRouter.onShard(shard, () -> archiveOlderThan(cutoff));
+        }
+        if (archived > 0) {
+            logger.info("Moved {} messages older than {} days to the cold tier in {} ms", archived, maxAgeDays,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return archived;
+    }
+
+    private long archiveOlderThan(Timestamp cutoff) {
+        long archived = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Object[] {rs.getLong("id"),
+                    segmentStore.content(rs), rs.getString("initialization_vector")}, afterId, cutoff, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            archived += archive(rows);
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        return archived;
+    }
+
+    private long archive(List<Object[]> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().withNano(0));
+        Long moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(STUB_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setTimestamp(1, now);
+                ps.setLong(2, (Long) row[0]);
+                ps.setString(3, (String) row[2]);
+            });
+            jdbcTemplate.batchUpdate(ARCHIVE_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setBytes(1, Base64.getDecoder().decode((String) row[1]));
+                ps.setLong(2, (Long) row[0]);
+                ps.setTimestamp(3, now);
+            });
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encrypted_messages WHERE id BETWEEN ? AND ?"
+                    + " AND archived_at = ?", Long.class, rows.get(0)[0], rows.get(rows.size() - 1)[0], now);
+        });
+        // The rows changed behind Hibernate's back
+        rows.forEach(row -> entityManagerFactory.getCache().evict(EncryptedMessage.class, row[0]));
+        long count = moved == null ? 0 : moved;
+        archivedCounter.increment(count);
+        return count;
+    }
+}
@@ -0,0 +1,5 @@
+package com.cybersecurity.encryption.tracing;
+
+public enum AuthOutcome {
+    NONE, PUBLIC, NO_TOKEN, VALID, INVALID, ERROR
+}
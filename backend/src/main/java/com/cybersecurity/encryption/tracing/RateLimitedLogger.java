@@ -0,0 +1,48 @@
+package com.cybersecurity.encryption.tracing;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through at most {@code permits} warnings per interval and counts the rest,
+ * reporting the suppressed count when the next interval opens. Meant for messages
+ * an attacker can trigger at will, such as invalid tokens.
+ */
+public class RateLimitedLogger {
+
+    private final Logger logger;
+    private final int permits;
+    private final long intervalNanos;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public RateLimitedLogger(Logger logger, int permits, long intervalMs) {
+        this.logger = logger;
+        this.permits = permits;
+        this.intervalNanos = intervalMs * 1_000_000L;
+    }
+
+    public void warn(String format, Object argument) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+            long dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                logger.warn("{} similar messages suppressed in the last {} ms", dropped,
+                        (now - start) / 1_000_000L);
+            }
+        }
+        if (used.incrementAndGet() <= permits) {
+            logger.warn(format, argument);
+        } else {
+            suppressed.incrementAndGet();
+        }
+    }
+}
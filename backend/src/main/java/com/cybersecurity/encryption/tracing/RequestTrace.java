@@ -0,0 +1,64 @@
+package com.cybersecurity.encryption.tracing;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Per-request state gathered along the filter chain and written out as a single
+ * log event when the request completes. Only plain fields are set on the hot path;
+ * formatting happens once, and only for sampled requests.
+ */
+public class RequestTrace {
+
+    private static final String ATTRIBUTE = RequestTrace.class.getName();
+
+    private final String requestId;
+    private final long startNanos;
+    private final boolean sampled;
+    private AuthOutcome authOutcome = AuthOutcome.NONE;
+    private String username;
+
+    RequestTrace(String requestId, long startNanos, boolean sampled) {
+        this.requestId = requestId;
+        this.startNanos = startNanos;
+        this.sampled = sampled;
+    }
+
+    public static RequestTrace of(HttpServletRequest request) {
+        return (RequestTrace) request.getAttribute(ATTRIBUTE);
+    }
+
+    void attach(HttpServletRequest request) {
+        request.setAttribute(ATTRIBUTE, this);
+    }
+
+    public void authenticated(AuthOutcome outcome, String username) {
+        this.authOutcome = outcome;
+        this.username = username;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    String format(String method, String path, int status, long elapsedNanos) {
+        StringBuilder line = new StringBuilder(160);
+        line.append("request id=").append(requestId)
+                .append(" method=").append(method)
+                .append(" path=").append(path)
+                .append(" status=").append(status)
+                .append(" durationUs=").append(elapsedNanos / 1_000)
+                .append(" auth=").append(authOutcome);
+        if (username != null) {
+            line.append(" user=").append(username);
+        }
+        return line.toString();
+    }
+}
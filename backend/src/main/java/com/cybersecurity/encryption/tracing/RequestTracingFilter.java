@@ -0,0 +1,91 @@
+package com.cybersecurity.encryption.tracing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Gives every request an ID, taken from {@code X-Request-Id} when the caller or a
+ * proxy supplies a sane one. The ID is echoed in the response, put in the MDC for
+ * log lines and copied onto the JFR events recorded while serving the request.
+ * A sampled fraction of requests, plus every server error, is logged as one
+ * structured line when the response completes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestTracingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Id";
+    public static final String MDC_KEY = "requestId";
+
+    private static final Logger traceLogger = LoggerFactory.getLogger(RequestTrace.class);
+
+    @Value("${app.tracing.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        RequestTrace trace = RequestTrace.of(request);
+        if (trace == null) {
+            boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+            trace = new RequestTrace(sanitize(request.getHeader(HEADER)), System.nanoTime(), sampled);
+            trace.attach(request);
+            response.setHeader(HEADER, trace.getRequestId());
+        }
+        MDC.put(MDC_KEY, trace.getRequestId());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!isAsyncStarted(request)) {
+                emit(trace, request, response);
+            }
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    private void emit(RequestTrace trace, HttpServletRequest request, HttpServletResponse response) {
+        int status = response.getStatus();
+        if ((trace.isSampled() || status >= 500) && traceLogger.isInfoEnabled()) {
+            traceLogger.info(trace.format(request.getMethod(), request.getRequestURI(), status,
+                    System.nanoTime() - trace.getStartNanos()));
+        }
+    }
+
+    public static String current() {
+        return MDC.get(MDC_KEY);
+    }
+
+    private static String sanitize(String supplied) {
+        if (supplied != null && !supplied.isEmpty() && supplied.length() <= 64) {
+            for (int i = 0; i < supplied.length(); i++) {
+                char c = supplied.charAt(i);
+                if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.')) {
+                    return UUID.randomUUID().toString();
+                }
+            }
+            return supplied;
+        }
+        return UUID.randomUUID().toString();
+    }
+}
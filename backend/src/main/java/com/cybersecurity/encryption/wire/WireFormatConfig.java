@@ -0,0 +1,21 @@
+package com.cybersecurity.encryption.wire;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * CBOR ({@code application/cbor}) next to JSON for the crypto endpoints. The mapper comes from
+ * Spring Boot's builder, so it has the same modules and {@code spring.jackson.*} settings as the
+ * JSON one; {@code byte[]} fields go on the wire as raw byte strings instead of Base64.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -0,0 +1,88 @@
+package com.cybersecurity.encryption.buffer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecureBufferPoolTest {
+
+    private MeterRegistry meterRegistry;
+    private SecureBufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pool = new SecureBufferPool();
+        ReflectionTestUtils.setField(pool, "maxPooledBytes", 4096);
+        ReflectionTestUtils.setField(pool, "maxPooledPerSize", 4);
+        ReflectionTestUtils.setField(pool, "meterRegistry", meterRegistry);
+        pool.init();
+    }
+
+    @Test
+    void closedArraysAreZeroedAndReused() {
+        SecureBuffer buffer = pool.acquire(32);
+        byte[] array = buffer.array();
+        Arrays.fill(array, (byte) 0x5a);
+
+        buffer.close();
+
+        assertThat(array).containsOnly(0);
+        assertThat(outstanding()).isZero();
+        try (SecureBuffer again = pool.acquire(32)) {
+            assertThat(again.array()).isSameAs(array).containsOnly(0);
+        }
+    }
+
+    @Test
+    void decodedKeysAreZeroedOnClose() {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) 7);
+        SecureBuffer decoded = pool.decodeBase64(Base64.getEncoder().encodeToString(key));
+        byte[] array = decoded.array();
+        assertThat(Arrays.copyOf(array, decoded.length())).isEqualTo(key);
+
+        decoded.close();
+
+        assertThat(array).containsOnly(0);
+    }
+
+    @Test
+    void unreleasedBufferIsZeroedAndCountedAsLeak() throws InterruptedException {
+        byte[] array = acquireAndDrop();
+        assertThat(outstanding()).isEqualTo(1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (leaks() == 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertThat(leaks()).isEqualTo(1);
+        assertThat(outstanding()).isZero();
+        assertThat(array).containsOnly(0);
+    }
+
+    // Keeps only the array, so the buffer itself becomes unreachable
+    private byte[] acquireAndDrop() {
+        SecureBuffer buffer = pool.acquire(64);
+        Arrays.fill(buffer.array(), 0, buffer.length(), (byte) 0x5a);
+        return buffer.array();
+    }
+
+    private double leaks() {
+        return meterRegistry.get("secure.buffers.leaks").counter().count();
+    }
+
+    private double outstanding() {
+        return meterRegistry.get("secure.buffers.outstanding").gauge().value();
+    }
+}
@@ -0,0 +1,237 @@
+package com.cybersecurity.encryption.controller;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.security.JwtTokenProvider;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Uploads a file as raw multipart, then downloads it whole and in ranges. MockMvc offers no
+ * sendfile, so downloads take the channel copy. Also checks the limits on the multipart parts.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:file_controller_test;DB_CLOSE_DELAY=-1",
+        "app.files.max-size=65536",
+        "app.rate-limit.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class FileControllerTest {
+
+    private static final String BOUNDARY = "test-boundary-7MA4YWxkTrZu0gW";
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @DynamicPropertySource
+    static void storageDir(DynamicPropertyRegistry registry) {
+        registry.add("app.files.storage-dir", () -> {
+            try {
+                return Files.createTempDirectory("file-controller-test").toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+    private byte[] plaintext;
+
+    @BeforeEach
+    void setUp() {
+        String name = "files-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null,
+                null));
+        token = tokenProvider.generateTokenFromUsername(user.getUsername(), 60_000);
+        plaintext = new byte[1000];
+        for (int i = 0; i < plaintext.length; i++) {
+            plaintext[i] = (byte) ('a' + i % 26);
+        }
+    }
+
+    @Test
+    void downloadsTheWholeFileAndByteRanges() throws Exception {
+        long id = upload();
+
+        MvcResult full = mockMvc.perform(authorized(get("/api/files/" + id)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string("X-Encryption-Algorithm", "AES_GCM"))
+                .andReturn();
+        byte[] ciphertext = full.getResponse().getContentAsByteArray();
+        // AES-GCM adds a 16-byte tag
+        assertThat(ciphertext).hasSize(plaintext.length + 16);
+        assertThat(full.getResponse().getContentLengthLong()).isEqualTo(ciphertext.length);
+        String iv = full.getResponse().getHeader("X-Initialization-Vector");
+        assertThat(encryptionService.decrypt(Base64.getEncoder().encodeToString(ciphertext), KEY, iv,
+                EncryptionAlgorithm.AES_GCM)).isEqualTo(new String(plaintext, StandardCharsets.UTF_8));
+        String etag = full.getResponse().getHeader(HttpHeaders.ETAG);
+        int length = ciphertext.length;
+
+        MvcResult range = mockMvc.perform(authorized(get("/api/files/" + id)).header(HttpHeaders.RANGE,
+                        "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + length))
+                .andReturn();
+        assertThat(range.getResponse().getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(ciphertext, 10, 20));
+
+        MvcResult suffix = mockMvc.perform(authorized(get("/api/files/" + id)).header(HttpHeaders.RANGE,
+                        "bytes=-100"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + (length - 100) + "-" + (length - 1) + "/" + length))
+                .andReturn();
+        assertThat(suffix.getResponse().getContentAsByteArray())
+                .isEqualTo(Arrays.copyOfRange(ciphertext, length - 100, length));
+
+        // An open range resumes from the given byte
+        MvcResult resumed = mockMvc.perform(authorized(get("/api/files/" + id)).header(HttpHeaders.RANGE,
+                        "bytes=500-").header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+        assertThat(resumed.getResponse().getContentAsByteArray())
+                .isEqualTo(Arrays.copyOfRange(ciphertext, 500, length));
+
+        mockMvc.perform(authorized(get("/api/files/" + id)).header(HttpHeaders.RANGE, "bytes=" + length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + length));
+
+        // The file changed since the client saw it, so it gets all of it
+        MvcResult stale = mockMvc.perform(authorized(get("/api/files/" + id)).header(HttpHeaders.RANGE,
+                        "bytes=10-19").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andReturn();
+        assertThat(stale.getResponse().getContentAsByteArray()).isEqualTo(ciphertext);
+
+        MvcResult headers = mockMvc.perform(authorized(head("/api/files/" + id)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andReturn();
+        assertThat(headers.getResponse().getContentLengthLong()).isEqualTo(length);
+        assertThat(headers.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void oversizedPartsAreRefused() throws Exception {
+        // A field past MAX_FIELD_BYTES
+        uploadExpectingError(new Multipart().field("algorithm", "AES_GCM").field("key", KEY)
+                .field("title", "t".repeat(1025)).file("notes.txt", plaintext), "longer than 1024 bytes");
+
+        // A part header past MAX_PART_HEADER_BYTES
+        uploadExpectingError(new Multipart().field("algorithm", "AES_GCM").field("key", KEY)
+                .file("n".repeat(4096) + ".txt", plaintext), "Header section has more than 2048 bytes");
+
+        // More parts than MAX_PARTS
+        Multipart manyParts = new Multipart().field("algorithm", "AES_GCM").field("key", KEY);
+        for (int i = 0; i < 20; i++) {
+            manyParts.field("extra" + i, "x");
+        }
+        uploadExpectingError(manyParts.file("notes.txt", plaintext), "more than 16 parts");
+
+        // A file past app.files.max-size
+        uploadExpectingError(new Multipart().field("algorithm", "AES_GCM").field("key", KEY)
+                .file("big.bin", new byte[65537]), "larger than the limit of 65536 bytes");
+    }
+
+    private long upload() throws Exception {
+        MvcResult result = mockMvc.perform(authorized(post("/api/files"))
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(new Multipart().field("algorithm", "AES_GCM").field("key", KEY)
+                                .field("title", "notes").file("notes.txt", plaintext).build()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fileSize").value(plaintext.length))
+                .andReturn();
+        JsonNode body = objectMapper.readTree(result.getResponse().getContentAsByteArray());
+        return body.get("id").asLong();
+    }
+
+    private void uploadExpectingError(Multipart multipart, String error) throws Exception {
+        MvcResult result = mockMvc.perform(authorized(post("/api/files"))
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(multipart.build()))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+        assertThat(objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("error").asText())
+                .contains(error);
+    }
+
+    private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    // Written by hand, since the upload reads the raw request rather than Spring's parsed parts
+    private static class Multipart {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        Multipart field(String name, String value) {
+            part("Content-Disposition: form-data; name=\"" + name + "\"\r\n",
+                    value.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        Multipart file(String filename, byte[] content) {
+            part("Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                    + "Content-Type: text/plain\r\n", content);
+            return this;
+        }
+
+        private void part(String headers, byte[] content) {
+            body.writeBytes(("--" + BOUNDARY + "\r\n" + headers + "\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(content);
+            body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] build() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(body.toByteArray());
+            out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            return out.toByteArray();
+        }
+    }
+}
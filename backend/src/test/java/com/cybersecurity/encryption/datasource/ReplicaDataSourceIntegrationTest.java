@@ -0,0 +1,183 @@
+package com.cybersecurity.encryption.datasource;
+
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases. The replica gets a copy of the primary taken with SCRIPT, so rows
+ * written after the copy show where a read went: read-only transactions see the copy, while a
+ * user who just wrote and every read during a replica outage see the primary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica_test_primary;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=" + ReplicaDataSourceIntegrationTest.REPLICA_URL + ";IFEXISTS=TRUE",
+        // Checks run from the test
+        "app.datasource.replica.health-check-interval-ms=3600000",
+        "app.datasource.replica.read-your-writes-ms=60000",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class ReplicaDataSourceIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica_test_replica;DB_CLOSE_DELAY=-1";
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM encrypted_messages WHERE user_id = ?";
+
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void replicaIsHealthy() throws Exception {
+        copyPrimaryToReplica();
+        replicaDataSource.checkHealth();
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica() throws Exception {
+        User user = newUser();
+        encrypt(user);
+        copyPrimaryToReplica();
+        encrypt(user);
+        double before = routes("replica");
+
+        assertThat(readOnlyCount(user)).isEqualTo(1);
+        assertThat(routes("replica")).isEqualTo(before + 1);
+        assertThat(readWriteCount(user)).isEqualTo(2);
+    }
+
+    @Test
+    void recentWritersReadTheirOwnWritesFromThePrimary() throws Exception {
+        User writer = newUser();
+        User reader = newUser();
+        copyPrimaryToReplica();
+        authenticate(writer);
+        encrypt(writer);
+        double before = routes("primary-recent-write");
+
+        assertThat(readOnlyCount(writer)).isEqualTo(1);
+        assertThat(routes("primary-recent-write")).isEqualTo(before + 1);
+
+        // Someone who did not write still reads the replica, which has not seen the message yet
+        authenticate(reader);
+        assertThat(readOnlyCount(writer)).isZero();
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhileTheReplicaIsDown() throws Exception {
+        User user = newUser();
+        copyPrimaryToReplica();
+        encrypt(user);
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        // Past Hikari's window for handing out idle connections unchecked
+        Thread.sleep(600);
+
+        replicaDataSource.checkHealth();
+
+        assertThat(meterRegistry.get("datasource.replica.healthy").gauge().value()).isZero();
+        double before = routes("primary-unhealthy");
+        assertThat(readOnlyCount(user)).isEqualTo(1);
+        assertThat(routes("primary-unhealthy")).isEqualTo(before + 1);
+
+        // Back once a check passes
+        copyPrimaryToReplica();
+        replicaDataSource.checkHealth();
+        assertThat(meterRegistry.get("datasource.replica.healthy").gauge().value()).isEqualTo(1);
+        assertThat(readOnlyCount(user)).isEqualTo(1);
+    }
+
+    private long readOnlyCount(User user) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> jdbcTemplate.queryForObject(COUNT_SQL, Long.class, user.getId()));
+    }
+
+    private long readWriteCount(User user) {
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> jdbcTemplate.queryForObject(COUNT_SQL, Long.class, user.getId()));
+    }
+
+    // Stands in for replication: the replica becomes a copy of the primary as it is now
+    private void copyPrimaryToReplica() throws IOException, SQLException {
+        Path script = Files.createTempFile("replica", ".sql");
+        try {
+            new JdbcTemplate(replicaDataSource.getPrimary()).execute("SCRIPT TO '" + script + "'");
+            try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                statement.execute("RUNSCRIPT FROM '" + script + "'");
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    private void encrypt(User user) {
+        encryptionService.createEncryptedMessage(new EncryptionRequest("title", "hello",
+                EncryptionAlgorithm.AES_GCM, KEY, false), user);
+    }
+
+    private static void authenticate(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private double routes(String route) {
+        return meterRegistry.get("datasource.read.routes").tag("route", route).counter().count();
+    }
+
+    private User newUser() {
+        String name = "replica-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+}
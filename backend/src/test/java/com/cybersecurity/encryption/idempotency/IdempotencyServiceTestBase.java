@@ -0,0 +1,202 @@
+package com.cybersecurity.encryption.idempotency;
+
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Duplicate requests against one store: concurrent duplicates, half of them sent to a second
+ * {@link IdempotencyService} that stands in for another node, create one message between them,
+ * and a first attempt that fails leaves the key free for a retry. Subclasses pick the store.
+ */
+abstract class IdempotencyServiceTestBase {
+
+    private static final int DUPLICATES = 8;
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private IdempotencyService otherNode;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        // Its own in-flight map, the same store
+        otherNode = applicationContext.getAutowireCapableBeanFactory().createBean(IdempotencyService.class);
+        executor = Executors.newFixedThreadPool(DUPLICATES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentDuplicatesRunTheRequestOnce() throws Exception {
+        User user = newUser();
+        String idempotencyKey = UUID.randomUUID().toString();
+        EncryptionRequest request = request("once");
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<ResponseEntity<?>>> sent = new ArrayList<>();
+        for (int i = 0; i < DUPLICATES; i++) {
+            IdempotencyService node = i % 2 == 0 ? idempotencyService : otherNode;
+            sent.add(executor.submit(() -> {
+                start.await();
+                return node.execute(user.getId(), idempotencyKey, request,
+                        encrypt(user, request, executions)).get(30, TimeUnit.SECONDS);
+            }));
+        }
+        start.countDown();
+        List<ResponseEntity<?>> responses = new ArrayList<>();
+        for (Future<ResponseEntity<?>> response : sent) {
+            responses.add(response.get(30, TimeUnit.SECONDS));
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(messagesOf(user)).isEqualTo(1);
+        assertThat(responses).allSatisfy(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK));
+        assertThat(responses).filteredOn(IdempotencyServiceTestBase::replayed).hasSize(DUPLICATES - 1);
+        Object executed = asJson(responses.stream().filter(response -> !replayed(response)).findFirst()
+                .orElseThrow().getBody());
+        assertThat(responses).filteredOn(IdempotencyServiceTestBase::replayed)
+                .allSatisfy(response -> assertThat(body(response)).isEqualTo(executed));
+        assertStoredOnce(user.getId() + ":" + idempotencyKey);
+    }
+
+    @Test
+    void failedFirstAttemptCanBeRetried() throws Exception {
+        User user = newUser();
+        String idempotencyKey = UUID.randomUUID().toString();
+        EncryptionRequest request = request("retried");
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<ResponseEntity<?>> failed = idempotencyService.execute(user.getId(), idempotencyKey,
+                request, () -> {
+                    executions.incrementAndGet();
+                    return CompletableFuture.failedFuture(new IllegalStateException("database unavailable"));
+                });
+        assertThatThrownBy(() -> failed.get(30, TimeUnit.SECONDS)).hasRootCauseMessage("database unavailable");
+
+        ResponseEntity<?> error = otherNode.execute(user.getId(), idempotencyKey, request, () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                    .body(Map.of("error", "try again")));
+        }).get(30, TimeUnit.SECONDS);
+        assertThat(error.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(replayed(error)).isFalse();
+
+        ResponseEntity<?> retried = idempotencyService.execute(user.getId(), idempotencyKey, request,
+                encrypt(user, request, executions)).get(30, TimeUnit.SECONDS);
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(replayed(retried)).isFalse();
+
+        ResponseEntity<?> replay = otherNode.execute(user.getId(), idempotencyKey, request,
+                encrypt(user, request, executions)).get(30, TimeUnit.SECONDS);
+        assertThat(replayed(replay)).isTrue();
+        assertThat(body(replay)).isEqualTo(asJson(retried.getBody()));
+
+        assertThat(executions).hasValue(3);
+        assertThat(messagesOf(user)).isEqualTo(1);
+        assertStoredOnce(user.getId() + ":" + idempotencyKey);
+    }
+
+    /** Checks what the store holds for the key once the request has succeeded. */
+    protected void assertStoredOnce(String key) {
+    }
+
+    // Slow enough that every duplicate arrives while the first is still running
+    private Supplier<CompletableFuture<ResponseEntity<?>>> encrypt(User user, EncryptionRequest request,
+            AtomicInteger executions) {
+        return () -> CompletableFuture.supplyAsync(() -> {
+            executions.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResponseEntity.ok(Map.of("id", encryptionService.createEncryptedMessage(request, user).getId()));
+        });
+    }
+
+    private static boolean replayed(ResponseEntity<?> response) {
+        return "true".equals(response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    // Replays carry the stored JSON bytes
+    private Object body(ResponseEntity<?> response) {
+        try {
+            return objectMapper.readValue((byte[]) response.getBody(), Map.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Object asJson(Object body) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsBytes(body), Map.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long messagesOf(User user) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encrypted_messages WHERE user_id = ?", Long.class,
+                user.getId());
+    }
+
+    private static EncryptionRequest request(String title) {
+        return new EncryptionRequest(title, "hello", EncryptionAlgorithm.AES_GCM, KEY, false);
+    }
+
+    private User newUser() {
+        String name = "idem-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+}
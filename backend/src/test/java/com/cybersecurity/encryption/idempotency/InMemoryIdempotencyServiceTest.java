@@ -0,0 +1,13 @@
+package com.cybersecurity.encryption.idempotency;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency_memory_test;DB_CLOSE_DELAY=-1",
+        "app.idempotency.store=in-memory",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class InMemoryIdempotencyServiceTest extends IdempotencyServiceTestBase {
+}
@@ -0,0 +1,26 @@
+package com.cybersecurity.encryption.idempotency;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency_jdbc_test;DB_CLOSE_DELAY=-1",
+        "app.idempotency.store=jdbc",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class JdbcIdempotencyServiceTest extends IdempotencyServiceTestBase {
+
+    @Override
+    protected void assertStoredOnce(String key) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT status_code FROM idempotency_keys WHERE idempotency_key = ?", key);
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).get("status_code")).isEqualTo(200);
+    }
+}
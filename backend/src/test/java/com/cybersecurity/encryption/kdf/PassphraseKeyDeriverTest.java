@@ -0,0 +1,117 @@
+package com.cybersecurity.encryption.kdf;
+
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PassphraseKeyDeriverTest {
+
+    private static final String PASSPHRASE = "correct horse battery";
+
+    private MeterRegistry meterRegistry;
+    private PassphraseKeyDeriver deriver;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deriver = new PassphraseKeyDeriver();
+        ReflectionTestUtils.setField(deriver, "function", "argon2id");
+        ReflectionTestUtils.setField(deriver, "argon2MemoryKib", 64);
+        ReflectionTestUtils.setField(deriver, "argon2Iterations", 1);
+        ReflectionTestUtils.setField(deriver, "argon2Parallelism", 1);
+        ReflectionTestUtils.setField(deriver, "maxMemoryKib", 1024L);
+        ReflectionTestUtils.setField(deriver, "threads", 1);
+        ReflectionTestUtils.setField(deriver, "queueCapacity", 10);
+        ReflectionTestUtils.setField(deriver, "cacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(deriver, "cacheTtlMs", 500L);
+        ReflectionTestUtils.setField(deriver, "meterRegistry", meterRegistry);
+        deriver.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        deriver.shutdown();
+    }
+
+    @Test
+    void repeatedDerivationIsServedFromTheCache() {
+        PassphraseKeyDeriver.DerivedKey derived = deriver.deriveNew(1L, PASSPHRASE, EncryptionAlgorithm.AES_GCM);
+
+        assertThat(deriver.derive(1L, PASSPHRASE, derived.salt(), derived.params(), EncryptionAlgorithm.AES_GCM))
+                .isEqualTo(derived.key());
+        assertThat(derivations()).isEqualTo(1);
+        assertThat(deriver.derive(1L, "wrong passphrase", derived.salt(), derived.params(),
+                EncryptionAlgorithm.AES_GCM)).isNotEqualTo(derived.key());
+    }
+
+    @Test
+    void expiredKeysAreZeroedAndDerivedAgain() throws InterruptedException {
+        PassphraseKeyDeriver.DerivedKey derived = deriver.deriveNew(1L, PASSPHRASE, EncryptionAlgorithm.AES_GCM);
+        byte[] key = cachedKeys().get(0);
+        assertThat(key).isNotEqualTo(new byte[32]);
+
+        awaitZeroed(key);
+
+        assertThat(cachedKeys()).isEmpty();
+        assertThat(deriver.derive(1L, PASSPHRASE, derived.salt(), derived.params(), EncryptionAlgorithm.AES_GCM))
+                .isEqualTo(derived.key());
+        assertThat(derivations()).isEqualTo(2);
+    }
+
+    @Test
+    void keysAreZeroedOnShutdown() throws InterruptedException {
+        deriver.deriveNew(1L, PASSPHRASE, EncryptionAlgorithm.DES);
+        byte[] key = cachedKeys().get(0);
+        assertThat(key).hasSize(8);
+
+        deriver.shutdown();
+
+        awaitZeroed(key);
+    }
+
+    // Expired entries are removed on cache maintenance, and removal listeners run on its executor
+    private void awaitZeroed(byte[] key) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!isZero(key) && System.nanoTime() < deadline) {
+            cache().synchronous().cleanUp();
+            Thread.sleep(10);
+        }
+        assertThat(key).containsOnly(0);
+    }
+
+    private static boolean isZero(byte[] key) {
+        for (byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<byte[]> cachedKeys() {
+        List<byte[]> keys = new ArrayList<>();
+        for (Object cached : cache().synchronous().asMap().values()) {
+            keys.add((byte[]) ReflectionTestUtils.getField(cached, "key"));
+        }
+        return keys;
+    }
+
+    private AsyncCache<?, ?> cache() {
+        return (AsyncCache<?, ?>) ReflectionTestUtils.getField(deriver, "derivedKeys");
+    }
+
+    private long derivations() {
+        return meterRegistry.get("passphrase.kdf").timer().count();
+    }
+}
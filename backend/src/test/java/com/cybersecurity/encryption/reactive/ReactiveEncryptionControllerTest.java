@@ -0,0 +1,167 @@
+package com.cybersecurity.encryption.reactive;
+
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.security.JwtTokenProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The WebFlux endpoints on r2dbc-h2, authenticated by {@link JwtWebFilter} with tokens like the
+ * servlet deployment issues.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive_test;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive_test?DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "management.server.port=0",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles({"h2", "reactive"})
+class ReactiveEncryptionControllerTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void encryptsListsAndDecryptsThroughTheJwtFilter() {
+        String token = tokenFor(newUser());
+
+        EncryptedMessageResponse encrypted = webTestClient.post().uri("/api/encrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(new EncryptionRequest("reactive", "hello from webflux", EncryptionAlgorithm.AES_GCM, KEY,
+                        false))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(EncryptedMessageResponse.class)
+                .returnResult().getResponseBody();
+        assertThat(encrypted).isNotNull();
+        assertThat(encrypted.getAlgorithm()).isEqualTo(EncryptionAlgorithm.AES_GCM);
+        Long id = encrypted.getId();
+
+        webTestClient.get().uri("/api/messages")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalElements").isEqualTo(1)
+                .jsonPath("$.content[0].id").isEqualTo(id)
+                .jsonPath("$.content[0].encryptedContent").isEqualTo(encrypted.getEncryptedContent())
+                .jsonPath("$.content[0].inSegmentStore").doesNotExist()
+                .jsonPath("$.content[0].title").isEqualTo("reactive");
+
+        webTestClient.post().uri("/api/decrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(new DecryptionRequest(id, KEY))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.decryptedMessage").isEqualTo("hello from webflux");
+    }
+
+    @Test
+    void anotherUsersMessageIsNotDecrypted() {
+        String owner = tokenFor(newUser());
+        Long id = webTestClient.post().uri("/api/encrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + owner)
+                .bodyValue(new EncryptionRequest("title", "mine", EncryptionAlgorithm.AES_GCM, KEY, false))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(EncryptedMessageResponse.class)
+                .returnResult().getResponseBody().getId();
+
+        webTestClient.post().uri("/api/decrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenFor(newUser()))
+                .bodyValue(new DecryptionRequest(id, KEY))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Decryption failed: Access denied");
+    }
+
+    @Test
+    void messagesInTheSegmentStoreAreListedWithoutContent() {
+        User user = newUser();
+        String token = tokenFor(user);
+        // As written by a servlet deployment with the segment store enabled
+        jdbcTemplate.update("INSERT INTO encrypted_messages (title, algorithm, encrypted_key, initialization_vector,"
+                + " user_id, created_at, segment_id, segment_offset, segment_length) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                "in a segment", "AES_GCM", KEY, Base64.getEncoder().encodeToString(new byte[12]), user.getId(),
+                Timestamp.valueOf(LocalDateTime.now()), 1, 16L, 64);
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM encrypted_messages WHERE user_id = ?", Long.class,
+                user.getId());
+
+        webTestClient.get().uri("/api/messages")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(id)
+                .jsonPath("$.content[0].encryptedContent").doesNotExist()
+                .jsonPath("$.content[0].inSegmentStore").isEqualTo(true);
+
+        webTestClient.post().uri("/api/decrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(new DecryptionRequest(id, KEY))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").value(error -> assertThat((String) error).contains("segment store"));
+    }
+
+    @Test
+    void requestsWithoutAValidTokenAreRejected() {
+        webTestClient.get().uri("/api/messages")
+                .exchange()
+                .expectStatus().isUnauthorized();
+        webTestClient.get().uri("/api/messages")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token")
+                .exchange()
+                .expectStatus().isUnauthorized();
+        // A valid signature for a user that does not exist authenticates nobody
+        webTestClient.post().uri("/api/encrypt")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenProvider.generateTokenFromUsername("nobody",
+                        60_000))
+                .bodyValue(new EncryptionRequest("t", "m", EncryptionAlgorithm.AES_GCM, KEY, false))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    private User newUser() {
+        String name = "rx-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+
+    private String tokenFor(User user) {
+        return tokenProvider.generateTokenFromUsername(user.getUsername(), 60_000);
+    }
+}
@@ -0,0 +1,193 @@
+package com.cybersecurity.encryption.reencryption;
+
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.JobCheckpoint;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.JobCheckpointRepository;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import com.cybersecurity.encryption.tiering.MessageTieringJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * DES and ChaCha20 messages, hot and archived, migrated by passes started from the test. The
+ * tiering job runs too, so a message can be moved to the cold tier before or during a pass.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reencryption_test;DB_CLOSE_DELAY=-1",
+        "app.reencryption.enabled=true",
+        "app.reencryption.auto-start=false",
+        "app.reencryption.threads=2",
+        "app.tiering.enabled=true",
+        "app.tiering.max-age-days=365",
+        // Runs are started from the test
+        "app.tiering.interval-ms=3600000",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class ReEncryptionJobTest {
+
+    private static final String DES_KEY = Base64.getEncoder().encodeToString(
+            new byte[] {0x13, 0x34, 0x57, 0x79, (byte) 0x9B, (byte) 0xBC, (byte) 0xDF, (byte) 0xF1});
+    private static final String CHACHA20_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private ReEncryptionJob job;
+
+    @Autowired
+    private MessageTieringJob tieringJob;
+
+    @SpyBean
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migratesHotAndArchivedMessagesAndARerunFindsNothing() throws InterruptedException {
+        User user = newUser();
+        Long des = encrypt(user, "des message", EncryptionAlgorithm.DES, DES_KEY);
+        Long chacha = encrypt(user, "chacha message", EncryptionAlgorithm.CHACHA20, CHACHA20_KEY);
+        Long archived = encrypt(user, "archived message", EncryptionAlgorithm.DES, DES_KEY);
+        archive(archived);
+        assertThat(archivedAt(archived)).isNotNull();
+
+        runPass();
+
+        assertThat(algorithm(des)).isEqualTo("AES_GCM");
+        assertThat(algorithm(chacha)).isEqualTo("AES_GCM");
+        assertThat(algorithm(archived)).isEqualTo("AES_GCM");
+        // Still in the cold tier, with the new ciphertext
+        assertThat(archivedAt(archived)).isNotNull();
+        assertThat(decrypt(user, des, DES_KEY)).isEqualTo("des message");
+        assertThat(decrypt(user, chacha, CHACHA20_KEY)).isEqualTo("chacha message");
+        assertThat(decrypt(user, archived, DES_KEY)).isEqualTo("archived message");
+
+        assertThat(runPass()).isZero();
+    }
+
+    @Test
+    void aPassContinuesAfterTheCheckpoint() throws InterruptedException {
+        User user = newUser();
+        Long before = encrypt(user, "before the checkpoint", EncryptionAlgorithm.DES, DES_KEY);
+        Long after = encrypt(user, "after the checkpoint", EncryptionAlgorithm.CHACHA20, CHACHA20_KEY);
+        // As left by a pass that stopped after committing the chunk ending at the first message
+        checkpointRepository.save(new JobCheckpoint("reencrypt:AES_GCM", before, 0, 0, false, null));
+
+        assertThat(runPass()).isEqualTo(1);
+
+        assertThat(algorithm(before)).isEqualTo("DES");
+        assertThat(algorithm(after)).isEqualTo("AES_GCM");
+        assertThat(decrypt(user, before, DES_KEY)).isEqualTo("before the checkpoint");
+        assertThat(decrypt(user, after, CHACHA20_KEY)).isEqualTo("after the checkpoint");
+
+        // The pass after a completed one starts over from the first message
+        runPass();
+        assertThat(algorithm(before)).isEqualTo("AES_GCM");
+        assertThat(decrypt(user, before, DES_KEY)).isEqualTo("before the checkpoint");
+    }
+
+    @Test
+    void aMessageArchivedDuringThePassIsLeftForTheNextOne() throws InterruptedException {
+        User user = newUser();
+        Long moved = encrypt(user, "moved meanwhile", EncryptionAlgorithm.DES, DES_KEY);
+        Long stays = encrypt(user, "stays hot", EncryptionAlgorithm.DES, DES_KEY);
+        String iv = iv(moved);
+        // The tiering job moves the message after the pass read it as hot
+        doAnswer(invocation -> {
+            archive(moved);
+            return invocation.callRealMethod();
+        }).when(encryptionService).reencrypt(any(), any(), eq(iv), any());
+
+        runPass();
+
+        assertThat(archivedAt(moved)).isNotNull();
+        assertThat(algorithm(moved)).isEqualTo("DES");
+        assertThat(iv(moved)).isEqualTo(iv);
+        assertThat(decrypt(user, moved, DES_KEY)).isEqualTo("moved meanwhile");
+        assertThat(algorithm(stays)).isEqualTo("AES_GCM");
+
+        runPass();
+
+        assertThat(algorithm(moved)).isEqualTo("AES_GCM");
+        assertThat(archivedAt(moved)).isNotNull();
+        assertThat(decrypt(user, moved, DES_KEY)).isEqualTo("moved meanwhile");
+    }
+
+    // Starts a pass, waits for it to complete, and returns how many messages it migrated
+    private long runPass() throws InterruptedException {
+        Object startedBefore = job.status().get("startedAt");
+        assertThat(job.start()).isTrue();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        Map<String, Object> status = job.status();
+        while (status.get("state") != ReEncryptionJob.State.COMPLETED
+                || Objects.equals(status.get("startedAt"), startedBefore)) {
+            assertThat(status.get("state")).isNotEqualTo(ReEncryptionJob.State.FAILED);
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(20);
+            status = job.status();
+        }
+        return (Long) status.get("migrated");
+    }
+
+    private void archive(Long messageId) {
+        jdbcTemplate.update("UPDATE encrypted_messages SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(400)), messageId);
+        tieringJob.run();
+    }
+
+    private Long encrypt(User user, String message, EncryptionAlgorithm algorithm, String key) {
+        return encryptionService.createEncryptedMessage(new EncryptionRequest("title", message, algorithm, key,
+                false), user).getId();
+    }
+
+    private String decrypt(User user, Long messageId, String key) {
+        return encryptionService.decryptUserMessage(new DecryptionRequest(messageId, key), user);
+    }
+
+    private String algorithm(Long messageId) {
+        return jdbcTemplate.queryForObject("SELECT algorithm FROM encrypted_messages WHERE id = ?", String.class,
+                messageId);
+    }
+
+    private String iv(Long messageId) {
+        return jdbcTemplate.queryForObject("SELECT initialization_vector FROM encrypted_messages WHERE id = ?",
+                String.class, messageId);
+    }
+
+    private Timestamp archivedAt(Long messageId) {
+        return jdbcTemplate.queryForObject("SELECT archived_at FROM encrypted_messages WHERE id = ?",
+                Timestamp.class, messageId);
+    }
+
+    private User newUser() {
+        String name = "reencrypt-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+}
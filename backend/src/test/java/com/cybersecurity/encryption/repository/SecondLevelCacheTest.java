@@ -0,0 +1,94 @@
+package com.cybersecurity.encryption.repository;
+
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.service.EncryptionService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Repeated lookups of the same user or message are answered by the second-level cache: each
+ * repository call below runs in a session of its own, so only the cache can spare the JDBC
+ * statement.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:l2_cache_test;DB_CLOSE_DELAY=-1",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class SecondLevelCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptedMessageRepository messageRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void repeatedFindByUsernameIsServedFromTheQueryAndEntityCaches() {
+        User user = newUser();
+        // The first lookup runs the query and caches its result
+        assertThat(userRepository.findByUsername(user.getUsername())).isPresent();
+        statistics.clear();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(userRepository.findByUsername(user.getUsername()))
+                    .get().extracting(User::getId).isEqualTo(user.getId());
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(5);
+        assertThat(statistics.getQueryCacheMissCount()).isZero();
+    }
+
+    @Test
+    void repeatedFindByIdIsServedFromTheEntityCache() {
+        User user = newUser();
+        Long messageId = encryptionService.createEncryptedMessage(new EncryptionRequest("cached", "hello",
+                EncryptionAlgorithm.AES_GCM, Base64.getEncoder().encodeToString(new byte[32]), false), user).getId();
+        // Rows inserted with an identity column are cached when first loaded
+        assertThat(userRepository.findById(user.getId())).isPresent();
+        assertThat(messageRepository.findById(messageId)).isPresent();
+        statistics.clear();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(userRepository.findById(user.getId())).isPresent();
+            assertThat(messageRepository.findById(messageId)).isPresent();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheMissCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("users").getHitCount()).isEqualTo(5);
+        assertThat(statistics.getDomainDataRegionStatistics("messages").getHitCount()).isEqualTo(5);
+    }
+
+    private User newUser() {
+        String name = "l2-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+}
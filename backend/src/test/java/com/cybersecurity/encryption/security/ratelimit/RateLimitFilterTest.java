@@ -0,0 +1,96 @@
+package com.cybersecurity.encryption.security.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore();
+        ReflectionTestUtils.setField(store, "maxTrackedKeys", 1000L);
+        ReflectionTestUtils.setField(store, "idleEvictionMs", 600_000L);
+        store.init();
+
+        // Refills slow enough that no token comes back during a test
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "store", store);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "authCapacity", 10L);
+        ReflectionTestUtils.setField(filter, "authRefillPerSecond", 0.001);
+        ReflectionTestUtils.setField(filter, "cryptoCapacity", 3L);
+        ReflectionTestUtils.setField(filter, "cryptoRefillPerSecond", 0.001);
+        ReflectionTestUtils.setField(filter, "readCapacity", 100L);
+        ReflectionTestUtils.setField(filter, "readRefillPerSecond", 0.001);
+        ReflectionTestUtils.setField(filter, "ipCapacity", 5L);
+        ReflectionTestUtils.setField(filter, "ipRefillPerSecond", 0.001);
+        filter.init();
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void accountsSharingAnAddressShareItsBudget() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(encrypt("user" + i, "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+
+        MockHttpServletResponse rejected = encrypt("user5", "10.0.0.1");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isNotNull();
+
+        // The same account from another address still has its own tokens
+        assertThat(encrypt("user5", "10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void callsRejectedForTheUserAreNotChargedToTheAddress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(encrypt("alice", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(encrypt("alice", "10.0.0.1").getStatus()).isEqualTo(429);
+        }
+
+        // Two of the address's five tokens are left
+        assertThat(encrypt("bob", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(encrypt("bob", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(encrypt("bob", "10.0.0.1").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void theRemainingHeaderShowsTheEmptierBucket() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            encrypt("user" + i, "10.0.0.1");
+        }
+
+        assertThat(encrypt("carol", "10.0.0.1").getHeader("X-RateLimit-Remaining")).isEqualTo("1");
+        assertThat(encrypt("dave", "10.0.0.3").getHeader("X-RateLimit-Remaining")).isEqualTo("2");
+    }
+
+    private MockHttpServletResponse encrypt(String username, String remoteAddr) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/encrypt");
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
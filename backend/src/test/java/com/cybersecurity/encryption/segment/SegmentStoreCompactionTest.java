@@ -0,0 +1,119 @@
+package com.cybersecurity.encryption.segment;
+
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.EncryptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Messages in 4 KB segments, about seven to a segment: once most messages of a sealed segment
+ * are deleted, the background compaction moves the rest to the active segment, and the old file
+ * is deleted on the pass after.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:segment_compaction_test;DB_CLOSE_DELAY=-1",
+        "app.segment-store.enabled=true",
+        "app.segment-store.segment-size=4096",
+        "app.segment-store.compaction.interval-ms=200",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class SegmentStoreCompactionTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final Path DIR = tempDir();
+
+    @DynamicPropertySource
+    static void segmentDir(DynamicPropertyRegistry registry) {
+        registry.add("app.segment-store.dir", DIR::toString);
+    }
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compactionMovesLiveRecordsAndDeletesTheOldFile() throws InterruptedException {
+        User user = newUser();
+        Map<Long, String> messages = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            String plaintext = String.valueOf((char) ('a' + i)).repeat(500);
+            messages.put(encryptionService.createEncryptedMessage(new EncryptionRequest("title " + i, plaintext,
+                    EncryptionAlgorithm.AES_GCM, KEY, false), user).getId(), plaintext);
+        }
+        List<Long> inFirst = jdbcTemplate.queryForList(
+                "SELECT id FROM encrypted_messages WHERE segment_id = 1 ORDER BY id", Long.class);
+        assertThat(inFirst).hasSizeGreaterThan(2);
+        assertThat(segmentIds()).hasSizeGreaterThan(2);
+        Path firstFile = DIR.resolve("00000001.seg");
+        assertThat(firstFile).exists();
+
+        // Leave one live record in the first segment
+        Long kept = inFirst.get(inFirst.size() / 2);
+        for (Long id : new ArrayList<>(inFirst)) {
+            if (!id.equals(kept)) {
+                encryptionService.deleteUserMessage(id, user);
+                messages.remove(id);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (Files.exists(firstFile) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(firstFile).doesNotExist();
+        Integer keptSegment = jdbcTemplate.queryForObject("SELECT segment_id FROM encrypted_messages WHERE id = ?",
+                Integer.class, kept);
+        assertThat(keptSegment).isNotEqualTo(1);
+        assertThat(segmentIds()).doesNotContain(1);
+        messages.forEach((id, plaintext) -> assertThat(encryptionService.decryptUserMessage(
+                new DecryptionRequest(id, KEY), user)).isEqualTo(plaintext));
+    }
+
+    private List<Integer> segmentIds() {
+        return jdbcTemplate.queryForList("SELECT DISTINCT segment_id FROM encrypted_messages"
+                + " WHERE segment_id IS NOT NULL ORDER BY segment_id", Integer.class);
+    }
+
+    private User newUser() {
+        String name = "seg-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("segment-store-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
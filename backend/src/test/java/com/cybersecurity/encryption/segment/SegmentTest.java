@@ -0,0 +1,93 @@
+package com.cybersecurity.encryption.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentTest {
+
+    private static final int CAPACITY = 4096;
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void reopenedSegmentKeepsItsRecords() throws IOException {
+        Path file = dir.resolve("00000001.seg");
+        Segment segment = Segment.create(1, file, CAPACITY);
+        int first = segment.append(payload(100, 1), true);
+        int second = segment.append(payload(200, 2), true);
+
+        Segment reopened = Segment.open(1, file, Files.size(file));
+
+        assertThat(reopened.getWritePosition()).isEqualTo(segment.getWritePosition());
+        assertThat(reopened.read(first, 100)).isEqualTo(payload(100, 1));
+        assertThat(reopened.read(second, 200)).isEqualTo(payload(200, 2));
+    }
+
+    @Test
+    void tornRecordAndEverythingAfterItAreDropped() throws IOException {
+        Path file = dir.resolve("00000001.seg");
+        Segment segment = Segment.create(1, file, CAPACITY);
+        int first = segment.append(payload(100, 1), true);
+        int torn = segment.append(payload(100, 2), true);
+        int after = segment.append(payload(100, 3), true);
+        // A crash in the middle of the second payload
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(torn + Segment.RECORD_HEADER_BYTES + 50);
+            raf.write(0xFF);
+        }
+
+        Segment reopened = Segment.open(1, file, Files.size(file));
+
+        assertThat(reopened.getWritePosition()).isEqualTo(torn);
+        assertThat(reopened.read(first, 100)).isEqualTo(payload(100, 1));
+        assertThatThrownBy(() -> reopened.read(torn, 100)).hasMessageContaining("No record");
+        assertThatThrownBy(() -> reopened.read(after, 100)).hasMessageContaining("No record");
+        // The length slot is cleared, so the next open stops there even before anything is appended
+        assertThat(Segment.open(1, file, Files.size(file)).getWritePosition()).isEqualTo(torn);
+        // Appends reuse the space
+        assertThat(reopened.append(payload(60, 4), true)).isEqualTo(torn);
+        assertThat(Segment.open(1, file, Files.size(file)).read(torn, 60)).isEqualTo(payload(60, 4));
+    }
+
+    @Test
+    void truncatedTailIsDropped() throws IOException {
+        Path file = dir.resolve("00000001.seg");
+        Segment segment = Segment.create(1, file, CAPACITY);
+        int first = segment.append(payload(100, 1), true);
+        int cut = segment.append(payload(100, 2), true);
+        // Copy the file up to the middle of the second record, as if it was never fully written
+        Path truncated = dir.resolve("00000002.seg");
+        Files.write(truncated, Arrays.copyOf(Files.readAllBytes(file), cut + Segment.RECORD_HEADER_BYTES + 40));
+
+        Segment reopened = Segment.open(2, truncated, Files.size(truncated));
+
+        assertThat(reopened.getWritePosition()).isEqualTo(cut);
+        assertThat(reopened.read(first, 100)).isEqualTo(payload(100, 1));
+        assertThat(reopened.append(payload(100, 3), true)).isEqualTo(-1);
+        assertThat(reopened.append(payload(30, 3), true)).isEqualTo(cut);
+    }
+
+    @Test
+    void unknownHeaderIsRefused() throws IOException {
+        Path file = dir.resolve("00000001.seg");
+        Files.write(file, new byte[CAPACITY]);
+
+        assertThatThrownBy(() -> Segment.open(1, file, CAPACITY)).hasMessageContaining("unknown header");
+    }
+
+    private static byte[] payload(int length, int fill) {
+        byte[] payload = new byte[length];
+        Arrays.fill(payload, (byte) fill);
+        return payload;
+    }
+}
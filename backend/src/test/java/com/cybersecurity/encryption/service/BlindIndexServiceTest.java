@@ -0,0 +1,108 @@
+package com.cybersecurity.encryption.service;
+
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:blind_index_test;DB_CLOSE_DELAY=-1",
+        "app.blind-index.enabled=true",
+        "app.blind-index.key=YmxpbmQtaW5kZXgtdGVzdC1vbmx5LWtleS0zMi1ieXRlcw==",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+class BlindIndexServiceTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String TOKEN_COUNT_SQL = "SELECT COUNT(*) FROM message_search_tokens WHERE message_id = ?";
+
+    @Autowired
+    private BlindIndexService blindIndexService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void termsAreNormalizedDistinctWords() {
+        assertThat(blindIndexService.terms("Ｈｅｌｌｏ, hello WORLD! a world-42"))
+                .containsExactly("hello", "world", "42");
+    }
+
+    @Test
+    void theSameWordGivesDifferentTokensForDifferentUsers() {
+        User first = newUser();
+        User second = newUser();
+
+        List<String> tokens = blindIndexService.tokens(first.getId(), List.of("secret"));
+
+        assertThat(tokens).hasSize(1);
+        assertThat(tokens.get(0)).hasSize(32);
+        assertThat(blindIndexService.tokens(first.getId(), List.of("secret"))).isEqualTo(tokens);
+        assertThat(blindIndexService.tokens(second.getId(), List.of("secret"))).doesNotContainAnyElementsOf(tokens);
+    }
+
+    @Test
+    void aSearchReturnsOnlyMessagesContainingEveryWord() {
+        User user = newUser();
+        Long both = encrypt(user, "apple and banana");
+        encrypt(user, "apple and cherry");
+        encrypt(user, "banana split");
+        Long bothAgain = encrypt(user, "Banana, then APPLE pie");
+        // Another user's message with the same words is not found
+        encrypt(newUser(), "apple banana");
+
+        List<Long> found = search(user, "apple banana");
+
+        assertThat(found).containsExactly(bothAgain, both);
+        assertThat(search(user, "cherry banana")).isEmpty();
+    }
+
+    @Test
+    void deletingAMessageRemovesItsTokens() {
+        User user = newUser();
+        Long id = encrypt(user, "disposable note");
+        assertThat(jdbcTemplate.queryForObject(TOKEN_COUNT_SQL, Long.class, id)).isEqualTo(2);
+        assertThat(search(user, "disposable")).containsExactly(id);
+
+        encryptionService.deleteUserMessage(id, user);
+
+        assertThat(jdbcTemplate.queryForObject(TOKEN_COUNT_SQL, Long.class, id)).isZero();
+        assertThat(search(user, "disposable")).isEmpty();
+    }
+
+    private List<Long> search(User user, String query) {
+        return blindIndexService.search(user.getId(), query, PageRequest.of(0, 20)).getContent().stream()
+                .map(EncryptedMessageResponse::getId)
+                .toList();
+    }
+
+    private Long encrypt(User user, String message) {
+        return encryptionService.createEncryptedMessage(new EncryptionRequest("title", message,
+                EncryptionAlgorithm.AES_GCM, KEY, false), user).getId();
+    }
+
+    private User newUser() {
+        String name = "blind-" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(new User(null, name, name + "@example.com", "{noop}Password123", null, null));
+    }
+}
@@ -0,0 +1,174 @@
+package com.cybersecurity.encryption.sharding;
+
+import com.cybersecurity.encryption.dto.DecryptionRequest;
+import com.cybersecurity.encryption.dto.EncryptedMessageResponse;
+import com.cybersecurity.encryption.dto.EncryptionRequest;
+import com.cybersecurity.encryption.dto.RegisterRequest;
+import com.cybersecurity.encryption.entity.EncryptionAlgorithm;
+import com.cybersecurity.encryption.entity.User;
+import com.cybersecurity.encryption.repository.UserRepository;
+import com.cybersecurity.encryption.service.AuthService;
+import com.cybersecurity.encryption.service.EncryptionService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Three in-memory H2 shards: users are placed by their hash, message IDs interleave without
+ * colliding, each vault is listed and decrypted from its own shard, and a vault moved by the
+ * {@link ShardMover} keeps working from the new one.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding_test_0;DB_CLOSE_DELAY=-1",
+        "app.sharding.enabled=true",
+        "app.sharding.urls=jdbc:h2:mem:sharding_test_1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding_test_2;DB_CLOSE_DELAY=-1",
+        "app.sharding.directory-cache-ms=10",
+        "app.sharding.move-grace-ms=50",
+        "app.rate-limit.enabled=false"
+})
+@ActiveProfiles("h2")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardingIntegrationTest {
+
+    private static final int USERS = 12;
+    private static final int MESSAGES_PER_USER = 3;
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardMover shardMover;
+
+    @Autowired
+    private ShardRoutingDataSource routingDataSource;
+
+    private final List<User> users = new ArrayList<>();
+    private final Map<Long, List<Long>> messageIds = new HashMap<>();
+
+    @BeforeAll
+    void createVaults() {
+        for (int i = 0; i < USERS; i++) {
+            authService.registerUser(new RegisterRequest("shard-user-" + i, "shard-user-" + i + "@example.com",
+                    "Password123"));
+            User user = userRepository.findByUsername("shard-user-" + i).orElseThrow();
+            users.add(user);
+            List<Long> ids = new ArrayList<>();
+            for (int m = 0; m < MESSAGES_PER_USER; m++) {
+                ids.add(encryptionService.createEncryptedMessage(new EncryptionRequest("title " + m,
+                        plaintext(user, m), EncryptionAlgorithm.AES_GCM, KEY, false), user).getId());
+            }
+            messageIds.put(user.getId(), ids);
+        }
+    }
+
+    @Test
+    void placesUsersByHashAcrossShards() {
+        Set<Integer> used = new HashSet<>();
+        for (User user : users) {
+            ShardRouter.Assignment assignment = shardRouter.assignment(user.getId());
+            assertThat(assignment.movingTo()).isNull();
+            used.add(assignment.shard());
+        }
+        assertThat(used).hasSizeGreaterThan(1);
+        for (User user : users) {
+            int shard = shardRouter.assignment(user.getId()).shard();
+            assertThat(shard).isEqualTo(ShardRouter.jumpHash(user.getId(), routingDataSource.getShardCount()));
+            assertThat(messagesOn(shard, user.getId())).isEqualTo(MESSAGES_PER_USER);
+        }
+    }
+
+    @Test
+    void interleavesMessageIdsWithoutCollisions() {
+        Set<Long> seen = new HashSet<>();
+        for (User user : users) {
+            int shard = shardRouter.assignment(user.getId()).shard();
+            for (Long id : messageIds.get(user.getId())) {
+                assertThat(seen.add(id)).as("message ID %d is unique", id).isTrue();
+                assertThat(id % ShardSchema.ID_STRIDE).isEqualTo(shard);
+                if (shard > 0) {
+                    assertThat(id).isGreaterThanOrEqualTo(ShardSchema.SHARD_ID_START);
+                }
+            }
+        }
+    }
+
+    @Test
+    void listsAndDecryptsEachVaultFromItsShard() {
+        for (User user : users) {
+            List<EncryptedMessageResponse> listed = encryptionService.getUserMessages(user,
+                    PageRequest.of(0, 10), null).getContent();
+            assertThat(listed).extracting(EncryptedMessageResponse::getId)
+                    .containsExactlyInAnyOrderElementsOf(messageIds.get(user.getId()));
+            for (int m = 0; m < MESSAGES_PER_USER; m++) {
+                assertThat(encryptionService.decryptUserMessage(
+                        new DecryptionRequest(messageIds.get(user.getId()).get(m), KEY), user))
+                        .isEqualTo(plaintext(user, m));
+            }
+        }
+    }
+
+    @Test
+    void movedVaultIsServedFromTheTargetShard() {
+        authService.registerUser(new RegisterRequest("shard-mover", "shard-mover@example.com", "Password123"));
+        User user = userRepository.findByUsername("shard-mover").orElseThrow();
+        List<Long> ids = new ArrayList<>();
+        for (int m = 0; m < MESSAGES_PER_USER; m++) {
+            ids.add(encryptionService.createEncryptedMessage(new EncryptionRequest("title " + m,
+                    plaintext(user, m), EncryptionAlgorithm.AES_GCM, KEY, false), user).getId());
+        }
+        int source = shardRouter.assignment(user.getId()).shard();
+        int target = (source + 1) % routingDataSource.getShardCount();
+
+        Map<String, Long> copied = shardMover.move(user.getId(), target);
+
+        assertThat(copied).containsEntry("encrypted_messages", (long) MESSAGES_PER_USER);
+        assertThat(shardRouter.lookup(user.getId())).isEqualTo(new ShardRouter.Assignment(target, null));
+        assertThat(messagesOn(target, user.getId())).isEqualTo(MESSAGES_PER_USER);
+        assertThat(messagesOn(source, user.getId())).isZero();
+        // Messages keep their IDs on the new shard; the listing was not cached before the move
+        assertThat(encryptionService.getUserMessages(user, PageRequest.of(0, 10), null).getContent())
+                .extracting(EncryptedMessageResponse::getId).containsExactlyInAnyOrderElementsOf(ids);
+        for (int m = 0; m < MESSAGES_PER_USER; m++) {
+            assertThat(encryptionService.decryptUserMessage(new DecryptionRequest(ids.get(m), KEY), user))
+                    .isEqualTo(plaintext(user, m));
+        }
+        // New messages get IDs from the target shard
+        Long added = encryptionService.createEncryptedMessage(new EncryptionRequest("after the move", "moved",
+                EncryptionAlgorithm.AES_GCM, KEY, false), user).getId();
+        assertThat(added % ShardSchema.ID_STRIDE).isEqualTo(target);
+    }
+
+    private long messagesOn(int shard, Long userId) {
+        return new JdbcTemplate(routingDataSource.getShard(shard))
+                .queryForObject("SELECT COUNT(*) FROM encrypted_messages WHERE user_id = ?", Long.class, userId);
+    }
+
+    private static String plaintext(User user, int index) {
+        return "message " + index + " of " + user.getUsername();
+    }
+}
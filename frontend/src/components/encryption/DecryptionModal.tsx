@@ -35,6 +35,11 @@ const DecryptionModal: React.FC<DecryptionModalProps> = ({ message, isOpen, onCl
         if (!isValidBase64Key(decryptionKey, 'CHACHA20')) {
           processedKey = textToChaCha20Key(decryptionKey);
         }
+      } else if (message.algorithm === 'AES_GCM') {
+        // Messages migrated from ChaCha20 or DES still take the key they were encrypted with
+        if (!isValidBase64Key(decryptionKey) && !isValidBase64Key(decryptionKey, 'DES')) {
+          processedKey = textToAESKey(decryptionKey, 256);
+        }
       }
 
       requestData = {
@@ -42,7 +47,17 @@ const DecryptionModal: React.FC<DecryptionModalProps> = ({ message, isOpen, onCl
         key: processedKey,
       };
 
-      const response = await apiClient.post<{ decryptedMessage: string }>('/decrypt', requestData);
+      let response: { decryptedMessage: string };
+      try {
+        response = await apiClient.post<{ decryptedMessage: string }>('/decrypt', requestData);
+      } catch (err) {
+        if (message.algorithm !== 'AES_GCM' || processedKey === decryptionKey) {
+          throw err;
+        }
+        // A text key converted for the DES form
+        requestData = { messageId: message.id, key: textToDESKey(decryptionKey) };
+        response = await apiClient.post<{ decryptedMessage: string }>('/decrypt', requestData);
+      }
       setDecryptedContent(response.decryptedMessage);
     } catch (err: any) {
       let errorMessage = 'Failed to decrypt message';
@@ -27,6 +27,8 @@ const MessageCard: React.FC<MessageCardProps> = ({ message, onDecrypt, onDelete
         return 'bg-green-100 text-green-800';
       case 'DES':
         return 'bg-yellow-100 text-yellow-800';
+      case 'AES_GCM':
+        return 'bg-indigo-100 text-indigo-800';
       default:
         return 'bg-gray-100 text-gray-800';
     }
@@ -55,7 +57,9 @@ const MessageCard: React.FC<MessageCardProps> = ({ message, onDecrypt, onDelete
             <div className="bg-gray-50 border border-gray-200 rounded-lg p-3">
               <p className="text-sm text-gray-600 mb-1">Encrypted Content:</p>
               <p className="text-sm font-mono text-gray-800 break-all">
-                {truncateContent(message.encryptedContent, 150)}
+                {message.encryptedContent !== null
+                  ? truncateContent(message.encryptedContent, 150)
+                  : `Encrypted file (${message.fileSize} bytes)`}
               </p>
             </div>
 
@@ -1,4 +1,4 @@
 // Centralized string union types for algorithms and roles
 
-export type EncryptionAlgorithm = 'AES' | 'CHACHA20' | 'DES';
+export type EncryptionAlgorithm = 'AES' | 'CHACHA20' | 'DES' | 'AES_GCM';
 export type UserRole = 'USER' | 'ADMIN';
@@ -29,7 +29,8 @@ export interface AuthResponse {
 export interface EncryptedMessage {
   id: number;
   title: string;
-  encryptedContent: string;
+  encryptedContent: string | null; // null for an uploaded file, see fileSize
+  fileSize?: number;
   algorithm: string;
   createdAt: string;
   updatedAt: string;